@@ -0,0 +1,181 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Modo sin consola: evalúa archivos (o la entrada estándar) sin hacer preguntas,
+ * para usar el intérprete desde scripts y tuberías.
+ *
+ * Cada resultado se escribe en una línea en la salida, que tiene un buffer grande y
+ * solo se vacía al terminar; los errores van a la salida de errores con el mismo formato
+ * del REPL. En modo silencioso no se escriben los resultados.
+ *
+ * El código de salida indica cómo terminó: OK si no hubo errores, EVALUATION_ERRORS si
+ * alguna expresión falló (o un archivo no se pudo parsear) y IO_ERROR si un archivo no
+ * se pudo leer.
+ */
+public class BatchRunner {
+    public static final int OK = 0;
+    public static final int EVALUATION_ERRORS = 1;
+    public static final int IO_ERROR = 2;
+
+    private static final String STDIN = "-";
+
+    private final ScriptLoader loader;
+    private final PrintWriter out;
+    private final PrintWriter err;
+    private boolean quiet; // true: no se escriben los resultados
+    private final Stats stats = new Stats();
+
+    /**
+     * Totales de una ejecución: expresiones, errores, tiempo y memoria.
+     */
+    public static class Stats {
+        private long expressions;
+        private long errors;
+        private long elapsedNanos;
+        private long peakHeapBytes; // Suma de los picos de cada zona del heap
+
+        public long getExpressions() {
+            return expressions;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        /**
+         * Expresiones evaluadas por segundo.
+         */
+        public double getExpressionsPerSecond() {
+            return elapsedNanos == 0 ? 0 : expressions * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d expresiones (%d errores) en %.1f ms, %.0f expr/s, heap máximo %.1f MB",
+                expressions, errors, elapsedNanos / 1e6, getExpressionsPerSecond(),
+                peakHeapBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * @param interpreter Intérprete con el que se evalúan todas las entradas.
+     * @param out Destino de los resultados (se le agrega un buffer).
+     * @param err Destino de los errores.
+     */
+    public BatchRunner(LispInterpreter interpreter, Writer out, Writer err) {
+        this.loader = new ScriptLoader(interpreter);
+        this.out = new PrintWriter(new BufferedWriter(out, 1 << 16), false);
+        this.err = new PrintWriter(err, false);
+        interpreter.setOutput(this.out); // El reporte de profile va con los resultados
+    }
+
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    public void setCache(FormCache cache) {
+        loader.setCache(cache);
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Evalúa las entradas en orden. "-" (o ninguna entrada) es la entrada estándar.
+     * Si un archivo no se puede leer, no se siguen evaluando los demás.
+     * @return El código de salida.
+     */
+    public int run(List<String> inputs, InputStream stdin) {
+        resetPeakHeap();
+        long start = System.nanoTime();
+        int status = OK;
+        try {
+            if (inputs.isEmpty()) {
+                record(loader.load(new InputStreamReader(stdin, StandardCharsets.UTF_8), listener()));
+            }
+            for (String input : inputs) {
+                if (input.equals(STDIN)) {
+                    record(loader.load(new InputStreamReader(stdin, StandardCharsets.UTF_8), listener()));
+                } else {
+                    record(loader.load(Paths.get(input), listener()));
+                }
+            }
+        } catch (IOException e) {
+            err.println("Error leyendo el archivo: " + e.getMessage());
+            status = IO_ERROR;
+        } finally {
+            stats.elapsedNanos = System.nanoTime() - start;
+            stats.peakHeapBytes = peakHeap();
+            out.flush();
+            err.flush();
+        }
+        if (status == OK && stats.errors > 0) {
+            status = EVALUATION_ERRORS;
+        }
+        return status;
+    }
+
+    private void record(ScriptLoader.Progress progress) {
+        stats.expressions += progress.getExpressions();
+        stats.errors += progress.getErrors();
+    }
+
+    private ScriptLoader.Listener listener() {
+        return new ScriptLoader.Listener() {
+            public void result(Object expression, Object result) {
+                if (!quiet) {
+                    out.println(result);
+                }
+            }
+
+            public void error(Object expression, RuntimeException e) {
+                if (expression != null) {
+                    err.println("Error evaluando la expresión: " + expression);
+                }
+                err.println("Detalle: " + e.getMessage());
+                err.flush(); // Los errores se ven enseguida; los resultados esperan al final
+            }
+
+            public void progress(ScriptLoader.Progress progress) {
+            }
+        };
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
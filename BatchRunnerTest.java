@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+
+    @TempDir
+    Path dir;
+
+    private final StringWriter out = new StringWriter();
+    private final StringWriter err = new StringWriter();
+    private final BatchRunner runner = new BatchRunner(new LispInterpreter(new Environment()), out, err);
+
+    private String write(String name, String source) throws Exception {
+        Path file = dir.resolve(name);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    private static InputStream stdin(String source) {
+        return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFilesAndStdinInOrder() throws Exception {
+        String file = write("a.lisp", "(defun doble (n)\n  (* n 2))\n");
+        int status = runner.run(Arrays.asList(file, "-"), stdin("(doble 4)\n(+ 1 2)"));
+        assertEquals(BatchRunner.OK, status);
+        assertEquals(String.format("doble%n8%n3%n"), out.toString());
+        assertEquals("", err.toString());
+        assertEquals(3, runner.getStats().getExpressions());
+        assertTrue(runner.getStats().getPeakHeapBytes() > 0);
+    }
+
+    @Test
+    public void testNoInputsReadsStdin() {
+        assertEquals(BatchRunner.OK, runner.run(Collections.emptyList(), stdin("(* 6 7)")));
+        assertEquals(String.format("42%n"), out.toString());
+    }
+
+    @Test
+    public void testQuietOnlyWritesErrors() {
+        runner.setQuiet(true);
+        int status = runner.run(Collections.emptyList(), stdin("(+ 1 2) (noexiste 1)"));
+        assertEquals(BatchRunner.EVALUATION_ERRORS, status);
+        assertEquals("", out.toString());
+        assertTrue(err.toString().contains("noexiste"));
+        assertEquals(1, runner.getStats().getErrors());
+    }
+
+    @Test
+    public void testMissingFileStopsTheRun() throws Exception {
+        String file = write("b.lisp", "(+ 1 2)");
+        int status = runner.run(Arrays.asList(dir.resolve("no-existe.lisp").toString(), file), stdin(""));
+        assertEquals(BatchRunner.IO_ERROR, status);
+        assertEquals("", out.toString());
+        assertTrue(err.toString().startsWith("Error leyendo el archivo"));
+    }
+}
@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * El Compiler convierte la salida del Parser en un árbol de nodos ejecutables (Node).
+ * Así el switch sobre el nombre del operador y los instanceof se hacen una sola vez,
+ * en lugar de repetirse cada vez que se evalúa la expresión (por ejemplo dentro de una
+ * función recursiva como fibonacci).
+ *
+ * Los parámetros de cada defun se resuelven al definirla: cada referencia queda como
+ * (profundidad, posición) dentro de un Frame, sin buscar nombres en tiempo de ejecución.
+ * Todo lo demás se trata como global y se busca en el Environment del intérprete.
+ */
+public class Compiler {
+    private Environment globals; // Entorno global (variables de setq y funciones)
+
+    /**
+     * Constructor del Compiler.
+     * @param globals El entorno global donde se guardan variables y funciones.
+     */
+    public Compiler(Environment globals) {
+        this.globals = globals;
+    }
+
+    /**
+     * Compila una expresión del nivel superior (fuera de cualquier función).
+     * @param expression La expresión (lista, número, símbolo, etc.) producida por el Parser.
+     * @return El nodo listo para evaluarse.
+     */
+    public Node compile(Object expression) {
+        return compile(expression, null);
+    }
+
+    /**
+     * Compila cualquier expresión Lisp dentro de un alcance.
+     * @param expression La expresión a compilar.
+     * @param scope Parámetros visibles en este punto (null en el nivel superior).
+     * @return El nodo listo para evaluarse.
+     */
+    private Node compile(Object expression, Scope scope) {
+        if (expression instanceof List) {
+            List<Object> exprList = Evaluator.asList(expression);
+            if (exprList.isEmpty()) return new Node.Constant(null);
+
+            Symbol operator = Symbol.of(exprList.get(0));
+            if (operator != null) {
+                // Compilar según el operador o nombre de función (solo una vez, al compilar)
+                switch (operator.getName()) {
+                    case "+": return new Node.Add(compileAll(exprList.subList(1, exprList.size()), scope));
+                    case "-": return new Node.Subtract(compileAll(exprList.subList(1, exprList.size()), scope));
+                    case "*": return new Node.Multiply(compileAll(exprList.subList(1, exprList.size()), scope));
+                    case "/": return new Node.Divide(compileAll(exprList.subList(1, exprList.size()), scope));
+                    case "<": return new Node.LessThan(compile(exprList.get(1), scope), compile(exprList.get(2), scope));
+                    case ">": return new Node.GreaterThan(compile(exprList.get(1), scope), compile(exprList.get(2), scope));
+                    case "<=": return new Node.LessThanOrEqual(compile(exprList.get(1), scope), compile(exprList.get(2), scope));
+                    case ">=": return new Node.GreaterThanOrEqual(compile(exprList.get(1), scope), compile(exprList.get(2), scope));
+                    case "setq": return compileSetq(exprList, scope);
+                    case "atom": return new Node.Atom(compile(exprList.get(1), scope));
+                    case "list": return new Node.ListNode(compileAll(exprList.subList(1, exprList.size()), scope));
+                    case "equal": return new Node.Equal(compile(exprList.get(1), scope), compile(exprList.get(2), scope));
+                    case "cond": return compileCond(exprList, scope);
+                    case "car": return new Node.Car(compile(exprList.get(1), scope));
+                    case "cdr": return new Node.Cdr(compile(exprList.get(1), scope));
+                    case "cons": return new Node.ConsNode(compile(exprList.get(1), scope), compile(exprList.get(2), scope));
+                    case "null": return new Node.IsNull(compile(exprList.get(1), scope));
+                    case "length": return new Node.Length(compile(exprList.get(1), scope));
+                    case "append": return new Node.Append(compileAll(exprList.subList(1, exprList.size()), scope));
+                    case "pcall": return new Node.PCall(compileAll(exprList.subList(1, exprList.size()), scope));
+                    case "pmap": return new Node.PMap(globals, globals.binding(functionName(exprList.get(1))),
+                        compile(exprList.get(2), scope));
+                    case "future": return new Node.Future(compile(exprList.get(1), scope));
+                    case "deref": return new Node.Deref(compile(exprList.get(1), scope));
+                    case "range": return new Node.Range(compileAll(exprList.subList(1, exprList.size()), scope));
+                    case "lazy-map": return new Node.LazyMap(globals, globals.binding(functionName(exprList.get(1))),
+                        compile(exprList.get(2), scope), false);
+                    case "lazy-filter": return new Node.LazyMap(globals, globals.binding(functionName(exprList.get(1))),
+                        compile(exprList.get(2), scope), true);
+                    case "take": return new Node.Take(compile(exprList.get(1), scope), compile(exprList.get(2), scope), false);
+                    case "drop": return new Node.Take(compile(exprList.get(1), scope), compile(exprList.get(2), scope), true);
+                    case "reduce": return new Node.Reduce(globals, globals.binding(functionName(exprList.get(1))),
+                        compile(exprList.get(2), scope), compile(exprList.get(3), scope));
+                    case "make-vector": return new Node.Primitive(compileAll(exprList.subList(1, exprList.size()), scope),
+                        NumericVector::make);
+                    case "vref": return new Node.Primitive(compileAll(exprList.subList(1, 3), scope),
+                        args -> NumericVector.vref(args[0], args[1]));
+                    case "vset!": return new Node.Primitive(compileAll(exprList.subList(1, 4), scope),
+                        args -> NumericVector.vset(args[0], args[1], args[2]));
+                    case "vsum": return new Node.Primitive(compileAll(exprList.subList(1, 2), scope),
+                        args -> NumericVector.vsum(args[0]));
+                    case "vdot": return new Node.Primitive(compileAll(exprList.subList(1, 3), scope),
+                        args -> NumericVector.vdot(args[0], args[1]));
+                    case "vmap": return new Node.VMap(globals, globals.binding(functionName(exprList.get(1))),
+                        compile(exprList.get(2), scope));
+                    case "make-hash-table": return new Node.Primitive(compileAll(exprList.subList(1, exprList.size()), scope),
+                        LispHashTable::make);
+                    case "gethash": return new Node.Primitive(compileAll(exprList.subList(1, exprList.size()), scope),
+                        LispHashTable::gethash);
+                    case "puthash": return new Node.Primitive(compileAll(exprList.subList(1, 4), scope),
+                        args -> LispHashTable.of(args[2], "puthash").put(args[0], args[1]));
+                    case "remhash": return new Node.Primitive(compileAll(exprList.subList(1, 3), scope),
+                        args -> LispHashTable.of(args[1], "remhash").remove(args[0]));
+                    case "hash-table-count": return new Node.Primitive(compileAll(exprList.subList(1, 2), scope),
+                        args -> Numbers.valueOf(LispHashTable.of(args[0], "hash-table-count").size()));
+                    case "maphash": return new Node.MapHash(globals, globals.binding(functionName(exprList.get(1))),
+                        compile(exprList.get(2), scope));
+                    case "profile": return new Node.Profile(globals, compile(exprList.get(1), scope));
+                    case "save-image": return new Node.ImageFile(true, globals, exprList.get(1));
+                    case "load-image": return new Node.ImageFile(false, globals, exprList.get(1));
+                    case "quote": return new Node.Constant(Cons.fromTree(exprList.get(1))); // Celdas armadas una vez
+                    case "defun": return compileDefun(exprList, scope, false);
+                    case "defun-memo": return compileDefun(exprList, scope, true);
+                    case "memo-stats": return new Node.Memo(globals.binding(Symbol.of(exprList.get(1))), false);
+                    case "memo-clear": return new Node.Memo(globals.binding(Symbol.of(exprList.get(1))), true);
+                    default:
+                        // Igual que en el Evaluator, un parámetro en posición de operador devuelve su valor
+                        if (resolve(operator, scope) != null) {
+                            return compileSymbol(operator, scope);
+                        }
+                        return new Node.Call(globals, globals.binding(operator),
+                            compileAll(exprList.subList(1, exprList.size()), scope));
+                }
+            }
+        }
+
+        // Un símbolo suelto es un parámetro (posición fija) o un global
+        Symbol symbol = Symbol.of(expression);
+        if (symbol != null) {
+            return compileSymbol(symbol, scope);
+        }
+
+        // Si no es lista ni símbolo, es una constante (ej. número)
+        return new Node.Constant(expression);
+    }
+
+    /**
+     * Compila una lista de expresiones en un arreglo de nodos.
+     */
+    private Node[] compileAll(List<Object> expressions, Scope scope) {
+        Node[] nodes = new Node[expressions.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(expressions.get(i), scope);
+        }
+        return nodes;
+    }
+
+    /**
+     * Compila el cuerpo de una función. La última expresión queda en posición de cola,
+     * así una llamada recursiva al final no crece la pila de Java.
+     */
+    private Node[] compileBody(List<Object> body, Scope scope) {
+        Node[] nodes = compileAll(body, scope);
+        if (nodes.length > 0) {
+            nodes[nodes.length - 1].markTail();
+        }
+        return nodes;
+    }
+
+    /**
+     * Devuelve el cuerpo compilado de una función.
+     * Si la función se definió con el Evaluator (sin compilar) o el Optimizer la devolvió
+     * a su cuerpo original, se compila aquí una vez, con el mismo alcance de su defun.
+     */
+    static Node[] bodyOf(Environment globals, Environment.LispFunction function) {
+        Node[] body = function.getCompiledBody();
+        if (body == null) {
+            Scope scope = function.getScope() != null ? function.getScope() : new Scope(function.getParameters(), null);
+            // Las celdas globales son las del entorno donde se definió la función,
+            // no las de la sesión que la llama por primera vez
+            Environment definedIn = function.getGlobals() != null ? function.getGlobals() : globals;
+            body = new Compiler(definedIn).compileBody(function.getBody(), scope);
+            function.setCompiledBody(body);
+        }
+        return body;
+    }
+
+    /**
+     * Compila un símbolo: si es un parámetro visible queda como (profundidad, posición),
+     * si no, el nodo guarda la celda global del símbolo.
+     */
+    private Node compileSymbol(Symbol name, Scope scope) {
+        int[] address = resolve(name, scope);
+        if (address != null) {
+            return new Node.LocalRef(address[0], address[1]);
+        }
+        return new Node.GlobalRef(globals.binding(name));
+    }
+
+    /**
+     * Compila un SETQ: sobre un parámetro escribe en su posición del frame,
+     * sobre cualquier otro nombre escribe en la tabla global.
+     */
+    private Node compileSetq(List<Object> expr, Scope scope) {
+        Symbol name = Symbol.of(expr.get(1));
+        Node value = compile(expr.get(2), scope);
+        int[] address = resolve(name, scope);
+        if (address != null) {
+            return new Node.SetLocal(address[0], address[1], value);
+        }
+        return new Node.SetGlobal(globals.binding(name), value);
+    }
+
+    /**
+     * Busca un nombre entre los parámetros visibles.
+     * @return {profundidad, posición} o null si el nombre no es un parámetro.
+     */
+    private int[] resolve(Symbol name, Scope scope) {
+        int depth = 0;
+        for (Scope s = scope; s != null; s = s.parent, depth++) {
+            int slot = s.names.indexOf(name);
+            if (slot >= 0) {
+                return new int[] {depth, slot};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compila un COND en dos arreglos paralelos: pruebas y resultados.
+     */
+    private Node compileCond(List<Object> expr, Scope scope) {
+        int clauses = expr.size() - 1;
+        Node[] tests = new Node[clauses];
+        Node[] results = new Node[clauses];
+        for (int i = 0; i < clauses; i++) {
+            List<?> conditionPair = (List<?>) expr.get(i + 1);
+            tests[i] = compile(conditionPair.get(0), scope);
+            results[i] = compile(conditionPair.get(1), scope);
+        }
+        return new Node.Cond(tests, results);
+    }
+
+    /**
+     * Nombre de función para pmap, lazy-map, lazy-filter, reduce, vmap y maphash: el símbolo tal cual
+     * o citado ('fibonacci).
+     */
+    static Symbol functionName(Object expr) {
+        if (expr instanceof List && ((List<?>) expr).size() == 2 && Symbol.of(((List<?>) expr).get(0)) == Symbol.QUOTE) {
+            expr = ((List<?>) expr).get(1);
+        }
+        Symbol name = Symbol.of(expr);
+        if (name == null) {
+            throw new RuntimeException("Se esperaba el nombre de una función, pero se obtuvo: " + expr);
+        }
+        return name;
+    }
+
+    /**
+     * Compila un DEFUN (o DEFUN-MEMO). El cuerpo se compila ahora, no en cada llamada,
+     * con sus parámetros como un nuevo alcance encima del actual.
+     */
+    private Node compileDefun(List<Object> expr, Scope scope, boolean memoized) {
+        Symbol functionName = Symbol.of(expr.get(1));
+        List<Symbol> params = new ArrayList<>();
+        for (Object o : (List<?>) expr.get(2)) {
+            params.add(Symbol.of(o));
+        }
+        List<Object> body = expr.subList(3, expr.size());
+        Scope bodyScope = new Scope(params, scope);
+        return new Node.Defun(globals, globals.binding(functionName), params, body, bodyScope,
+            compileBody(body, bodyScope), memoized);
+    }
+
+    /**
+     * Alcance usado solo al compilar: los nombres de los parámetros de una función
+     * (en orden, la posición es el slot) y el alcance de la función que la contiene.
+     */
+    static class Scope {
+        private final List<Symbol> names;
+        private final Scope parent;
+
+        Scope(List<Symbol> names, Scope parent) {
+            this.names = names;
+            this.parent = parent;
+        }
+    }
+}
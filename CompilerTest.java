@@ -0,0 +1,142 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompilerTest extends LispTest {
+
+    @Test
+    public void testCompilerIsDefault() {
+        assertTrue(interpreter.isUsingCompiler());
+    }
+
+    @Test
+    public void testArithmetic() {
+        assertEquals(14, run("(+ (* 3 4) (- 6 (/ 8 2)))"));
+    }
+
+    @Test
+    public void testSetqAndVariableUse() {
+        run("(setq x 10)");
+        assertEquals(15, run("(+ x 5)"));
+    }
+
+    @Test
+    public void testCond() {
+        assertEquals(1, run("(cond ((> 3 5) 0) ((< 3 5) 1))"));
+    }
+
+    @Test
+    public void testQuote() {
+        assertEquals(Arrays.asList(Symbol.intern("+"), 1, 2), run("'(+ 1 2)"));
+    }
+
+    @Test
+    public void testRecursiveDefun() {
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        assertEquals(55, run("(fibonacci 10)"));
+    }
+
+    @Test
+    public void testSameResultAsEvaluator() {
+        String[] program = {
+            "(defun factorial (n) (cond ((<= n 1) 1) (t (* n (factorial (- n 1))))))",
+            "(setq y 4)",
+            "(list y (factorial y) (atom y) (equal y 4))"
+        };
+        LispInterpreter walker = new LispInterpreter(new Environment());
+        walker.setUseCompiler(false);
+        Object compiled = null;
+        Object walked = null;
+        for (String line : program) {
+            compiled = run(line);
+            walked = walker.evaluate(parse(line));
+        }
+        assertEquals(walked, compiled);
+        assertEquals(Arrays.asList(4, 24, true, true), compiled);
+    }
+
+    @Test
+    public void testParametersAreLexical() {
+        run("(setq n 100)");
+        run("(defun doble (n) (* n 2))");
+        run("(defun masglobal (m) (+ n m))");
+        assertEquals(20, run("(doble 10)"));
+        assertEquals(101, run("(masglobal 1)"));
+        assertEquals(100, run("n"));
+    }
+
+    @Test
+    public void testSetqOnParameterStaysLocal() {
+        run("(defun cambia (x) (setq x (+ x 1)) x)");
+        assertEquals(6, run("(cambia 5)"));
+        assertSame(Symbol.intern("x"), run("x"));
+    }
+
+    @Test
+    public void testTailCallsUseConstantStack() {
+        run("(defun cuenta (n acc) (cond ((<= n 0) acc) (t (cuenta (- n 1) (+ acc 1)))))");
+        assertEquals(1000000, run("(cuenta 1000000 0)"));
+    }
+
+    @Test
+    public void testGlobalsAreCells() {
+        run("(setq total 1)");
+        run("(defun leer () total)");
+        run("(setq total 2)");
+        assertEquals(2, run("(leer)"));
+        assertSame(Symbol.intern("leer"), run("(defun leer () (+ total 1))"));
+        assertEquals(3, run("(leer)"));
+    }
+
+    @Test
+    public void testVariadicArithmetic() {
+        assertEquals(10, run("(+ 1 2 3 4)"));
+        assertEquals(24, run("(* 1 2 3 4)"));
+        assertEquals(0, run("(+)"));
+        assertEquals(-5, run("(- 5)"));
+        assertEquals(2, run("(- 10 5 3)"));
+    }
+
+    @Test
+    public void testPromotionToLongAndBigInteger() {
+        run("(defun factorial (n) (cond ((<= n 1) 1) (t (* n (factorial (- n 1))))))");
+        assertEquals(6227020800L, run("(factorial 13)"));
+        assertEquals(new java.math.BigInteger("30414093201713378043612608166064768844377641568960512000000000000"),
+            run("(factorial 50)"));
+        assertEquals(1, run("(/ (factorial 21) (* 21 (factorial 20)))"));
+        assertEquals(true, run("(> 99999999999999999999 1)"));
+    }
+
+    @Test
+    public void testSmallIntegersAreShared() {
+        assertSame(run("(+ 1000 1000)"), run("(* 2 1000)"));
+    }
+
+    @Test
+    public void testDefunMemo() {
+        run("(defun-memo fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        assertEquals(23416728348467685L, run("(fibonacci 80)"));
+        assertEquals(Arrays.asList(78, 81, 81), run("(memo-stats fibonacci)"));
+        assertEquals(23416728348467685L, run("(fibonacci 80)"));
+        assertEquals(79, ((List<?>) run("(memo-stats fibonacci)")).get(0));
+    }
+
+    @Test
+    public void testMemoClearedOnRedefinition() {
+        run("(defun-memo doble (n) (* n 2))");
+        run("(doble 4)");
+        Environment.LispFunction old = environment.getFunction("doble");
+        assertEquals(1, old.getMemo().size());
+        run("(defun doble (n) (* n 3))");
+        assertEquals(0, old.getMemo().size());
+        assertEquals(12, run("(doble 4)"));
+        assertThrows(RuntimeException.class, () -> run("(memo-stats doble)"));
+    }
+
+    @Test
+    public void testUnknownOperator() {
+        assertThrows(RuntimeException.class, () -> run("(noexiste 1)"));
+    }
+}
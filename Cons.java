@@ -0,0 +1,335 @@
+import java.util.AbstractSequentialList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Celda cons de Lisp: un par (car . cdr) que no se puede modificar.
+ * Una lista es una cadena de celdas que termina en NIL (la lista vacía).
+ *
+ * Como las celdas no cambian, varias listas pueden compartir su cola:
+ * cdr devuelve la celda siguiente y cons agrega una celda al frente,
+ * los dos sin copiar nada. Así recorrer una lista grande con recursión
+ * (car, cdr, cdr, ...) no copia la lista en cada paso.
+ *
+ * Implementa List para que el resto del intérprete (atom, equal, los tests)
+ * la trate igual que las listas del Parser. Las operaciones de List que
+ * modificarían la lista lanzan UnsupportedOperationException.
+ */
+public final class Cons extends AbstractSequentialList<Object> {
+
+    // La lista vacía. Es la única celda sin car ni cdr.
+    public static final Cons NIL = new Cons(null, null);
+
+    private final Object car; // Primer elemento
+    private final Object cdr; // Resto de la lista (otra Cons), o cualquier valor en un par punteado
+
+    /**
+     * Crea una celda nueva.
+     * @param car Primer elemento.
+     * @param cdr Resto de la lista (NIL si es el último).
+     */
+    public Cons(Object car, Object cdr) {
+        this.car = car;
+        this.cdr = cdr;
+    }
+
+    /**
+     * Arma una lista con los valores dados.
+     */
+    public static Cons list(Object... items) {
+        Cons result = NIL;
+        for (int i = items.length - 1; i >= 0; i--) {
+            result = new Cons(items[i], result);
+        }
+        return result;
+    }
+
+    /**
+     * Convierte cualquier List en una lista de celdas. Si ya es una Cons se devuelve tal cual.
+     */
+    public static Cons fromList(List<?> list) {
+        if (list instanceof Cons) {
+            return (Cons) list;
+        }
+        if (list instanceof LazySeq) {
+            list = Arrays.asList(list.toArray()); // Solo se recorre hacia adelante
+        }
+        Cons result = NIL;
+        ListIterator<?> it = list.listIterator(list.size());
+        while (it.hasPrevious()) {
+            result = new Cons(it.previous(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Convierte una expresión citada (quote) en celdas, incluidas sus sublistas.
+     * Los átomos se devuelven sin cambios.
+     */
+    public static Object fromTree(Object expression) {
+        if (!(expression instanceof List) || expression instanceof Cons) {
+            return expression;
+        }
+        List<?> list = (List<?>) expression;
+        Cons result = NIL;
+        ListIterator<?> it = list.listIterator(list.size());
+        while (it.hasPrevious()) {
+            result = new Cons(fromTree(it.previous()), result);
+        }
+        return result;
+    }
+
+    public Object getCar() {
+        return car;
+    }
+
+    public Object getCdr() {
+        return cdr;
+    }
+
+    // PRIMITIVAS DE LISP
+
+    /**
+     * (car x): primer elemento de la lista (null si está vacía).
+     */
+    public static Object car(Object val) {
+        if (val instanceof LazySeq) {
+            return ((LazySeq) val).first(); // Sin calcular el resto de la secuencia
+        }
+        return toCons(val, "car").car;
+    }
+
+    /**
+     * (cdr x): la lista sin su primer elemento. Comparte las celdas con x.
+     */
+    public static Object cdr(Object val) {
+        if (val instanceof LazySeq) {
+            return ((LazySeq) val).rest();
+        }
+        Cons cell = toCons(val, "cdr");
+        return cell == NIL ? NIL : cell.cdr;
+    }
+
+    /**
+     * (cons x lista): lista nueva con x al frente. La lista original no se copia
+     * (salvo que venga del Parser, que se convierte en celdas una sola vez).
+     * Si el segundo valor no es una lista, se arma un par punteado (x . y).
+     */
+    public static Cons cons(Object car, Object cdr) {
+        if (cdr == null) {
+            return new Cons(car, NIL);
+        }
+        if (cdr instanceof List) {
+            return new Cons(car, fromList((List<?>) cdr));
+        }
+        return new Cons(car, cdr);
+    }
+
+    /**
+     * (null x): true si x es la lista vacía (o null).
+     */
+    public static boolean isNull(Object val) {
+        return val == null || (val instanceof List && ((List<?>) val).isEmpty());
+    }
+
+    /**
+     * (length x): cantidad de elementos de la lista (o del vector).
+     */
+    public static Object length(Object val) {
+        if (val == null) {
+            return Numbers.valueOf(0);
+        }
+        if (val instanceof NumericVector) {
+            return Numbers.valueOf(((NumericVector) val).length());
+        }
+        if (!(val instanceof List)) {
+            throw new RuntimeException("length necesita una lista, pero se obtuvo: " + val);
+        }
+        return Numbers.valueOf(((List<?>) val).size());
+    }
+
+    /**
+     * (append a b ...): une las listas. Solo se copian las celdas de las primeras;
+     * la última se comparte con el resultado.
+     */
+    public static Object append(Object[] lists) {
+        if (lists.length == 0) {
+            return NIL;
+        }
+        Object result = lists[lists.length - 1];
+        if (result instanceof List) {
+            result = fromList((List<?>) result);
+        } else if (result == null) {
+            result = NIL;
+        }
+        for (int i = lists.length - 2; i >= 0; i--) {
+            Object list = lists[i];
+            if (list == null) continue;
+            if (!(list instanceof List)) {
+                throw new RuntimeException("append necesita listas, pero se obtuvo: " + list);
+            }
+            Object[] items = ((List<?>) list).toArray(); // Una Cons no se recorre hacia atrás
+            for (int j = items.length - 1; j >= 0; j--) {
+                if (j % Scheduler.CHUNK == 0) {
+                    Scheduler.tick();
+                }
+                result = new Cons(items[j], result);
+            }
+        }
+        return result;
+    }
+
+    // Convierte el argumento de car/cdr en celda, o lanza error si no es una lista
+    private static Cons toCons(Object val, String operation) {
+        if (val == null) {
+            return NIL;
+        }
+        if (!(val instanceof List)) {
+            throw new RuntimeException(operation + " necesita una lista, pero se obtuvo: " + val);
+        }
+        return fromList((List<?>) val);
+    }
+
+    // LIST
+
+    @Override
+    public boolean isEmpty() {
+        return this == NIL;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Cons cell = this; cell != NIL; ) {
+            size++;
+            if (!(cell.cdr instanceof Cons)) break; // Par punteado
+            cell = (Cons) cell.cdr;
+        }
+        return size;
+    }
+
+    /**
+     * Recorre las celdas hacia adelante. No se puede retroceder ni modificar la lista.
+     */
+    @Override
+    public ListIterator<Object> listIterator(int index) {
+        Cells it = new Cells(this);
+        for (int i = 0; i < index; i++) {
+            it.next();
+        }
+        return it;
+    }
+
+    /**
+     * Compara celda por celda, incluido el final de un par punteado.
+     * Con otras listas se compara como cualquier List.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Cons)) {
+            return super.equals(other);
+        }
+        Object a = this;
+        Object b = other;
+        while (a instanceof Cons && b instanceof Cons && a != NIL && b != NIL) {
+            Cons x = (Cons) a;
+            Cons y = (Cons) b;
+            if (x.car == null ? y.car != null : !x.car.equals(y.car)) {
+                return false;
+            }
+            a = x.cdr;
+            b = y.cdr;
+        }
+        // Las dos terminan en NIL, o en el mismo valor si son pares punteados
+        return a == b || (!(a instanceof Cons) && a != null && a.equals(b));
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    /**
+     * Se imprime como en Lisp: (1 2 3), o (1 . 2) para un par punteado.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("(");
+        Object rest = this;
+        while (rest instanceof Cons && rest != NIL) {
+            Cons cell = (Cons) rest;
+            if (out.length() > 1) out.append(' ');
+            out.append(cell.car);
+            rest = cell.cdr;
+        }
+        if (!(rest instanceof Cons)) {
+            out.append(" . ").append(rest);
+        }
+        return out.append(')').toString();
+    }
+
+    /**
+     * Iterador que avanza por las celdas.
+     */
+    private static final class Cells implements ListIterator<Object> {
+        private Object cell;
+        private int index;
+
+        Cells(Cons first) {
+            this.cell = first;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cell instanceof Cons && cell != NIL;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Cons current = (Cons) cell;
+            cell = current.cdr;
+            index++;
+            return current.car;
+        }
+
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+
+        @Override
+        public int previousIndex() {
+            return index - 1;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return index > 0;
+        }
+
+        @Override
+        public Object previous() {
+            throw new UnsupportedOperationException("Una lista cons solo se recorre hacia adelante");
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Las listas cons no se pueden modificar");
+        }
+
+        @Override
+        public void set(Object value) {
+            throw new UnsupportedOperationException("Las listas cons no se pueden modificar");
+        }
+
+        @Override
+        public void add(Object value) {
+            throw new UnsupportedOperationException("Las listas cons no se pueden modificar");
+        }
+    }
+}
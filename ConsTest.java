@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsTest extends LispTest {
+
+    @Test
+    public void testCarCdrCons() {
+        assertEquals(1, run("(car '(1 2 3))"));
+        assertEquals(Arrays.asList(2, 3), run("(cdr '(1 2 3))"));
+        assertEquals(Arrays.asList(0, 1, 2), run("(cons 0 (list 1 2))"));
+        assertEquals("(1 . 2)", run("(cons 1 2)").toString());
+    }
+
+    @Test
+    public void testNullLengthAppend() {
+        assertEquals(true, run("(null (cdr (list 1)))"));
+        assertEquals(false, run("(null (list 1))"));
+        assertEquals(3, run("(length (list 1 2 3))"));
+        assertEquals(Arrays.asList(1, 2, 3, 4), run("(append (list 1) '(2 3) (list 4))"));
+    }
+
+    @Test
+    public void testStructureIsShared() {
+        Cons tail = Cons.list(2, 3);
+        Cons list = Cons.cons(1, tail);
+        assertSame(tail, Cons.cdr(list));
+        Object joined = Cons.append(new Object[] {Cons.list(0), tail});
+        assertSame(tail, Cons.cdr(joined));
+    }
+
+    @Test
+    public void testListsAreImmutable() {
+        Cons list = Cons.list(1, 2);
+        assertThrows(UnsupportedOperationException.class, () -> list.add(3));
+        assertEquals("(1 2)", list.toString());
+    }
+
+    @Test
+    public void testRecursionOverLargeList() {
+        run("(defun construye (n acc) (cond ((equal n 0) acc) (t (construye (- n 1) (cons n acc)))))");
+        run("(defun suma (l acc) (cond ((null l) acc) (t (suma (cdr l) (+ acc (car l))))))");
+        run("(setq numeros (construye 200000 (list)))");
+        assertEquals(200000, run("(length numeros)"));
+        assertEquals(20000100000L, run("(suma numeros 0)"));
+    }
+
+    @Test
+    public void testSameResultWithEvaluator() {
+        interpreter.setUseCompiler(false);
+        assertEquals(Arrays.asList(2, 3), run("(cdr (cons 1 (list 2 3)))"));
+        assertEquals(2, run("(length (append (list 1) (list 2)))"));
+    }
+}
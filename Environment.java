@@ -1,28 +1,68 @@
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Esta clase representa el entorno donde se guardan las variables y funciones definidas en Lisp.
  * También permite crear entornos "anidados" (como cuando se llama a una función recursiva).
+ *
+ * Cada símbolo definido en el entorno tiene una celda (Binding) con su valor y su función.
+ * El Compiler guarda la celda directamente en los nodos, así una variable global se lee
+ * con un acceso a un campo y no con una búsqueda por nombre.
+ *
+ * El entorno se puede leer y modificar desde varios hilos a la vez (pmap, pcall, future):
+ * el mapa de celdas es un ConcurrentHashMap y los campos de cada celda son volatile,
+ * así un hilo siempre ve el último valor que guardó otro. Las lecturas no usan locks.
+ *
+ * Sesiones: varios intérpretes pueden compartir una biblioteca ya cargada.
+ * newSession() crea un entorno vacío encima de la biblioteca; lo que la sesión
+ * define (setq, defun) queda en su propio entorno y tapa a la biblioteca solo para ella,
+ * y lo que no define se lee de la biblioteca sin copiarlo.
+ *
+ * Versión: cada sitio de llamada guarda la función que resolvió (CachedFunction) y la
+ * vuelve a usar mientras version() no cambie. La versión sube cuando cambia cualquier
+ * función o variable global, así no hace falta buscar el nombre en cada llamada.
  */
 public class Environment {
 
-    // Mapa que guarda las variables y sus valores (ej. x -> 5)
-    private HashMap<String, Object> variables;
-
-    // Mapa que guarda las funciones definidas (ej. cuadrado -> función)
-    private HashMap<String, LispFunction> functions;
+    // Celdas de los símbolos definidos en este entorno (ej. x -> 5, cuadrado -> función)
+    private final ConcurrentHashMap<Symbol, Binding> bindings;
 
     // Referencia al entorno padre (para funciones anidadas o recursividad)
     private Environment parent;
 
+    // true si es el entorno de una llamada del Evaluator (ver newLocalScope)
+    private boolean local;
+
+    // Entorno global de este entorno: él mismo, o el del padre si es local
+    private Environment globals = this;
+
+    // Donde se escribe lo que muestra el código, como el reporte de (profile expr) (null: la del padre)
+    private volatile Appendable output;
+
+    // true si save-image y load-image están limitados en este entorno (ver restrictImages)
+    private volatile boolean imagesRestricted;
+
+    // Carpeta donde se permiten las imágenes si están limitadas (null: no se permiten)
+    private volatile Path imageDirectory;
+
+    // Nombres locales de las funciones de este entorno global (ver isShadowed; null: ninguno)
+    private volatile Set<Symbol> locals;
+
+    // Sube cada vez que cambia una función o una variable global
+    private static final AtomicInteger VERSION = new AtomicInteger();
+
     /**
      * Constructor por defecto.
-     * Inicializa los mapas de variables y funciones vacíos.
+     * Inicializa el mapa de celdas vacío.
      */
     public Environment() {
-        this.variables = new HashMap<>();
-        this.functions = new HashMap<>();
+        this.bindings = new ConcurrentHashMap<>();
         this.parent = null; // Por defecto no hay entorno padre
     }
 
@@ -50,6 +90,177 @@ public class Environment {
         return parent != null;
     }
 
+    /**
+     * Crea un entorno de sesión encima de este (ver la descripción de la clase).
+     * Se puede llamar desde varios hilos a la vez.
+     */
+    public Environment newSession() {
+        Environment session = new Environment();
+        session.setParent(this);
+        return session;
+    }
+
+    /**
+     * Crea el entorno local de una llamada del Evaluator (parámetros y setq dentro de la función).
+     * Lo que se define ahí no cambia version(): como el entorno es dinámico, un símbolo que
+     * alguna vez se definió en un entorno local deja de guardarse en los sitios de llamada
+     * (ver isShadowed).
+     */
+    public Environment newLocalScope() {
+        Environment scope = new Environment();
+        scope.setParent(this);
+        scope.local = true;
+        scope.globals = globals;
+        return scope;
+    }
+
+    /**
+     * Devuelve el entorno global (el primero que no es local, subiendo por los padres).
+     */
+    public Environment getGlobals() {
+        return globals;
+    }
+
+    /**
+     * Cambia la salida de este entorno y de los que cuelgan de él (por ejemplo, la
+     * conexión de una sesión del servidor).
+     */
+    public void setOutput(Appendable output) {
+        this.output = output;
+    }
+
+    /**
+     * Limita (save-image) y (load-image) en este entorno y en los que cuelgan de él
+     * (por ejemplo, la sesión de un cliente del servidor).
+     * @param directory Carpeta donde se pueden leer y escribir imágenes, o null para no permitirlas.
+     */
+    public void restrictImages(Path directory) {
+        this.imageDirectory = directory == null ? null : directory.toAbsolutePath().normalize();
+        this.imagesRestricted = true;
+    }
+
+    /**
+     * Ruta del archivo de una imagen según el límite de este entorno o del padre más
+     * cercano que tenga uno. Sin límite, el nombre se usa tal cual.
+     */
+    Path imagePath(String file) {
+        for (Environment env = this; env != null; env = env.parent) {
+            if (env.imagesRestricted) {
+                Path directory = env.imageDirectory;
+                if (directory == null) {
+                    throw new RuntimeException("save-image y load-image no están permitidos en esta sesión");
+                }
+                Path path = directory.resolve(file).normalize();
+                if (!path.startsWith(directory)) {
+                    throw new RuntimeException("La imagen debe estar dentro de " + directory + ": " + file);
+                }
+                return path;
+            }
+        }
+        return Paths.get(file);
+    }
+
+    /**
+     * Salida del entorno: la propia, la del padre más cercano que tenga una, o System.out.
+     */
+    public Appendable getOutput() {
+        for (Environment env = this; env != null; env = env.parent) {
+            if (env.output != null) {
+                return env.output;
+            }
+        }
+        return System.out;
+    }
+
+    /**
+     * Versión actual de las definiciones globales (ver la descripción de la clase).
+     */
+    public static int version() {
+        return VERSION.get();
+    }
+
+    /**
+     * Indica si el símbolo se usó como parámetro o variable local en el Evaluator, en este
+     * entorno global o en los de sus padres (una sesión ve los de su biblioteca). Una llamada
+     * con ese nombre no se puede guardar en el sitio de llamada, porque el entorno local de
+     * quien llama puede taparla (alcance dinámico).
+     */
+    public boolean isShadowed(Symbol symbol) {
+        for (Environment env = globals; env != null; env = env.parent != null ? env.parent.globals : null) {
+            Set<Symbol> names = env.locals;
+            if (names != null && names.contains(symbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Anota un parámetro de una función de este entorno global. Lo hace el Optimizer con
+     * cada defun antes de evaluarla, así no cambia version(): la defun la cambia al guardar
+     * la función. Las funciones donde el Optimizer copió la función de ese nombre vuelven
+     * a su cuerpo original (el parámetro la puede tapar).
+     * @return true si el nombre no estaba anotado.
+     */
+    public boolean declareLocal(Symbol symbol) {
+        if (isShadowed(symbol)) {
+            return false;
+        }
+        Environment owner = globals;
+        synchronized (owner) {
+            if (owner.locals == null) {
+                owner.locals = ConcurrentHashMap.newKeySet();
+            }
+        }
+        if (!owner.locals.add(symbol)) {
+            return false;
+        }
+        LispFunction function = owner.getFunction(symbol);
+        if (function != null) {
+            function.deoptimizeDependents();
+        }
+        return true;
+    }
+
+    // CELDAS
+
+    /**
+     * Devuelve la celda de un símbolo en este entorno, creándola vacía si no existe.
+     * La usa el Compiler para las variables y funciones globales. Mientras la celda
+     * no tenga valor o función propios, los lee de la celda del mismo símbolo en el padre.
+     * @param symbol Símbolo del que se quiere la celda.
+     */
+    public Binding binding(Symbol symbol) {
+        Binding binding = bindings.get(symbol);
+        if (binding == null) {
+            // Una sola celda aunque dos hilos la pidan a la vez
+            binding = bindings.computeIfAbsent(symbol, key -> new Binding(key, this));
+        }
+        return binding;
+    }
+
+    /**
+     * Símbolos que tienen celda en este entorno (sin los padres). Algunas celdas pueden
+     * estar vacías: el Compiler las crea al ver un nombre global.
+     */
+    public Set<Symbol> definedSymbols() {
+        return Collections.unmodifiableSet(bindings.keySet());
+    }
+
+    /**
+     * Busca la celda de un símbolo en este entorno o en algún padre, sin crearla.
+     * @return La celda, o null si ningún entorno la tiene.
+     */
+    private Binding findBinding(Symbol symbol) {
+        for (Environment env = this; env != null; env = env.parent) {
+            Binding binding = env.bindings.get(symbol);
+            if (binding != null) {
+                return binding;
+            }
+        }
+        return null;
+    }
+
     // VARIABLES
 
     /**
@@ -57,8 +268,12 @@ public class Environment {
      * @param name Nombre de la variable.
      * @param value Valor que se le quiere asignar.
      */
+    public void setVariable(Symbol name, Object value) {
+        binding(name).setValue(value);
+    }
+
     public void setVariable(String name, Object value) {
-        variables.put(name, value);
+        setVariable(Symbol.intern(name), value);
     }
 
     /**
@@ -67,20 +282,35 @@ public class Environment {
      * @param name Nombre de la variable.
      * @return Valor de la variable o null si no existe.
      */
-    public Object getVariable(String name) {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        } else if (parent != null) {
-            return parent.getVariable(name);
+    public Object getVariable(Symbol name) {
+        for (Environment env = this; env != null; env = env.parent) {
+            Binding binding = env.bindings.get(name);
+            if (binding != null && binding.bound) {
+                return binding.value;
+            }
         }
         return null;
     }
 
+    public Object getVariable(String name) {
+        return getVariable(Symbol.intern(name));
+    }
+
     /**
      * Verifica si la variable está definida (en este entorno o algún padre).
      */
+    public boolean hasVariable(Symbol name) {
+        for (Environment env = this; env != null; env = env.parent) {
+            Binding binding = env.bindings.get(name);
+            if (binding != null && binding.bound) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean hasVariable(String name) {
-        return variables.containsKey(name) || (parent != null && parent.hasVariable(name));
+        return hasVariable(Symbol.intern(name));
     }
 
     //FUNCIONES
@@ -90,30 +320,152 @@ public class Environment {
      * @param name Nombre de la función.
      * @param function Objeto LispFunction que representa la función.
      */
+    public void setFunction(Symbol name, LispFunction function) {
+        binding(name).setFunction(function);
+    }
+
     public void setFunction(String name, LispFunction function) {
-        functions.put(name, function);
+        setFunction(Symbol.intern(name), function);
     }
 
     /**
      * Devuelve una función por su nombre. La busca en este entorno o en el padre.
      */
-    public LispFunction getFunction(String name) {
-        if (functions.containsKey(name)) {
-            return functions.get(name);
-        } else if (parent != null) {
-            return parent.getFunction(name);
+    public LispFunction getFunction(Symbol name) {
+        for (Environment env = this; env != null; env = env.parent) {
+            Binding binding = env.bindings.get(name);
+            if (binding != null && binding.function != null) {
+                return binding.function;
+            }
         }
         return null;
     }
 
+    public LispFunction getFunction(String name) {
+        return getFunction(Symbol.intern(name));
+    }
+
     /**
      * Verifica si una función está definida en este entorno o en alguno de los padres.
      */
+    public boolean hasFunction(Symbol name) {
+        return getFunction(name) != null;
+    }
+
     public boolean hasFunction(String name) {
-        return functions.containsKey(name) || (parent != null && parent.hasFunction(name));
+        return hasFunction(Symbol.intern(name));
     }
 
-    
+    /**
+     * Celda de un símbolo: guarda su valor como variable y su función (pueden ser distintos,
+     * como en Common Lisp). Un valor null es válido, por eso "bound" indica si hay variable.
+     * Si la celda no tiene valor o función, se usan los de la celda del padre (fallback).
+     */
+    public static class Binding {
+        private final Symbol symbol;
+        private final Environment owner; // Entorno al que pertenece la celda
+        private volatile Binding fallback; // Celda del mismo símbolo en un padre (se busca al usarla)
+        private volatile Object value;
+        private volatile boolean bound;
+        private volatile LispFunction function;
+
+        Binding(Symbol symbol, Environment owner) {
+            this.symbol = symbol;
+            this.owner = owner;
+        }
+
+        public Symbol getSymbol() {
+            return symbol;
+        }
+
+        public Object getValue() {
+            if (bound) {
+                return value;
+            }
+            Binding parent = fallback();
+            return parent != null ? parent.getValue() : null;
+        }
+
+        public void setValue(Object value) {
+            this.value = value;
+            this.bound = true;
+            changed();
+            JitCompiler.assigned(symbol);
+            Optimizer.assigned(symbol);
+        }
+
+        public boolean isBound() {
+            if (bound) {
+                return true;
+            }
+            Binding parent = fallback();
+            return parent != null && parent.isBound();
+        }
+
+        public LispFunction getFunction() {
+            LispFunction own = function;
+            if (own != null) {
+                return own;
+            }
+            Binding parent = fallback();
+            return parent != null ? parent.getFunction() : null;
+        }
+
+        // Celda del padre. Una vez encontrada se guarda (las celdas nunca se borran);
+        // si todavía no existe se vuelve a buscar la próxima vez.
+        private Binding fallback() {
+            Binding parent = fallback;
+            if (parent == null && owner.parent != null) {
+                parent = owner.parent.findBinding(symbol);
+                fallback = parent;
+            }
+            return parent;
+        }
+
+        /**
+         * Cambia la función del símbolo. Si la anterior tenía caché (defun-memo) o código
+         * compilado (JitCompiler), se descartan, porque ya no corresponden a la nueva definición;
+         * las funciones donde el Optimizer copió la anterior vuelven a su cuerpo original.
+         */
+        public void setFunction(LispFunction function) {
+            if (this.function != null) {
+                if (this.function.getMemo() != null) {
+                    this.function.getMemo().clear();
+                }
+                JitCompiler.invalidate(this.function); // La definición vieja vuelve a interpretarse
+                this.function.deoptimizeDependents(); // Quien la tenía copiada ya no vale
+            }
+            this.function = function;
+            changed();
+        }
+
+        // Invalida los sitios de llamada que guardaron una función para este símbolo
+        private void changed() {
+            if (!owner.local) {
+                VERSION.incrementAndGet();
+            } else if (owner.declareLocal(symbol)) {
+                // Un nombre local que el Optimizer no anotó (un setq dentro de una función,
+                // o sin Optimizer): los sitios de llamada que ya lo guardaron dejan de valer
+                VERSION.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Función resuelta en un sitio de llamada: vale mientras version() siga igual
+     * y (en el Evaluator) el entorno global sea el mismo.
+     */
+    public static final class CachedFunction {
+        final int version;
+        final Environment globals;
+        final LispFunction function;
+
+        CachedFunction(int version, Environment globals, LispFunction function) {
+            this.version = version;
+            this.globals = globals;
+            this.function = function;
+        }
+    }
 
     /**
      * Esta clase representa una función definida en Lisp.
@@ -121,16 +473,25 @@ public class Environment {
      */
     public static class LispFunction {
         private String name;
-        private List<String> parameters;
-        private List<Object> body;
+        private List<Symbol> parameters;
+        private volatile List<Object> body;
+        private List<Object> source; // Cuerpo antes del Optimizer (null si no se cambió)
+        private final List<LispFunction> dependents = new ArrayList<>(); // Funciones que copiaron esta (Optimizer)
+        private volatile Node[] compiledBody; // Cuerpo ya compilado (lo llena el Compiler)
+        private Frame closure; // Frame donde se definió la función (null si es global)
+        private MemoCache memo; // Caché de resultados (solo para defun-memo)
+        private int calls; // Llamadas contadas por el JitCompiler (-1: no se compila)
+        private JitCompiler.Code jitCode; // Código compilado a bytecode (null: se interpreta)
+        private Environment globals; // Entorno donde se definió (con el que se compila el cuerpo)
+        private Compiler.Scope scope; // Alcance del cuerpo en el Compiler (null: solo sus parámetros)
 
         /**
          * Crea una nueva función.
          * @param name Nombre de la función (ej. cuadrado).
-         * @param parameters Lista de nombres de parámetros (ej. x, y).
+         * @param parameters Lista de parámetros (ej. x, y).
          * @param body Lista de expresiones que forman el cuerpo de la función.
          */
-        public LispFunction(String name, List<String> parameters, List<Object> body) {
+        public LispFunction(String name, List<Symbol> parameters, List<Object> body) {
             this.name = name;
             this.parameters = parameters;
             this.body = body;
@@ -142,12 +503,124 @@ public class Environment {
             return name;
         }
 
-        public List<String> getParameters() {
+        public List<Symbol> getParameters() {
             return parameters;
         }
 
         public List<Object> getBody() {
             return body;
         }
+
+        public Node[] getCompiledBody() {
+            return compiledBody;
+        }
+
+        public void setCompiledBody(Node[] compiledBody) {
+            this.compiledBody = compiledBody;
+        }
+
+        public Frame getClosure() {
+            return closure;
+        }
+
+        public void setClosure(Frame closure) {
+            this.closure = closure;
+        }
+
+        public MemoCache getMemo() {
+            return memo;
+        }
+
+        public void setMemo(MemoCache memo) {
+            this.memo = memo;
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+
+        public void setCalls(int calls) {
+            this.calls = calls;
+        }
+
+        public Environment getGlobals() {
+            return globals;
+        }
+
+        public void setGlobals(Environment globals) {
+            this.globals = globals;
+        }
+
+        public Compiler.Scope getScope() {
+            return scope;
+        }
+
+        public void setScope(Compiler.Scope scope) {
+            this.scope = scope;
+        }
+
+        public JitCompiler.Code getJitCode() {
+            return jitCode;
+        }
+
+        public void setJitCode(JitCompiler.Code jitCode) {
+            this.jitCode = jitCode;
+        }
+
+        /**
+         * Guarda el cuerpo como estaba antes de que el Optimizer copiara otras funciones en él.
+         */
+        public synchronized void setSource(List<Object> source) {
+            this.source = source;
+        }
+
+        /**
+         * Cuerpo antes del Optimizer, o null si el Optimizer no lo cambió.
+         */
+        public synchronized List<Object> getSource() {
+            return source;
+        }
+
+        /**
+         * Registra una función que tiene el cuerpo de esta copiado (Optimizer).
+         */
+        public synchronized void addDependent(LispFunction function) {
+            dependents.add(function);
+        }
+
+        /**
+         * Vuelve al cuerpo original: descarta el compilado y el código del JitCompiler,
+         * y hace lo mismo con las funciones que copiaron a esta.
+         */
+        public void deoptimize() {
+            boolean changed;
+            synchronized (this) {
+                changed = source != null;
+                if (changed) {
+                    body = source;
+                    source = null;
+                    compiledBody = null;
+                }
+            }
+            if (changed) {
+                JitCompiler.invalidate(this);
+                calls = 0; // Se puede volver a compilar con el cuerpo original
+            }
+            deoptimizeDependents();
+        }
+
+        /**
+         * La función se redefinió: las que copiaron su cuerpo vuelven a su cuerpo original.
+         */
+        public void deoptimizeDependents() {
+            List<LispFunction> copies;
+            synchronized (this) {
+                copies = new ArrayList<>(dependents);
+                dependents.clear();
+            }
+            for (LispFunction function : copies) {
+                function.deoptimize();
+            }
+        }
     }
 }
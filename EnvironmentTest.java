@@ -0,0 +1,167 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnvironmentTest extends LispTest {
+
+    private Environment library;
+
+    @BeforeEach
+    public void setUp() {
+        library = new Environment();
+        LispInterpreter loader = new LispInterpreter(library);
+        run(loader, "(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        run(loader, "(defun escala (n) (* n factor))");
+        run(loader, "(setq factor 10)");
+    }
+
+    @Test
+    public void testSessionsReadTheLibrary() {
+        LispInterpreter session = new LispInterpreter(library.newSession());
+        assertEquals(55, run(session, "(fibonacci 10)"));
+        assertEquals(30, run(session, "(escala 3)"));
+        assertEquals(10, run(session, "factor"));
+    }
+
+    @Test
+    public void testSessionDefinitionsStayInTheSession() {
+        Environment first = library.newSession();
+        LispInterpreter a = new LispInterpreter(first);
+        LispInterpreter b = new LispInterpreter(library.newSession());
+        run(a, "(setq factor 2)");
+        run(a, "(defun fibonacci (n) 0)");
+        assertEquals(2, run(a, "factor"));
+        assertEquals(0, run(a, "(fibonacci 10)"));
+        assertEquals(10, run(b, "factor"));
+        assertEquals(55, run(b, "(fibonacci 10)"));
+        assertEquals(10, library.getVariable("factor"));
+        // Las funciones de la biblioteca siguen usando las celdas de la biblioteca
+        assertEquals(30, run(a, "(escala 3)"));
+    }
+
+    @Test
+    public void testLibraryIsSharedNotCopied() {
+        Environment session = library.newSession();
+        LispInterpreter interpreter = new LispInterpreter(session);
+        run(interpreter, "(fibonacci 5)");
+        assertSame(library.getFunction("fibonacci"), session.binding(Symbol.intern("fibonacci")).getFunction());
+        assertFalse(session.binding(Symbol.intern("fibonacci")).isBound());
+    }
+
+    @Test
+    public void testLaterLibraryDefinitionsAreVisible() {
+        LispInterpreter session = new LispInterpreter(library.newSession());
+        assertEquals(Symbol.intern("nuevo"), run(session, "nuevo"));
+        run(new LispInterpreter(library), "(setq nuevo 7)");
+        assertEquals(7, run(session, "nuevo"));
+    }
+
+    @Test
+    public void testEvaluatorSessions() {
+        LispInterpreter session = new LispInterpreter(library.newSession());
+        session.setUseCompiler(false);
+        run(session, "(setq factor 3)");
+        assertEquals(9, run(session, "(escala 3)")); // Alcance dinámico del Evaluator
+        assertEquals(10, library.getVariable("factor"));
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int n = i % 20;
+                results.add(threads.submit(() -> {
+                    LispInterpreter session = new LispInterpreter(library.newSession());
+                    run(session, "(setq factor " + n + ")");
+                    return run(session, "(list (fibonacci 15) factor)");
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(Arrays.asList(610, i % 20), results.get(i).get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void testCallSiteSeesRedefinition() {
+        for (boolean compiled : new boolean[] {true, false}) {
+            LispInterpreter session = new LispInterpreter(library.newSession());
+            session.setUseCompiler(compiled);
+            run(session, "(defun doble (n) (* n 2))");
+            Object call = parse("(doble 21)");
+            assertEquals(42, session.evaluate(call));
+            run(session, "(defun doble (n) (+ n n 1))");
+            assertEquals(43, session.evaluate(call));
+            run(session, "(setq doble 7)");
+            assertEquals(7, session.evaluate(call));
+        }
+    }
+
+    @Test
+    public void testCallSiteSharedBetweenSessions() {
+        LispInterpreter a = new LispInterpreter(library.newSession());
+        LispInterpreter b = new LispInterpreter(library.newSession());
+        a.setUseCompiler(false);
+        b.setUseCompiler(false);
+        run(b, "(defun fibonacci (n) 0)");
+        // La misma lista evaluada en dos sesiones resuelve la función de cada una
+        Object call = parse("(fibonacci 10)");
+        assertEquals(55, a.evaluate(call));
+        assertEquals(0, b.evaluate(call));
+        assertEquals(55, a.evaluate(call));
+    }
+
+    @Test
+    public void testDeoptimizedLibraryFunctionKeepsLibraryCells() {
+        LispInterpreter loader = new LispInterpreter(library);
+        run(loader, "(setq base 100)");
+        run(loader, "(defun sq (x) (* x x))");
+        run(loader, "(defun g (n) (+ (sq n) base))"); // El Optimizer copia sq en g
+        run(loader, "(defun sq (x) (* x x x))");      // g vuelve a su cuerpo original
+        LispInterpreter a = new LispInterpreter(library.newSession());
+        LispInterpreter b = new LispInterpreter(library.newSession());
+        run(a, "(setq base 1)");
+        assertEquals(108, run(a, "(g 2)"));
+        assertEquals(108, run(b, "(g 2)"));
+        assertEquals(108, run(loader, "(g 2)"));
+    }
+
+    @Test
+    public void testParameterShadowsCachedFunction() {
+        LispInterpreter session = new LispInterpreter(library.newSession());
+        session.setUseCompiler(false);
+        run(session, "(defun uno (x) (+ x 1))");
+        run(session, "(defun llama-uno () (uno 0))");
+        assertEquals(1, run(session, "(llama-uno)"));
+        // Alcance dinámico del Evaluator: el parámetro uno de quien llama tapa a la función
+        run(session, "(defun tapa (uno) (+ (llama-uno) 0))");
+        assertEquals(5, run(session, "(tapa 5)"));
+    }
+
+    @Test
+    public void testParametersStayInTheirSession() {
+        Environment first = library.newSession();
+        Environment second = library.newSession();
+        run(new LispInterpreter(first), "(defun tapa (fibonacci) fibonacci)");
+        assertTrue(first.isShadowed(Symbol.intern("fibonacci")));
+        assertFalse(second.isShadowed(Symbol.intern("fibonacci")));
+        assertFalse(library.isShadowed(Symbol.intern("fibonacci")));
+    }
+
+    @Test
+    public void testParametersDoNotChangeTheVersion() {
+        Optimizer optimizer = new Optimizer(library.newSession());
+        int version = Environment.version();
+        optimizer.optimize(parse("(defun otra (a b) (+ a b))"));
+        // Solo se anotan los parámetros: la versión cambia cuando se guarda la función
+        assertEquals(version, Environment.version());
+    }
+}
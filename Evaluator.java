@@ -1,4 +1,6 @@
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * La clase Evaluator evalúa expresiones Lisp representadas como listas de objetos.
@@ -8,6 +10,32 @@ import java.util.*;
 public class Evaluator {
     private Environment environment; // Entorno actual donde se almacenan variables y funciones
 
+    // Operadores que evaluateExpression maneja directamente (no son llamadas a funciones)
+    private static final Set<String> SPECIAL_FORMS = new HashSet<>(Arrays.asList(
+        "+", "-", "*", "/", "setq", "atom", "list", "equal", "<", ">", "<=", ">=", "cond", "quote", "defun",
+        "defun-memo", "memo-stats", "memo-clear",
+        "car", "cdr", "cons", "null", "length", "append", "pcall", "pmap", "future", "deref", "profile",
+        "save-image", "load-image", "range", "lazy-map", "lazy-filter", "take", "drop", "reduce",
+        "make-vector", "vref", "vset!", "vsum", "vdot", "vmap",
+        "make-hash-table", "gethash", "puthash", "remhash", "hash-table-count", "maphash"));
+
+    /**
+     * Indica si el nombre es una forma especial (no una llamada a función).
+     */
+    static boolean isSpecialForm(Symbol name) {
+        return SPECIAL_FORMS.contains(name.getName());
+    }
+
+    /**
+     * Devuelve una expresión compuesta como List<Object>. El Parser, el Optimizer y Cons
+     * solo arman listas de Object, así que la conversión es segura aunque Java no la
+     * pueda revisar en ejecución.
+     */
+    @SuppressWarnings("unchecked")
+    static List<Object> asList(Object expression) {
+        return (List<Object>) expression;
+    }
+
     /**
      * Constructor del Evaluator.
      * @param environment El entorno donde se definen variables y funciones.
@@ -23,16 +51,15 @@ public class Evaluator {
      */
     public Object evaluateExpression(Object expression) {
         if (expression instanceof List) {
-            List<Object> exprList = (List<Object>) expression;
+            List<Object> exprList = asList(expression);
             if (exprList.isEmpty()) return null;
 
             Object first = exprList.get(0);
 
-            if (first instanceof String) {
-                String operator = (String) first;
-
+            Symbol operator = Symbol.of(first);
+            if (operator != null) {
                 // Evaluar según el operador o nombre de función
-                switch (operator) {
+                switch (operator.getName()) {
                     case "+": return evaluateAddition(exprList);
                     case "-": return evaluateSubtraction(exprList);
                     case "*": return evaluateMultiplication(exprList);
@@ -46,23 +73,70 @@ public class Evaluator {
                     case "<=": return evaluateLessThanOrEqual(exprList);
                     case ">=": return evaluateGreaterThanOrEqual(exprList);
                     case "cond": return evaluateCond(exprList);
+                    case "car": return Cons.car(evaluateExpression(exprList.get(1)));
+                    case "cdr": return Cons.cdr(evaluateExpression(exprList.get(1)));
+                    case "cons": return Cons.cons(evaluateExpression(exprList.get(1)), evaluateExpression(exprList.get(2)));
+                    case "null": return Cons.isNull(evaluateExpression(exprList.get(1)));
+                    case "length": return Cons.length(evaluateExpression(exprList.get(1)));
+                    case "append": return evaluateAppend(exprList);
+                    case "pcall": return evaluatePCall(exprList);
+                    case "pmap": return evaluatePMap(exprList);
+                    case "future": return evaluateFuture(exprList);
+                    case "profile": return Profiler.profile(() -> evaluateExpression(exprList.get(1)), environment.getOutput());
+                    case "save-image": return Image.evaluate(true, environment, exprList.get(1));
+                    case "load-image": return Image.evaluate(false, environment, exprList.get(1));
+                    case "deref": return Parallel.deref(evaluateExpression(exprList.get(1)));
+                    case "range": return LazySeq.range(evaluateAll(exprList.subList(1, exprList.size())));
+                    case "lazy-map": return evaluateLazyMap(exprList, false);
+                    case "lazy-filter": return evaluateLazyMap(exprList, true);
+                    case "take": return LazySeq.take(LazySeq.count(evaluateExpression(exprList.get(1)), "take"),
+                        evaluateExpression(exprList.get(2)));
+                    case "drop": return LazySeq.drop(LazySeq.count(evaluateExpression(exprList.get(1)), "drop"),
+                        evaluateExpression(exprList.get(2)));
+                    case "reduce": return evaluateReduce(exprList);
+                    case "make-vector": return NumericVector.make(evaluateAll(exprList.subList(1, exprList.size())));
+                    case "vref": return NumericVector.vref(evaluateExpression(exprList.get(1)), evaluateExpression(exprList.get(2)));
+                    case "vset!": return NumericVector.vset(evaluateExpression(exprList.get(1)),
+                        evaluateExpression(exprList.get(2)), evaluateExpression(exprList.get(3)));
+                    case "vsum": return NumericVector.vsum(evaluateExpression(exprList.get(1)));
+                    case "vdot": return NumericVector.vdot(evaluateExpression(exprList.get(1)), evaluateExpression(exprList.get(2)));
+                    case "vmap": return evaluateVMap(exprList);
+                    case "make-hash-table": return LispHashTable.make(evaluateAll(exprList.subList(1, exprList.size())));
+                    case "gethash": return LispHashTable.gethash(evaluateAll(exprList.subList(1, exprList.size())));
+                    case "puthash": {
+                        Object key = evaluateExpression(exprList.get(1));
+                        Object value = evaluateExpression(exprList.get(2));
+                        return LispHashTable.of(evaluateExpression(exprList.get(3)), "puthash").put(key, value);
+                    }
+                    case "remhash": {
+                        Object key = evaluateExpression(exprList.get(1));
+                        return LispHashTable.of(evaluateExpression(exprList.get(2)), "remhash").remove(key);
+                    }
+                    case "hash-table-count": return Numbers.valueOf(
+                        LispHashTable.of(evaluateExpression(exprList.get(1)), "hash-table-count").size());
+                    case "maphash": return evaluateMapHash(exprList);
                     case "quote": return evaluateQuote(exprList);
                     case "defun": return evaluateDefun(exprList);
+                    case "defun-memo": return evaluateDefun(exprList);
+                    case "memo-stats": return evaluateMemoStats(exprList);
+                    case "memo-clear": return evaluateMemoClear(exprList);
                     default:
+                        Environment.LispFunction function = resolveCall(exprList, operator);
+                        if (function != null) {
+                            return callFunction(function, evaluateArguments(function, exprList.subList(1, exprList.size())), environment);
+                        }
                         if (environment.hasVariable(operator)) {
                             return environment.getVariable(operator);
                         }
-                        if (environment.hasFunction(operator)) {
-                            return evaluateFunctionCall(operator, exprList.subList(1, exprList.size()));
-                        }
                         throw new RuntimeException("Operador desconocido: " + operator);
                 }
             }
         }
 
         // Si es una variable suelta, la retorna desde el entorno
-        if (expression instanceof String && environment.hasVariable((String) expression)) {
-            return environment.getVariable((String) expression);
+        Symbol symbol = Symbol.of(expression);
+        if (symbol != null && environment.hasVariable(symbol)) {
+            return environment.getVariable(symbol);
         }
 
         // Si no es lista ni variable, devuelve directamente (ej. número)
@@ -70,44 +144,352 @@ public class Evaluator {
     }
 
     /**
-     * Evalúa una llamada a una función definida con defun.
+     * Busca la función que llama una lista cuyo operador no es forma especial.
+     * Si la lista la armó el Parser (CallSite), usa la función que quedó guardada ahí.
+     * @return La función, o null si el operador es una variable o no está definido.
      */
-    private Object evaluateFunctionCall(String name, List<Object> args) {
-        Environment.LispFunction function = environment.getFunction(name);
-        Environment localEnv = new Environment();
-        localEnv.setParent(environment); // Hereda entorno padre
+    private Environment.LispFunction resolveCall(List<Object> exprList, Symbol operator) {
+        if (exprList instanceof CallSite) {
+            return ((CallSite) exprList).lookup(environment, operator);
+        }
+        return environment.hasVariable(operator) ? null : environment.getFunction(operator);
+    }
+
+    /**
+     * Lista leída por el Parser. Si es una llamada a función, guarda la función que resolvió
+     * (caché en línea): mientras Environment.version() no cambie y se evalúe con el mismo
+     * entorno global, la llamada no busca el nombre en la cadena de entornos.
+     */
+    public static final class CallSite extends ArrayList<Object> {
+        private static final long serialVersionUID = 1L;
 
-        // Asignar argumentos a parámetros
-        for (int i = 0; i < function.getParameters().size(); i++) {
-            Object argValue = evaluateExpression(args.get(i));
-            localEnv.setVariable(function.getParameters().get(i), argValue);
+        private transient Environment.CachedFunction cache;
+
+        Environment.LispFunction lookup(Environment environment, Symbol operator) {
+            Environment.CachedFunction cached = cache;
+            Environment globals = environment.getGlobals();
+            if (cached != null && cached.version == Environment.version() && cached.globals == globals) {
+                return cached.function;
+            }
+            int version = Environment.version(); // Antes de buscar: si algo cambia mientras tanto, no vale
+            if (environment.hasVariable(operator)) {
+                return null;
+            }
+            Environment.LispFunction function = environment.getFunction(operator);
+            // Un parámetro con el mismo nombre en quien llama podría taparla (alcance dinámico)
+            if (function != null && !environment.isShadowed(operator)) {
+                cache = new Environment.CachedFunction(version, globals, function);
+            }
+            return function;
         }
+    }
 
-        // Evaluar cuerpo en entorno local
-        Evaluator evaluator = new Evaluator(localEnv);
-        Object result = null;
-        for (Object expr : function.getBody()) {
-            result = evaluator.evaluateExpression(expr);
+    /**
+     * Llama a una función con sus argumentos ya evaluados.
+     * Usa el código compilado si la función ya está compilada (JitCompiler);
+     * si se definió con defun-memo, primero busca el resultado en su caché.
+     * Si hay un Profiler activo, la llamada se mide.
+     * Cada llamada gasta una reducción del Scheduler.
+     */
+    private Object callFunction(Environment.LispFunction function, Object[] values, Environment parent) {
+        Scheduler.tick();
+        Profiler profiler = Profiler.active();
+        if (profiler == null) {
+            return dispatch(function, values, parent);
         }
+        profiler.enter(function);
+        try {
+            return dispatch(function, values, parent);
+        } finally {
+            profiler.exit();
+        }
+    }
 
+    private Object dispatch(Environment.LispFunction function, Object[] values, Environment parent) {
+        Object compiled = JitCompiler.call(function, values);
+        if (compiled != JitCompiler.NOT_COMPILED) {
+            return compiled;
+        }
+        MemoCache memo = function.getMemo();
+        if (memo == null) {
+            return runFunction(function, values, parent);
+        }
+        Object cached = memo.get(values);
+        if (cached != MemoCache.MISSING) {
+            return cached;
+        }
+        Object result = runFunction(function, values, parent);
+        memo.put(values, result);
         return result;
     }
 
     /**
-     * Define una función en el entorno.
+     * Evalúa el cuerpo de una función.
+     * Las llamadas en posición de cola (la última expresión del cuerpo o la rama
+     * elegida de un cond) no se hacen recursivamente: se repite el ciclo con la
+     * nueva función y sus argumentos, así la pila de Java no crece.
+     */
+    private Object runFunction(Environment.LispFunction function, Object[] values, Environment parent) {
+        while (true) {
+            Environment localEnv = parent.newLocalScope(); // Hereda entorno padre
+
+            // Asignar argumentos a parámetros
+            for (int i = 0; i < values.length; i++) {
+                localEnv.setVariable(function.getParameters().get(i), values[i]);
+            }
+
+            // Evaluar cuerpo en entorno local
+            Evaluator evaluator = new Evaluator(localEnv);
+            List<Object> body = function.getBody();
+            if (body.isEmpty()) return null;
+            for (int i = 0; i < body.size() - 1; i++) {
+                evaluator.evaluateExpression(body.get(i));
+            }
+
+            Object result = evaluator.evaluateTail(body.get(body.size() - 1));
+            if (!(result instanceof TailCall)) {
+                return result;
+            }
+            TailCall next = (TailCall) result;
+            if (next.function.getMemo() != null) {
+                // El resultado de una función con memo se tiene que guardar: se llama normalmente
+                return callFunction(next.function, next.values, next.parent);
+            }
+            Scheduler.tick();
+            Profiler profiler = Profiler.active();
+            if (profiler != null) {
+                profiler.tailCall(next.function);
+            }
+            Object compiled = JitCompiler.call(next.function, next.values);
+            if (compiled != JitCompiler.NOT_COMPILED) {
+                return compiled;
+            }
+            function = next.function;
+            values = next.values;
+            parent = next.parent;
+        }
+    }
+
+    /**
+     * Evalúa los argumentos de una llamada en el entorno actual.
+     */
+    private Object[] evaluateArguments(Environment.LispFunction function, List<Object> args) {
+        Object[] values = new Object[function.getParameters().size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluateExpression(args.get(i));
+        }
+        return values;
+    }
+
+    /**
+     * Evalúa una expresión que está en posición de cola.
+     * Si es una llamada a función devuelve un TailCall en vez de llamarla;
+     * si es un cond, la rama elegida también queda en posición de cola.
+     */
+    private Object evaluateTail(Object expression) {
+        Symbol operator = expression instanceof List && !((List<?>) expression).isEmpty()
+            ? Symbol.of(((List<?>) expression).get(0)) : null;
+        if (operator != null) {
+            List<Object> exprList = asList(expression);
+
+            if (operator.getName().equals("cond")) {
+                for (int i = 1; i < exprList.size(); i++) {
+                    List<?> conditionPair = (List<?>) exprList.get(i);
+                    Object condition = evaluateExpression(conditionPair.get(0));
+                    if ((condition instanceof Boolean && (Boolean) condition)
+                        || (!(condition instanceof Boolean) && condition != null)) {
+                        return evaluateTail(conditionPair.get(1));
+                    }
+                }
+                return null;
+            }
+
+            Environment.LispFunction function = SPECIAL_FORMS.contains(operator.getName())
+                ? null : resolveCall(exprList, operator);
+            if (function != null) {
+                Object[] values = evaluateArguments(function, exprList.subList(1, exprList.size()));
+                return new TailCall(function, values, tailParent(function));
+            }
+        }
+        return evaluateExpression(expression);
+    }
+
+    /**
+     * Entorno del que cuelga una llamada de cola. Con alcance dinámico la función llamada
+     * ve las variables de quien llama, así que cuelga del entorno actual. Si sus parámetros
+     * tapan todo lo que se definió aquí (una función que se llama a sí misma), el entorno
+     * actual ya no se puede ver y se salta, así un ciclo no alarga la cadena de entornos.
+     */
+    private Environment tailParent(Environment.LispFunction function) {
+        if (function.getParameters().containsAll(environment.definedSymbols())) {
+            return environment.getParent();
+        }
+        return environment;
+    }
+
+    /**
+     * Llamada pendiente en posición de cola (ver runFunction).
+     */
+    private static class TailCall {
+        private final Environment.LispFunction function;
+        private final Object[] values;
+        private final Environment parent;
+
+        TailCall(Environment.LispFunction function, Object[] values, Environment parent) {
+            this.function = function;
+            this.values = values;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Define una función en el entorno (defun o defun-memo).
      */
     private Object evaluateDefun(List<Object> expr) {
-        String functionName = (String) expr.get(1);
-        List<String> params = new ArrayList<>();
+        Symbol functionName = Symbol.of(expr.get(1));
+        List<Symbol> params = new ArrayList<>();
         for (Object o : (List<?>) expr.get(2)) {
-            params.add((String) o);
+            params.add(Symbol.of(o));
         }
         List<Object> body = expr.subList(3, expr.size());
-        Environment.LispFunction fn = new Environment.LispFunction(functionName, params, body);
+        Environment.LispFunction fn = new Environment.LispFunction(functionName.getName(), params, body);
+        fn.setGlobals(environment);
+        if (Symbol.of(expr.get(0)).getName().equals("defun-memo")) {
+            fn.setMemo(new MemoCache(MemoCache.DEFAULT_CAPACITY));
+        }
         environment.setFunction(functionName, fn);
         return functionName;
     }
 
+    /**
+     * (memo-stats nombre): devuelve (aciertos fallos tamaño) de la caché de la función.
+     */
+    private Object evaluateMemoStats(List<Object> expr) {
+        return memoOf(expr.get(1)).statistics();
+    }
+
+    /**
+     * (memo-clear nombre): borra la caché de la función.
+     */
+    private Object evaluateMemoClear(List<Object> expr) {
+        memoOf(expr.get(1)).clear();
+        return true;
+    }
+
+    private MemoCache memoOf(Object name) {
+        Environment.LispFunction function = environment.getFunction(Symbol.of(name));
+        if (function == null || function.getMemo() == null) {
+            throw new RuntimeException("La función no usa memo: " + name);
+        }
+        return function.getMemo();
+    }
+
+    // EVALUACIÓN EN PARALELO (ver Parallel)
+
+    /**
+     * (pcall expr1 expr2 ...): evalúa cada expresión en paralelo, cada una en su propio entorno hijo.
+     */
+    private Object evaluatePCall(List<Object> expr) {
+        List<Supplier<Object>> bodies = new ArrayList<>(expr.size() - 1);
+        for (Object item : expr.subList(1, expr.size())) {
+            bodies.add(() -> childEvaluator().evaluateExpression(item));
+        }
+        return Parallel.evaluateAll(bodies);
+    }
+
+    /**
+     * (pmap funcion lista): llama a la función con cada elemento, en paralelo.
+     */
+    private Object evaluatePMap(List<Object> expr) {
+        Symbol name = Compiler.functionName(expr.get(1));
+        Environment.LispFunction function = environment.getFunction(name);
+        if (function == null) {
+            throw new RuntimeException("Operador desconocido: " + name);
+        }
+        if (function.getParameters().size() != 1) {
+            throw new RuntimeException("pmap necesita una función de un parámetro: " + name);
+        }
+        Object items = evaluateExpression(expr.get(2));
+        if (!(items instanceof List)) {
+            throw new RuntimeException("pmap necesita una lista, pero se obtuvo: " + items);
+        }
+        Object[] values = ((List<?>) items).toArray();
+        List<Supplier<Object>> bodies = new ArrayList<>(values.length);
+        for (Object value : values) {
+            bodies.add(() -> callFunction(function, new Object[] {value}, environment));
+        }
+        return Parallel.evaluateAll(bodies);
+    }
+
+    /**
+     * (lazy-map funcion secuencia) o (lazy-filter funcion secuencia): la función se llama
+     * cuando se piden los elementos, no ahora.
+     */
+    private Object evaluateLazyMap(List<Object> expr, boolean filter) {
+        String operation = filter ? "lazy-filter" : "lazy-map";
+        Symbol name = Compiler.functionName(expr.get(1));
+        Environment.LispFunction function = LazySeq.check(environment.getFunction(name), name, 1, operation);
+        Object seq = evaluateExpression(expr.get(2));
+        Environment env = environment;
+        UnaryOperator<Object> call = value -> callFunction(function, new Object[] {value}, env);
+        return filter ? LazySeq.filter(call, seq) : LazySeq.map(call, seq);
+    }
+
+    /**
+     * (reduce funcion inicial secuencia)
+     */
+    private Object evaluateReduce(List<Object> expr) {
+        Symbol name = Compiler.functionName(expr.get(1));
+        Environment.LispFunction function = LazySeq.check(environment.getFunction(name), name, 2, "reduce");
+        Object initial = evaluateExpression(expr.get(2));
+        Object seq = evaluateExpression(expr.get(3));
+        return LazySeq.reduce((result, value) -> callFunction(function, new Object[] {result, value}, environment),
+            initial, seq);
+    }
+
+    /**
+     * (vmap funcion vector)
+     */
+    private Object evaluateVMap(List<Object> expr) {
+        Symbol name = Compiler.functionName(expr.get(1));
+        Environment.LispFunction function = LazySeq.check(environment.getFunction(name), name, 1, "vmap");
+        NumericVector vector = NumericVector.of(evaluateExpression(expr.get(2)), "vmap");
+        return vector.map(value -> callFunction(function, new Object[] {value}, environment));
+    }
+
+    /**
+     * (maphash funcion tabla): llama a la función con cada llave y valor. Devuelve nil.
+     */
+    private Object evaluateMapHash(List<Object> expr) {
+        Symbol name = Compiler.functionName(expr.get(1));
+        Environment.LispFunction function = LazySeq.check(environment.getFunction(name), name, 2, "maphash");
+        LispHashTable table = LispHashTable.of(evaluateExpression(expr.get(2)), "maphash");
+        table.forEach((key, value) -> callFunction(function, new Object[] {key, value}, environment));
+        return null;
+    }
+
+    // Evalúa cada expresión de la lista, en orden
+    private Object[] evaluateAll(List<Object> exprs) {
+        Object[] values = new Object[exprs.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluateExpression(exprs.get(i));
+        }
+        return values;
+    }
+
+    /**
+     * (future expr): empieza a evaluar la expresión en otro hilo, en un entorno hijo.
+     */
+    private Object evaluateFuture(List<Object> expr) {
+        Object body = expr.get(1);
+        return Parallel.future(() -> childEvaluator().evaluateExpression(body));
+    }
+
+    // Evaluador con un entorno nuevo que hereda del actual (lo que haga setq queda en la tarea)
+    private Evaluator childEvaluator() {
+        return new Evaluator(environment.newLocalScope());
+    }
+
     /**
      * Retorna el valor de una expresión sin evaluarla.
      */
@@ -120,7 +502,7 @@ public class Evaluator {
      */
     private Object evaluateCond(List<Object> expr) {
         for (int i = 1; i < expr.size(); i++) {
-            List<Object> conditionPair = (List<Object>) expr.get(i);
+            List<?> conditionPair = (List<?>) expr.get(i);
             Object condition = evaluateExpression(conditionPair.get(0));
             if ((condition instanceof Boolean && (Boolean) condition)
                 || (!(condition instanceof Boolean) && condition != null)) {
@@ -134,7 +516,7 @@ public class Evaluator {
      * Asigna un valor a una variable (SETQ).
      */
     private Object evaluateSetq(List<Object> expr) {
-        String name = (String) expr.get(1);
+        Symbol name = Symbol.of(expr.get(1));
         Object value = evaluateExpression(expr.get(2));
         environment.setVariable(name, value);
         return value;
@@ -152,11 +534,22 @@ public class Evaluator {
      * Evalúa una lista de expresiones.
      */
     private Object evaluateList(List<Object> expr) {
-        List<Object> result = new ArrayList<>();
+        Object[] values = new Object[expr.size() - 1];
         for (int i = 1; i < expr.size(); i++) {
-            result.add(evaluateExpression(expr.get(i)));
+            values[i - 1] = evaluateExpression(expr.get(i));
         }
-        return result;
+        return Cons.list(values);
+    }
+
+    /**
+     * Une listas (APPEND). La última se comparte con el resultado.
+     */
+    private Object evaluateAppend(List<Object> expr) {
+        Object[] lists = new Object[expr.size() - 1];
+        for (int i = 1; i < expr.size(); i++) {
+            lists[i - 1] = evaluateExpression(expr.get(i));
+        }
+        return Cons.append(lists);
     }
 
     /**
@@ -170,58 +563,71 @@ public class Evaluator {
 
     // OPERACIONES DE COMPARACION
     private Object evaluateLessThan(List<Object> expr) { // Menor que (<)
-        return getNumber(expr.get(1)) < getNumber(expr.get(2));
+        return Numbers.compare(getNumber(expr.get(1)), getNumber(expr.get(2))) < 0;
     }
 
     private Object evaluateGreaterThan(List<Object> expr) { // Mayor que (>)
-        return getNumber(expr.get(1)) > getNumber(expr.get(2));
+        return Numbers.compare(getNumber(expr.get(1)), getNumber(expr.get(2))) > 0;
     }
 
     private Object evaluateLessThanOrEqual(List<Object> expr) { // Menor o igual que (<=)
-        return getNumber(expr.get(1)) <= getNumber(expr.get(2));
+        return Numbers.compare(getNumber(expr.get(1)), getNumber(expr.get(2))) <= 0;
     }
 
     private Object evaluateGreaterThanOrEqual(List<Object> expr) { // Mayor o igual que (>=)
-        return getNumber(expr.get(1)) >= getNumber(expr.get(2));
+        return Numbers.compare(getNumber(expr.get(1)), getNumber(expr.get(2))) >= 0;
     }
 
-    // OPERACIONES ARITMETICAS
+    // OPERACIONES ARITMETICAS (aceptan cualquier cantidad de argumentos)
     private Object evaluateAddition(List<Object> expr) { // Suma
-        return getNumber(expr.get(1)) + getNumber(expr.get(2));
+        Object result = Numbers.valueOf(0);
+        for (int i = 1; i < expr.size(); i++) {
+            result = Numbers.add(result, getNumber(expr.get(i)));
+        }
+        return result;
     }
 
     private Object evaluateSubtraction(List<Object> expr) { // Resta
-        return getNumber(expr.get(1)) - getNumber(expr.get(2));
+        Object result = getNumber(expr.get(1));
+        if (expr.size() == 2) return Numbers.negate(result);
+        for (int i = 2; i < expr.size(); i++) {
+            result = Numbers.subtract(result, getNumber(expr.get(i)));
+        }
+        return result;
     }
 
     private Object evaluateMultiplication(List<Object> expr) { // Multiplicacion
-        return getNumber(expr.get(1)) * getNumber(expr.get(2));
+        Object result = Numbers.valueOf(1);
+        for (int i = 1; i < expr.size(); i++) {
+            result = Numbers.multiply(result, getNumber(expr.get(i)));
+        }
+        return result;
     }
 
     private Object evaluateDivision(List<Object> expr) { // Division
-        int divisor = getNumber(expr.get(2));
-        if (divisor == 0) throw new ArithmeticException("No se puede dividir por 0");
-        return getNumber(expr.get(1)) / divisor;
+        Object result = getNumber(expr.get(1));
+        if (expr.size() == 2) return Numbers.divide(Numbers.valueOf(1), result);
+        for (int i = 2; i < expr.size(); i++) {
+            result = Numbers.divide(result, getNumber(expr.get(i)));
+        }
+        return result;
     }
 
     /**
      * Obtiene un número desde una expresión o variable.
-     * Lanza error si no puede convertirlo a entero.
+     * Lanza error si no es un entero (Integer, Long o BigInteger).
      */
-    private int getNumber(Object obj) {
+    private Object getNumber(Object obj) {
         Object val = obj;
 
-        if (val instanceof String && environment.hasVariable((String) val)) {
-            val = environment.getVariable((String) val);
+        Symbol symbol = Symbol.of(val);
+        if (symbol != null && environment.hasVariable(symbol)) {
+            val = environment.getVariable(symbol);
         } else if (val instanceof List) {
             val = evaluateExpression(val);
         }
 
-        if (val instanceof Integer) {
-            return (int) val;
-        }
-
-        throw new RuntimeException("Se esperaba un número, pero se obtuvo: " + val);
+        return Numbers.check(val);
     }
 }
 
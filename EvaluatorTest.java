@@ -91,4 +91,30 @@ public class EvaluatorTest {
         List<Object> expr = Arrays.asList("quote", Arrays.asList("+", 1, 2));
         assertEquals(Arrays.asList("+", 1, 2), evaluator.evaluateExpression(expr));
     }
+
+    @Test
+    public void testTailRecursionDoesNotOverflow() {
+        // (defun cuenta (n acc) (cond ((<= n 0) acc) (t (cuenta (- n 1) (+ acc 1)))))
+        evaluator.evaluateExpression(Arrays.asList("defun", "cuenta", Arrays.asList("n", "acc"),
+            Arrays.asList("cond",
+                Arrays.asList(Arrays.asList("<=", "n", 0), "acc"),
+                Arrays.asList("t", Arrays.asList("cuenta", Arrays.asList("-", "n", 1), Arrays.asList("+", "acc", 1))))));
+        assertEquals(100000, evaluator.evaluateExpression(Arrays.asList("cuenta", 100000, 0)));
+    }
+
+    @Test
+    public void testTailCallSeesCallerVariables() {
+        // (defun g () x) (defun f (x) (g)): alcance dinámico, g lee el x de f aunque sea una llamada de cola
+        evaluator.evaluateExpression(Arrays.asList("defun", "g", Arrays.asList(), "x"));
+        evaluator.evaluateExpression(Arrays.asList("defun", "f", Arrays.asList("x"), Arrays.asList("g")));
+        evaluator.evaluateExpression(Arrays.asList("defun", "h", Arrays.asList("x"), Arrays.asList("+", 0, Arrays.asList("g"))));
+        assertEquals(5, evaluator.evaluateExpression(Arrays.asList("f", 5)));
+        assertEquals(5, evaluator.evaluateExpression(Arrays.asList("h", 5)));
+    }
+
+    @Test
+    public void testAdditionDoesNotOverflow() {
+        List<Object> expr = Arrays.asList("+", Integer.MAX_VALUE, 1, 1);
+        assertEquals(2147483649L, evaluator.evaluateExpression(expr));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Caché en disco de las expresiones ya parseadas de un archivo Lisp (la usa ScriptLoader).
+ *
+ * Solo se guardan las expresiones tal como las deja el Parser (listas, números y símbolos).
+ * No se guardan ya resueltas ni optimizadas: el Compiler y el Optimizer dependen de las
+ * funciones y variables que haya en el entorno al cargar, así que esa parte se vuelve a
+ * hacer en cada carga.
+ *
+ * Cada archivo se identifica por el SHA-256 de su contenido junto con BUILD, la versión
+ * del intérprete (ver buildVersion), así un archivo que no cambió se carga sin pasar por
+ * el Tokenizer ni el Parser, y otra versión del intérprete no usa las entradas viejas.
+ * Las expresiones se guardan con la misma codificación que Image (tabla de símbolos y
+ * datos con etiqueta); los símbolos quedan internados al leer la tabla.
+ *
+ * La caché no está activa por defecto: Main la usa solo con --cache <dir> o -Dlisp.cache.dir.
+ *
+ * Después de guardar una entrada se borran las que no se usaron en maxAgeMillis y, si el
+ * directorio sigue pasando de maxBytes, las usadas hace más tiempo. Usar una entrada
+ * actualiza su fecha de modificación.
+ */
+public class FormCache {
+    private static final byte[] MAGIC = "LISPFRM".getBytes(StandardCharsets.US_ASCII);
+    private static final byte FORMAT_VERSION = 2; // 2: la palabra quote ya no es un prefijo
+    private static final String SUFFIX = ".forms";
+    private static final long HASH_WINDOW = 64L * 1024 * 1024; // Bytes mapeados a la vez al calcular la llave
+
+    // Clases que deciden cómo queda una expresión parseada o cómo se guarda
+    private static final String[] BUILD_CLASSES = {
+        "Tokenizer", "Parser", "Numbers", "Symbol", "SymbolTable", "Evaluator$CallSite", "Image", "FormCache"
+    };
+
+    /**
+     * Versión del intérprete con la que se arma la llave.
+     */
+    public static final String BUILD = buildVersion();
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 30L * 24 * 60 * 60 * 1000; // 30 días
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+
+    public FormCache(Path directory, long maxBytes, long maxAgeMillis) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public FormCache(Path directory) {
+        this(directory, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Directorio configurado con -Dlisp.cache.dir, o null si no hay (sin caché).
+     */
+    public static Path configuredDirectory() {
+        String configured = System.getProperty("lisp.cache.dir");
+        return configured != null ? Paths.get(configured) : null;
+    }
+
+    /**
+     * Llave del contenido: SHA-256 de BUILD y los bytes del archivo, en hexadecimal.
+     * El archivo se lee mapeado, por ventanas.
+     */
+    public static String key(FileChannel channel) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(BUILD.getBytes(StandardCharsets.US_ASCII));
+        long size = channel.size();
+        for (long position = 0; position < size; position += HASH_WINDOW) {
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(HASH_WINDOW, size - position)));
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * SHA-256 de FORMAT_VERSION y los .class de BUILD_CLASSES: cualquier cambio compilado en el
+     * Tokenizer, el Parser o la codificación da otra versión, sin tener que acordarse de subirla
+     * a mano. Si alguna clase no se puede leer (por ejemplo, con un class loader sin recursos)
+     * la versión es distinta en cada proceso, así nunca se usa una entrada de otra versión.
+     */
+    private static String buildVersion() {
+        MessageDigest digest = sha256();
+        digest.update(FORMAT_VERSION);
+        for (String name : BUILD_CLASSES) {
+            try (InputStream in = FormCache.class.getResourceAsStream("/" + name + ".class")) {
+                if (in == null) {
+                    return "sin-version-" + UUID.randomUUID();
+                }
+                digest.update(in.readAllBytes());
+            } catch (IOException e) {
+                return "sin-version-" + UUID.randomUUID();
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Toda JVM tiene SHA-256
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Devuelve las expresiones guardadas para la llave, o null si no están
+     * (o la entrada está dañada; en ese caso se borra).
+     */
+    public List<Object> get(String key) {
+        Path entry = directory.resolve(key + SUFFIX);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            Image.Reader reader = new Image.Reader(buffer);
+            if (!reader.readHeader(MAGIC, FORMAT_VERSION)) {
+                Files.deleteIfExists(entry);
+                return null;
+            }
+            reader.readTable();
+            List<Object> forms = new ArrayList<>();
+            for (int i = reader.readInt(); i > 0; i--) {
+                forms.add(reader.read());
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return forms;
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(entry);
+            } catch (IOException ignored) {
+                // Otro proceso la está usando: se vuelve a parsear igual
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Guarda las expresiones de un archivo y luego limpia el directorio.
+     * Si no se puede escribir, la carga sigue sin caché.
+     */
+    public void put(String key, List<Object> forms) {
+        try {
+            Image.Writer writer = new Image.Writer();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(body);
+            data.writeInt(forms.size());
+            for (Object form : forms) {
+                writer.write(data, form, true);
+            }
+
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary))) {
+                out.write(MAGIC);
+                out.writeByte(FORMAT_VERSION);
+                writer.writeTable(out);
+                body.writeTo(out);
+            }
+            Files.move(temporary, directory.resolve(key + SUFFIX),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("No se pudo guardar en la caché: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Borra las entradas viejas y, si hace falta, las menos usadas hasta quedar en maxBytes.
+     */
+    public void evict() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> entries = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                BasicFileAttributes attribute = Files.readAttributes(file, BasicFileAttributes.class);
+                entries.add(file);
+                attributes.put(file, attribute);
+                total += attribute.size();
+            }
+        }
+        // De la usada hace más tiempo a la más reciente
+        entries.sort(Comparator.comparing(file -> attributes.get(file).lastModifiedTime()));
+
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        for (Path file : entries) {
+            BasicFileAttributes attribute = attributes.get(file);
+            if (attribute.lastModifiedTime().toMillis() < oldest || total > maxBytes) {
+                try {
+                    Files.deleteIfExists(file);
+                    total -= attribute.size();
+                } catch (IOException e) {
+                    // Si no se puede borrar, se intenta la próxima vez
+                }
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+}
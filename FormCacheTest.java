@@ -0,0 +1,151 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FormCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private Path write(String name, String source) throws Exception {
+        Path file = dir.resolve(name);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String key(Path file) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return FormCache.key(channel);
+        }
+    }
+
+    private List<Object> load(Path file, FormCache cache) throws Exception {
+        List<Object> results = new ArrayList<>();
+        ScriptLoader loader = new ScriptLoader(new LispInterpreter(new Environment()));
+        loader.setCache(cache);
+        loader.load(file, new ScriptLoader.Listener() {
+            public void result(Object expression, Object result) {
+                results.add(result);
+            }
+
+            public void error(Object expression, RuntimeException e) {
+                results.add("error");
+            }
+
+            public void progress(ScriptLoader.Progress progress) {
+            }
+        });
+        return results;
+    }
+
+    private static List<Object> parse(String source) {
+        List<Object> forms = new ArrayList<>();
+        Parser parser = new Parser(new Tokenizer(source));
+        while (parser.hasNext()) {
+            forms.add(parser.parse());
+        }
+        return forms;
+    }
+
+    @Test
+    public void testSecondLoadUsesCachedForms() throws Exception {
+        FormCache cache = new FormCache(dir.resolve("cache"));
+        Path file = write("script.lisp", "(defun doble (n)\n  (* n 2))\n(doble 21) '(a (b . c))\n");
+        List<Object> first = load(file, cache);
+        assertNotNull(cache.get(key(file)));
+        assertEquals(first.toString(), load(file, cache).toString());
+        assertEquals(42, first.get(1));
+    }
+
+    @Test
+    public void testCachedFormsSkipTheParser() throws Exception {
+        FormCache cache = new FormCache(dir.resolve("cache"));
+        Path file = write("script.lisp", "(+ 1 2)\n");
+        // Si la entrada existe, el contenido del archivo ya no se vuelve a leer
+        cache.put(key(file), parse("(+ 10 20)"));
+        assertEquals(Arrays.asList(30), load(file, cache));
+    }
+
+    @Test
+    public void testChangedFileGetsNewKey() throws Exception {
+        Path file = write("script.lisp", "(+ 1 2)\n");
+        String before = key(file);
+        write("script.lisp", "(+ 1 3)\n");
+        assertNotEquals(before, key(file));
+        assertEquals(Arrays.asList(4), load(file, new FormCache(dir.resolve("cache"))));
+    }
+
+    @Test
+    public void testUnparsableFileIsNotCached() throws Exception {
+        FormCache cache = new FormCache(dir.resolve("cache"));
+        Path file = write("script.lisp", "(+ 1 2)\n(+ 1\n");
+        load(file, cache);
+        assertNull(cache.get(key(file)));
+    }
+
+    @Test
+    public void testCorruptEntryIsIgnored() throws Exception {
+        FormCache cache = new FormCache(dir.resolve("cache"));
+        Path file = write("script.lisp", "(+ 1 2)\n");
+        load(file, cache);
+        Path entry = cache.getDirectory().resolve(key(file) + ".forms");
+        Files.write(entry, new byte[]{1, 2, 3});
+        assertEquals(Arrays.asList(3), load(file, cache));
+        assertNotNull(cache.get(key(file))); // Se volvió a guardar
+    }
+
+    @Test
+    public void testEvictsOldAndLeastRecentlyUsed() throws Exception {
+        Path directory = dir.resolve("cache");
+        FormCache cache = new FormCache(directory, Long.MAX_VALUE, 60_000);
+        cache.put("vieja", parse("(+ 1 2)"));
+        cache.put("nueva", parse("(+ 1 2)"));
+        Files.setLastModifiedTime(directory.resolve("vieja.forms"),
+            FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+        cache.evict();
+        assertNull(cache.get("vieja"));
+        assertNotNull(cache.get("nueva"));
+
+        // Con un límite de tamaño para una sola entrada queda solo la última usada
+        long size = Files.size(directory.resolve("nueva.forms"));
+        Files.setLastModifiedTime(directory.resolve("nueva.forms"),
+            FileTime.fromMillis(System.currentTimeMillis() - 10_000));
+        FormCache small = new FormCache(directory, size, 60_000);
+        small.put("otra", parse("(+ 1 2)")); // Guardar también limpia el directorio
+        assertNull(small.get("nueva"));
+        assertNotNull(small.get("otra"));
+    }
+
+    @Test
+    public void testKeyDependsOnTheInterpreterBuild() throws Exception {
+        // Con las clases a mano, la versión es un hash estable y no un valor al azar
+        assertTrue(FormCache.BUILD.matches("[0-9a-f]{64}"));
+        Path file = write("version.lisp", "(+ 1 2)");
+        assertEquals(key(file), key(file));
+    }
+
+    @Test
+    public void testOffUnlessADirectoryIsGiven() {
+        String previous = System.clearProperty("lisp.cache.dir");
+        try {
+            assertNull(FormCache.configuredDirectory());
+            System.setProperty("lisp.cache.dir", dir.toString());
+            assertEquals(dir, FormCache.configuredDirectory());
+        } finally {
+            if (previous != null) {
+                System.setProperty("lisp.cache.dir", previous);
+            } else {
+                System.clearProperty("lisp.cache.dir");
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Un Frame guarda los valores de los parámetros de una llamada a función.
+ * A diferencia de Environment, no usa nombres: el Compiler ya tradujo cada parámetro
+ * a una posición (slot) dentro del arreglo, así que leerlo es un acceso directo.
+ */
+public class Frame {
+    private final Object[] slots; // Valores de los parámetros, en el orden en que se declararon
+    private final Frame parent;   // Frame donde se definió la función (null en el nivel superior)
+
+    /**
+     * Crea un nuevo frame.
+     * @param slots Arreglo con los valores de los parámetros.
+     * @param parent Frame donde se definió la función, o null si se definió en el nivel superior.
+     */
+    public Frame(Object[] slots, Frame parent) {
+        this.slots = slots;
+        this.parent = parent;
+    }
+
+    /**
+     * Devuelve el valor guardado en una posición, subiendo "depth" frames primero.
+     * @param depth Cuántos frames hay que subir (0 = este frame).
+     * @param slot Posición del parámetro dentro del frame.
+     */
+    public Object get(int depth, int slot) {
+        Frame frame = this;
+        for (int i = 0; i < depth; i++) {
+            frame = frame.parent;
+        }
+        return frame.slots[slot];
+    }
+
+    /**
+     * Cambia el valor guardado en una posición (usado por setq sobre un parámetro).
+     */
+    public void set(int depth, int slot, Object value) {
+        Frame frame = this;
+        for (int i = 0; i < depth; i++) {
+            frame = frame.parent;
+        }
+        frame.slots[slot] = value;
+    }
+
+    public Frame getParent() {
+        return parent;
+    }
+}
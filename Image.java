@@ -0,0 +1,418 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imagen del entorno global: guarda en un archivo binario las funciones, las variables
+ * globales y los símbolos que usan, para cargarlos después sin volver a leer, parsear ni
+ * evaluar el código fuente de la biblioteca.
+ *
+ * Formato (todo big-endian):
+ *   "LISPIMG" y la versión del formato (un byte)
+ *   tabla de símbolos: cantidad y cada nombre (largo + bytes UTF-8)
+ *   definiciones: cantidad y, para cada una, el símbolo, los flags (valor, función, memo),
+ *   el valor y la función (parámetros y cuerpo)
+ * Los datos llevan una etiqueta de un byte (ver las constantes TAG_*); los símbolos se
+ * escriben como su posición en la tabla.
+ *
+ * load() mapea el archivo en memoria y lee directamente del buffer.
+ * Las funciones se guardan con su código fuente (antes del Optimizer) y se compilan
+ * la primera vez que se llaman, igual que una defun.
+ */
+public final class Image {
+    private static final byte[] MAGIC = "LISPIMG".getBytes(StandardCharsets.US_ASCII);
+    private static final byte VERSION = 1;
+
+    private static final int FLAG_VALUE = 1;
+    private static final int FLAG_FUNCTION = 2;
+    private static final int FLAG_MEMO = 4;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_INT = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_BIG = 3;
+    private static final byte TAG_TRUE = 4;
+    private static final byte TAG_FALSE = 5;
+    private static final byte TAG_SYMBOL = 6;
+    private static final byte TAG_FORM = 7; // Lista de código (se carga como lista del Parser)
+    private static final byte TAG_CONS = 8; // Lista de datos (se carga como Cons)
+    private static final byte TAG_INT_VECTOR = 9;  // make-vector de int: tamaño y los int seguidos
+    private static final byte TAG_LONG_VECTOR = 10; // make-vector de long
+    private static final byte TAG_HASH_TABLE = 11;  // Cantidad y cada llave con su valor
+
+    private Image() {
+    }
+
+    /**
+     * (save-image archivo) y (load-image archivo): el archivo se escribe como símbolo,
+     * con o sin quote (ej. (save-image prelude.img)).
+     * @return Cantidad de definiciones guardadas o cargadas.
+     */
+    static Object evaluate(boolean save, Environment environment, Object file) {
+        if (file instanceof List && ((List<?>) file).size() == 2 && Symbol.of(((List<?>) file).get(0)) == Symbol.QUOTE) {
+            file = ((List<?>) file).get(1);
+        }
+        Symbol name = Symbol.of(file);
+        if (name == null) {
+            throw new RuntimeException("Se esperaba el nombre de un archivo, pero se obtuvo: " + file);
+        }
+        Path path = environment.imagePath(name.getName()); // Las sesiones del servidor tienen límite
+        try {
+            return save ? save(environment.getGlobals(), path) : load(environment.getGlobals(), path);
+        } catch (IOException e) {
+            throw new RuntimeException((save ? "No se pudo guardar la imagen: " : "No se pudo cargar la imagen: ") + e.getMessage());
+        }
+    }
+
+    // GUARDAR
+
+    /**
+     * Guarda lo que se ve desde el entorno (él y sus padres; lo del hijo tapa al padre).
+     * El archivo se escribe aparte y se reemplaza al final, así una imagen a medias
+     * nunca queda con el nombre final.
+     * @return Cantidad de definiciones guardadas.
+     */
+    public static int save(Environment environment, Path path) throws IOException {
+        Writer writer = new Writer();
+        ByteArrayOutputStream definitions = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(definitions);
+
+        List<Symbol> names = new ArrayList<>(visibleSymbols(environment));
+        int count = 0;
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream entry = new DataOutputStream(entries);
+        for (Symbol name : names) {
+            boolean hasValue = environment.hasVariable(name);
+            Environment.LispFunction function = environment.getFunction(name);
+            if (!hasValue && function == null) {
+                continue; // Celda vacía (la creó el Compiler al ver el nombre)
+            }
+            int flags = (hasValue ? FLAG_VALUE : 0) | (function != null ? FLAG_FUNCTION : 0)
+                | (function != null && function.getMemo() != null ? FLAG_MEMO : 0);
+            entry.writeInt(writer.symbol(name));
+            entry.writeByte(flags);
+            if (hasValue) {
+                writer.write(entry, environment.getVariable(name), false);
+            }
+            if (function != null) {
+                writer.writeFunction(entry, function);
+            }
+            count++;
+        }
+
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        writer.writeTable(out);
+        out.writeInt(count);
+        entries.writeTo(out);
+        out.flush();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temporary)) {
+            definitions.writeTo(file);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    // Símbolos definidos en el entorno y sus padres, empezando por la raíz
+    private static Set<Symbol> visibleSymbols(Environment environment) {
+        List<Environment> chain = new ArrayList<>();
+        for (Environment env = environment; env != null; env = env.getParent()) {
+            chain.add(0, env);
+        }
+        Set<Symbol> symbols = new LinkedHashSet<>();
+        for (Environment env : chain) {
+            symbols.addAll(env.definedSymbols());
+        }
+        return symbols;
+    }
+
+    /**
+     * Escribe los datos y arma la tabla de símbolos a medida que los encuentra.
+     * La usa también FormCache para guardar las expresiones de un archivo.
+     */
+    static final class Writer {
+        private final Map<Symbol, Integer> symbols = new LinkedHashMap<>();
+        private final Map<LispHashTable, Boolean> writing = new IdentityHashMap<>(); // Tablas a medio escribir
+
+        int symbol(Symbol symbol) {
+            return symbols.computeIfAbsent(symbol, s -> symbols.size());
+        }
+
+        // Tabla de símbolos: va antes de los datos que la usan
+        void writeTable(DataOutputStream out) throws IOException {
+            out.writeInt(symbols.size());
+            for (Symbol symbol : symbols.keySet()) {
+                byte[] bytes = symbol.getName().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        void writeFunction(DataOutputStream out, Environment.LispFunction function) throws IOException {
+            if (function.getClosure() != null) {
+                throw new RuntimeException("No se puede guardar la función " + function.getName()
+                    + ": se definió dentro de otra función");
+            }
+            out.writeInt(function.getParameters().size());
+            for (Symbol param : function.getParameters()) {
+                out.writeInt(symbol(param));
+            }
+            List<Object> body = function.getSource() != null ? function.getSource() : function.getBody();
+            out.writeInt(body.size());
+            for (Object expr : body) {
+                write(out, expr, true);
+            }
+        }
+
+        // code: true dentro del cuerpo de una función (las listas son código)
+        void write(DataOutputStream out, Object value, boolean code) throws IOException {
+            if (value == null) {
+                out.writeByte(TAG_NULL);
+            } else if (value instanceof Integer) {
+                out.writeByte(TAG_INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(TAG_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof BigInteger) {
+                byte[] bytes = ((BigInteger) value).toByteArray();
+                out.writeByte(TAG_BIG);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Symbol || value instanceof String) {
+                out.writeByte(TAG_SYMBOL);
+                out.writeInt(symbol(Symbol.of(value)));
+            } else if (value instanceof Cons || (value instanceof List && !code)) {
+                writeCons(out, Cons.fromList((List<?>) value));
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                out.writeByte(TAG_FORM);
+                out.writeInt(list.size());
+                for (Object element : list) {
+                    write(out, element, true);
+                }
+            } else if (value instanceof NumericVector.Ints) {
+                int[] data = ((NumericVector.Ints) value).data;
+                out.writeByte(TAG_INT_VECTOR);
+                out.writeInt(data.length);
+                for (int element : data) {
+                    out.writeInt(element);
+                }
+            } else if (value instanceof NumericVector.Longs) {
+                long[] data = ((NumericVector.Longs) value).data;
+                out.writeByte(TAG_LONG_VECTOR);
+                out.writeInt(data.length);
+                for (long element : data) {
+                    out.writeLong(element);
+                }
+            } else if (value instanceof LispHashTable) {
+                writeHashTable(out, (LispHashTable) value);
+            } else {
+                throw new RuntimeException("No se puede guardar en la imagen: " + value);
+            }
+        }
+
+        // La cantidad y cada llave con su valor. Una tabla que se contiene a sí misma es un error
+        private void writeHashTable(DataOutputStream out, LispHashTable table) throws IOException {
+            if (writing.put(table, Boolean.TRUE) != null) {
+                throw new RuntimeException("No se puede guardar en la imagen una tabla hash que se contiene a sí misma");
+            }
+            List<Object> entries = new ArrayList<>(); // Llave, valor, llave, valor...
+            table.forEach((key, element) -> {
+                entries.add(key);
+                entries.add(element);
+            });
+            out.writeByte(TAG_HASH_TABLE);
+            out.writeInt(entries.size() / 2);
+            for (Object element : entries) {
+                write(out, element, false);
+            }
+            writing.remove(table);
+        }
+
+        // Los elementos uno tras otro y al final lo que queda en el cdr (NIL o un par con punto)
+        private void writeCons(DataOutputStream out, Cons list) throws IOException {
+            List<Object> elements = new ArrayList<>();
+            Object tail = list;
+            while (tail instanceof Cons && tail != Cons.NIL) {
+                elements.add(((Cons) tail).getCar());
+                tail = ((Cons) tail).getCdr();
+            }
+            out.writeByte(TAG_CONS);
+            out.writeInt(elements.size());
+            for (Object element : elements) {
+                write(out, element, false);
+            }
+            write(out, tail == Cons.NIL ? null : tail, false);
+        }
+    }
+
+    // CARGAR
+
+    /**
+     * Carga una imagen en el entorno (como si se evaluaran sus setq y defun).
+     * @return Cantidad de definiciones cargadas.
+     */
+    public static int load(Environment environment, Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return new Reader(buffer).load(environment);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new RuntimeException("La imagen está incompleta: " + path);
+        }
+    }
+
+    /**
+     * Lee lo que escribió un Writer. La usa también FormCache.
+     */
+    static final class Reader {
+        private final ByteBuffer buffer;
+        private Symbol[] symbols;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        // Verifica el encabezado (marca y versión)
+        boolean readHeader(byte[] magic, byte version) {
+            byte[] found = new byte[magic.length];
+            buffer.get(found);
+            return Arrays.equals(found, magic) && buffer.get() == version;
+        }
+
+        void readTable() {
+            symbols = new Symbol[buffer.getInt()];
+            for (int i = 0; i < symbols.length; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                symbols[i] = Symbol.intern(new String(name, StandardCharsets.UTF_8));
+            }
+        }
+
+        int readInt() {
+            return buffer.getInt();
+        }
+
+        int load(Environment environment) {
+            if (!readHeader(MAGIC, VERSION)) {
+                throw new RuntimeException("El archivo no es una imagen de este intérprete");
+            }
+            readTable();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                Symbol name = symbols[buffer.getInt()];
+                int flags = buffer.get();
+                if ((flags & FLAG_VALUE) != 0) {
+                    environment.setVariable(name, read());
+                }
+                if ((flags & FLAG_FUNCTION) != 0) {
+                    environment.setFunction(name, readFunction(name, (flags & FLAG_MEMO) != 0, environment));
+                }
+            }
+            return count;
+        }
+
+        Environment.LispFunction readFunction(Symbol name, boolean memoized, Environment environment) {
+            List<Symbol> params = new ArrayList<>();
+            for (int i = buffer.getInt(); i > 0; i--) {
+                params.add(symbols[buffer.getInt()]);
+            }
+            List<Object> body = new ArrayList<>();
+            for (int i = buffer.getInt(); i > 0; i--) {
+                body.add(read());
+            }
+            Environment.LispFunction function = new Environment.LispFunction(name.getName(), params, body);
+            function.setGlobals(environment);
+            if (memoized) {
+                function.setMemo(new MemoCache(MemoCache.DEFAULT_CAPACITY));
+            }
+            return function;
+        }
+
+        Object read() {
+            byte tag = buffer.get();
+            switch (tag) {
+                case TAG_NULL: return null;
+                case TAG_INT: return Numbers.valueOf(buffer.getInt());
+                case TAG_LONG: return Numbers.valueOf(buffer.getLong());
+                case TAG_BIG: {
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    return new BigInteger(bytes);
+                }
+                case TAG_TRUE: return Boolean.TRUE;
+                case TAG_FALSE: return Boolean.FALSE;
+                case TAG_SYMBOL: return symbols[buffer.getInt()];
+                case TAG_FORM: {
+                    List<Object> form = new Evaluator.CallSite();
+                    for (int i = buffer.getInt(); i > 0; i--) {
+                        form.add(read());
+                    }
+                    return form;
+                }
+                case TAG_CONS: {
+                    Object[] elements = new Object[buffer.getInt()];
+                    for (int i = 0; i < elements.length; i++) {
+                        elements[i] = read();
+                    }
+                    Object result = read(); // NIL (null) o el cdr de un par con punto
+                    if (result == null) {
+                        result = Cons.NIL;
+                    }
+                    for (int i = elements.length - 1; i >= 0; i--) {
+                        result = Cons.cons(elements[i], result);
+                    }
+                    return result;
+                }
+                case TAG_INT_VECTOR: {
+                    int[] data = new int[buffer.getInt()];
+                    buffer.asIntBuffer().get(data); // Se copian todos de una vez
+                    buffer.position(buffer.position() + data.length * Integer.BYTES);
+                    return new NumericVector.Ints(data);
+                }
+                case TAG_LONG_VECTOR: {
+                    long[] data = new long[buffer.getInt()];
+                    buffer.asLongBuffer().get(data);
+                    buffer.position(buffer.position() + data.length * Long.BYTES);
+                    return new NumericVector.Longs(data);
+                }
+                case TAG_HASH_TABLE: {
+                    int count = buffer.getInt();
+                    LispHashTable table = new LispHashTable(count);
+                    for (int i = 0; i < count; i++) {
+                        Object key = read();
+                        table.put(key, read());
+                    }
+                    return table;
+                }
+                default:
+                    throw new RuntimeException("Etiqueta desconocida en la imagen: " + tag);
+            }
+        }
+    }
+}
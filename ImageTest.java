@@ -0,0 +1,124 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageTest extends LispTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        run("(defun-memo cuadrado (x) (* x x))");
+        run("(defun primeros (l) (list (car l) (car (cdr l))))");
+        run("(setq grande (* 99999999999 99999999999))");
+        run("(setq datos '(1 (2 a) b))");
+        run("(setq par (cons 1 2))");
+        run("(setq verdad (< 1 2))");
+        Path file = directory.resolve("prelude.img");
+        assertEquals(7, Image.save(environment, file));
+
+        Environment loaded = new Environment();
+        assertEquals(7, Image.load(loaded, file));
+        LispInterpreter other = new LispInterpreter(loaded);
+        assertEquals(6765, run(other, "(fibonacci 20)"));
+        assertEquals(49, run(other, "(cuadrado 7)"));
+        assertNotNull(loaded.getFunction("cuadrado").getMemo());
+        assertEquals(Arrays.asList(1, 2), run(other, "(primeros '(1 2 3))"));
+        assertEquals(new BigInteger("99999999999").pow(2), run(other, "grande"));
+        assertEquals(Arrays.asList(1, Arrays.asList(2, Symbol.intern("a")), Symbol.intern("b")), run(other, "datos"));
+        assertEquals("(1 . 2)", run(other, "par").toString());
+        assertEquals(true, run(other, "verdad"));
+
+        other.setUseCompiler(false);
+        assertEquals(55, run(other, "(fibonacci 10)"));
+    }
+
+    @Test
+    public void testVectorsRoundTrip() throws Exception {
+        run("(setq enteros (make-vector 3 'int 5))");
+        run("(vset! enteros 1 -2)");
+        run("(setq largos (make-vector 2 'long 9999999999))");
+        Path file = directory.resolve("vectores.img");
+        Image.save(environment, file);
+
+        LispInterpreter other = new LispInterpreter(new Environment());
+        run(other, "(load-image " + file + ")");
+        assertEquals("#(5 -2 5)", run(other, "enteros").toString());
+        assertEquals(19999999998L, run(other, "(vsum largos)"));
+    }
+
+    @Test
+    public void testHashTableRoundTrip() throws Exception {
+        run("(setq tabla (make-hash-table))");
+        run("(puthash 'a 1 tabla)");
+        run("(puthash '(1 2) 'par tabla)");
+        Path file = directory.resolve("tabla.img");
+        Image.save(environment, file);
+
+        LispInterpreter other = new LispInterpreter(new Environment());
+        run(other, "(load-image " + file + ")");
+        assertEquals(2, run(other, "(hash-table-count tabla)"));
+        assertEquals(1, run(other, "(gethash 'a tabla)"));
+        assertEquals(Symbol.intern("par"), run(other, "(gethash '(1 2) tabla)"));
+    }
+
+    @Test
+    public void testSelfContainingHashTableIsAnError() throws Exception {
+        run("(setq h (make-hash-table))");
+        run("(puthash 'self h h)");
+        Path file = directory.resolve("ciclo.img");
+        assertThrows(RuntimeException.class, () -> Image.save(environment, file));
+        assertFalse(Files.exists(file));
+        // La misma tabla en dos lugares, sin ciclo, sí se guarda
+        run("(remhash 'self h)");
+        run("(setq dos (list h h))");
+        Image.save(environment, file);
+    }
+
+    @Test
+    public void testSessionSavesWhatItSees() throws Exception {
+        run("(defun doble (n) (* n 2))");
+        run("(setq factor 10)");
+        LispInterpreter session = new LispInterpreter(environment.newSession());
+        run(session, "(setq factor 3)");
+        run(session, "(defun triple (n) (* n factor))");
+        Path file = directory.resolve("sesion.img");
+        assertEquals(3, run(session, "(save-image " + file + ")"));
+
+        LispInterpreter other = new LispInterpreter(new Environment());
+        assertEquals(3, run(other, "(load-image " + file + ")"));
+        assertEquals(8, run(other, "(doble 4)"));
+        assertEquals(12, run(other, "(triple 4)"));
+    }
+
+    @Test
+    public void testInlinedFunctionsAreSavedAsSource() throws Exception {
+        run("(defun cuadrado (x) (* x x))");
+        run("(defun suma (a b) (+ (cuadrado a) (cuadrado b)))");
+        Path file = directory.resolve("fuente.img");
+        Image.save(environment, file);
+
+        Environment loaded = new Environment();
+        Image.load(loaded, file);
+        LispInterpreter other = new LispInterpreter(loaded);
+        run(other, "(defun cuadrado (x) (* x 10))");
+        assertEquals(70, run(other, "(suma 3 4)"));
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws Exception {
+        Path file = directory.resolve("otro.img");
+        Files.write(file, "no es una imagen".getBytes());
+        assertThrows(RuntimeException.class, () -> Image.load(new Environment(), file));
+        Files.write(file, "LISPIMG".getBytes());
+        assertThrows(RuntimeException.class, () -> Image.load(new Environment(), file));
+    }
+}
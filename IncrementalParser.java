@@ -0,0 +1,121 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Parser que recibe el código por pedazos (por ejemplo, una línea del REPL a la vez).
+ *
+ * Guarda entre llamadas las listas abiertas, los ' pendientes y el símbolo o número a
+ * medio leer, así cada pedazo nuevo solo recorre sus propios caracteres: pegar una
+ * expresión grande cuesta lo mismo que leerla de un archivo, no volver a tokenizar
+ * todo lo anterior en cada línea. Cada expresión del nivel superior se entrega apenas
+ * se cierra su último paréntesis.
+ *
+ * Produce las mismas expresiones que Parser: listas como Evaluator.CallSite, ' como
+ * (quote x) (ver Parser.quote), números con Numbers.parse y símbolos internados. Los
+ * errores también son los mismos: un ) de más, o un ' justo antes de un ).
+ */
+public class IncrementalParser {
+    /**
+     * Una lista abierta, con la cantidad de ' que iban antes de su paréntesis.
+     */
+    private static class Frame {
+        final List<Object> list = new Evaluator.CallSite();
+        final int quotes;
+
+        Frame(int quotes) {
+            this.quotes = quotes;
+        }
+    }
+
+    private final ArrayDeque<Frame> open = new ArrayDeque<>(); // Listas sin cerrar, la más interna arriba
+    private int quotes;                 // ' leídos que esperan la siguiente expresión
+    private char[] atom = new char[64]; // Símbolo o número a medio leer
+    private int atomLength;
+
+    /**
+     * Procesa un pedazo de código y entrega cada expresión del nivel superior que se completa.
+     * Un símbolo al final del pedazo queda pendiente hasta el siguiente espacio o paréntesis.
+     *
+     * @param chunk Caracteres nuevos.
+     * @param onExpression Recibe cada expresión completa, en orden.
+     * @throws RuntimeException Si sobra un ')' o un ' no tiene expresión. Se descarta lo
+     *         pendiente; las expresiones ya entregadas no se ven afectadas.
+     */
+    public void feed(CharSequence chunk, Consumer<Object> onExpression) {
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (c == '(' || c == ')' || Character.isWhitespace(c)) {
+                if (atomLength > 0) {
+                    complete(makeAtom(), onExpression);
+                }
+                if (c == '(') {
+                    open.push(new Frame(quotes));
+                    quotes = 0;
+                } else if (c == ')') {
+                    if (open.isEmpty() || quotes > 0) {
+                        reset();
+                        throw new RuntimeException("Error: Paréntesis en posición incorrecta.");
+                    }
+                    Frame frame = open.pop();
+                    quotes = frame.quotes;
+                    complete(frame.list, onExpression);
+                }
+            } else if (c == '\'' && atomLength == 0) {
+                quotes++; // Igual que el Tokenizer, un ' dentro de un símbolo es parte del nombre
+            } else {
+                if (atomLength == atom.length) {
+                    atom = Arrays.copyOf(atom, atom.length * 2);
+                }
+                atom[atomLength++] = c;
+            }
+        }
+    }
+
+    /**
+     * Indica si hay una expresión empezada que todavía no se cierra.
+     */
+    public boolean isPending() {
+        return !open.isEmpty() || quotes > 0 || atomLength > 0;
+    }
+
+    /**
+     * Profundidad de paréntesis abiertos.
+     */
+    public int getDepth() {
+        return open.size();
+    }
+
+    /**
+     * Descarta la expresión a medio leer.
+     */
+    public void reset() {
+        open.clear();
+        quotes = 0;
+        atomLength = 0;
+    }
+
+    // Agrega una expresión terminada a la lista abierta, o la entrega si es del nivel superior
+    private void complete(Object expression, Consumer<Object> onExpression) {
+        for (; quotes > 0; quotes--) {
+            expression = Parser.quote(expression);
+        }
+        if (open.isEmpty()) {
+            onExpression.accept(expression);
+        } else {
+            open.peek().list.add(expression);
+        }
+    }
+
+    // Igual que Parser.parse: los números no se internan
+    private Object makeAtom() {
+        int length = atomLength;
+        atomLength = 0;
+        if (Character.isDigit(atom[0]) || atom[0] == '-') {
+            Object number = Numbers.parse(new String(atom, 0, length));
+            if (number != null) return number;
+        }
+        return SymbolTable.intern(atom, 0, length);
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalParserTest {
+
+    private final IncrementalParser parser = new IncrementalParser();
+    private final List<Object> expressions = new ArrayList<>();
+
+    private void feed(String chunk) {
+        parser.feed(chunk, expressions::add);
+    }
+
+    private static Object parse(String source) {
+        return new Parser(new Tokenizer(source)).parse();
+    }
+
+    @Test
+    public void testFormSplitAcrossLines() {
+        feed("(defun factorial (n)\n");
+        feed("  (cond ((<= n 1) 1)\n");
+        assertTrue(expressions.isEmpty());
+        assertTrue(parser.isPending());
+        assertEquals(2, parser.getDepth());
+        feed("        (t (* n (factorial (- n 1))))))\n");
+        assertFalse(parser.isPending());
+        assertEquals(Arrays.asList(parse("(defun factorial (n) (cond ((<= n 1) 1) (t (* n (factorial (- n 1))))))")),
+            expressions);
+    }
+
+    @Test
+    public void testSameResultsAsParser() {
+        String[] sources = {
+            "(quote x)", "'x", "''(a 'b)", "(car (quote (1 2)))", "(a'b c)", "(- 1 -2 -x 1a -)",
+            "(defun f (n) (cond ((< n 1) 0) (t (f (- n 1)))))", "quote", "('a b)"
+        };
+        for (String source : sources) {
+            List<Object> whole = new ArrayList<>();
+            Parser reference = new Parser(new Tokenizer(source));
+            while (reference.hasNext()) {
+                whole.add(reference.parse());
+            }
+            expressions.clear();
+            feed(source + "\n");
+            assertEquals(whole, expressions, source);
+        }
+        assertEquals(Arrays.asList(Symbol.QUOTE, Symbol.intern("x")), parse("(quote x)"));
+    }
+
+    @Test
+    public void testQuoteBeforeCloseIsAnError() {
+        assertThrows(RuntimeException.class, () -> parse("(a ')"));
+        assertThrows(RuntimeException.class, () -> feed("(a ')"));
+        assertFalse(parser.isPending());
+    }
+
+    @Test
+    public void testTokenSplitBetweenChunks() {
+        feed("(fact");
+        feed("orial 12");
+        feed("3)");
+        assertEquals(Arrays.asList(parse("(factorial 123)")), expressions);
+        assertTrue(expressions.get(0) instanceof Evaluator.CallSite);
+    }
+
+    @Test
+    public void testSeveralFormsInOneChunk() {
+        feed("1 'a '(b 'c) (+ 1 2)\n");
+        assertEquals(Arrays.asList(1, parse("'a"), parse("'(b 'c)"), parse("(+ 1 2)")), expressions);
+    }
+
+    @Test
+    public void testStrayParenthesisResets() {
+        feed("(+ 1 2) (a\n");
+        assertThrows(RuntimeException.class, () -> feed("b)) (c"));
+        assertFalse(parser.isPending()); // Se descarta el resto del pedazo
+        assertEquals(Arrays.asList(parse("(+ 1 2)"), parse("(a b)")), expressions);
+        feed("(* 2 3)\n");
+        assertEquals(parse("(* 2 3)"), expressions.get(2));
+    }
+
+    @Test
+    public void testEvaluatesEachFormWhenItCloses() {
+        LispInterpreter interpreter = new LispInterpreter(new Environment());
+        List<Object> results = new ArrayList<>();
+        IncrementalParser repl = new IncrementalParser();
+        repl.feed("(defun doble (n)\n", form -> results.add(interpreter.evaluate(form)));
+        repl.feed("  (* n 2)) (doble", form -> results.add(interpreter.evaluate(form)));
+        assertEquals(1, results.size());
+        repl.feed(" 21)\n", form -> results.add(interpreter.evaluate(form)));
+        assertEquals(Arrays.asList(Symbol.intern("doble"), 42), results);
+    }
+}
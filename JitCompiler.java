@@ -0,0 +1,649 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Compila a bytecode de la JVM las funciones que se llaman muchas veces.
+ *
+ * Cada LispFunction cuenta sus llamadas; al llegar a THRESHOLD se intenta compilar
+ * su cuerpo a una clase oculta (MethodHandles.Lookup.defineHiddenClass) con un solo
+ * método estático "long run(long, long, ...)", que se llama por medio de un MethodHandle.
+ *
+ * Solo se compilan las funciones numéricas puras, como factorial o fibonacci:
+ * el cuerpo es una sola expresión hecha de enteros, parámetros, + - * /, comparaciones,
+ * cond y llamadas a la misma función. Cualquier otra cosa (variables globales, listas,
+ * otras funciones) deja la función interpretada. Un (t ...) de un cond se compila como
+ * siempre verdadero solo si t no tiene valor en el entorno de la función (ver assigned).
+ * Si la JVM rechaza la clase generada (por ejemplo, un cuerpo demasiado largo), la
+ * función también se queda interpretada. Mientras hay un Profiler activo no se usa el
+ * código compilado (ni se cuentan llamadas), así el Profiler ve cada llamada.
+ *
+ * El código compilado trabaja con long. Si una operación desborda, si se divide por 0
+ * o si ninguna rama del cond se cumple, la llamada se abandona y se repite interpretada
+ * (como la función no tiene efectos, el resultado es el mismo, solo que más lento).
+ * Redefinir la función (Environment.Binding.setFunction) descarta el código compilado.
+ * El código compilado también llama a Scheduler.tick(), así un ciclo compilado no deja
+ * sin turno a las demás tareas del Scheduler.
+ */
+public final class JitCompiler {
+    // Llamadas antes de compilar (se puede cambiar con -Dlisp.jit.threshold=N)
+    public static final int THRESHOLD = Integer.getInteger("lisp.jit.threshold", 1000);
+
+    // Llamadas abandonadas (overflow, etc.) antes de volver a interpretar para siempre
+    private static final int MAX_BAILOUTS = 100;
+
+    // Valor que devuelve call() cuando la función se tiene que interpretar
+    static final Object NOT_COMPILED = new Object();
+
+    // Se lanza desde el código compilado para abandonar la llamada (sin stack trace)
+    private static final ArithmeticException BAILOUT = new ArithmeticException("bailout") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private static final Symbol T = Symbol.intern("t");
+
+    // Funciones donde un (t ...) de un cond se compiló como siempre verdadero: t no tenía valor
+    // en el entorno donde se definieron. Un setq de t en cualquier entorno las descarta.
+    private static final Set<Environment.LispFunction> ASSUME_TRUE =
+        Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private static final String CLASS_NAME = "JitFunction"; // Mismo paquete que esta clase
+    private static final String SELF = "JitCompiler";
+    private static final int MAX_PARAMETERS = 100; // Cada long ocupa dos variables locales (máx. 255)
+
+    private static final MethodHandle UNBOX;
+    private static final MethodHandle BOX;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            UNBOX = lookup.findStatic(JitCompiler.class, "unbox", MethodType.methodType(long.class, Object.class));
+            BOX = lookup.findStatic(Numbers.class, "valueOf", MethodType.methodType(Object.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private JitCompiler() {
+    }
+
+    /**
+     * Código compilado de una función.
+     */
+    static final class Code {
+        private final MethodHandle handle; // (Object[]) -> Object
+        private int bailouts;
+
+        Code(MethodHandle handle) {
+            this.handle = handle;
+        }
+    }
+
+    /**
+     * Llama a la versión compilada de la función, si la hay, con los argumentos ya evaluados.
+     * Cuenta la llamada y compila la función cuando llega a THRESHOLD.
+     * @return El resultado, o NOT_COMPILED si la llamada se tiene que interpretar.
+     */
+    public static Object call(Environment.LispFunction function, Object[] args) {
+        if (Profiler.active() != null) {
+            return NOT_COMPILED; // El código compilado se llama a sí mismo sin pasar por el Profiler
+        }
+        Code code = function.getJitCode();
+        if (code == null) {
+            int calls = function.getCalls();
+            if (calls < 0 || function.getMemo() != null) {
+                return NOT_COMPILED; // No se puede compilar (o usa memo)
+            }
+            function.setCalls(++calls);
+            if (calls < THRESHOLD) {
+                return NOT_COMPILED;
+            }
+            MethodHandle handle;
+            try {
+                handle = compile(function);
+            } catch (RuntimeException | LinkageError e) {
+                handle = null; // Error del compilador o clase rechazada por la JVM: se sigue interpretando
+            }
+            if (handle == null) {
+                function.setCalls(-1);
+                return NOT_COMPILED;
+            }
+            code = new Code(handle);
+            function.setJitCode(code);
+        }
+        for (Object arg : args) {
+            if (!(arg instanceof Integer) && !(arg instanceof Long)) {
+                return NOT_COMPILED; // BigInteger u otro tipo: lo resuelve el intérprete
+            }
+        }
+        try {
+            return (Object) code.handle.invokeExact(args);
+        } catch (ArithmeticException e) {
+            if (++code.bailouts >= MAX_BAILOUTS) {
+                invalidate(function);
+            }
+            return NOT_COMPILED;
+        } catch (LinkageError e) {
+            invalidate(function); // La clase no se pudo enlazar: la llamada se repite interpretada
+            return NOT_COMPILED;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Una celda recibió un valor (Environment.Binding.setValue). Si es t, las funciones
+     * compiladas que lo tomaban como verdadero vuelven a interpretarse; al llegar otra vez
+     * a THRESHOLD se revisa de nuevo si t tiene valor donde se definieron.
+     */
+    static void assigned(Symbol symbol) {
+        if (symbol != T || ASSUME_TRUE.isEmpty()) {
+            return;
+        }
+        Environment.LispFunction[] compiled;
+        synchronized (ASSUME_TRUE) {
+            compiled = ASSUME_TRUE.toArray(new Environment.LispFunction[0]);
+            ASSUME_TRUE.clear();
+        }
+        for (Environment.LispFunction function : compiled) {
+            if (function.getJitCode() != null) {
+                function.setJitCode(null);
+                function.setCalls(0);
+            }
+        }
+    }
+
+    /**
+     * Descarta el código compilado de la función; desde ahora se interpreta siempre.
+     */
+    public static void invalidate(Environment.LispFunction function) {
+        function.setJitCode(null);
+        function.setCalls(-1);
+    }
+
+    /**
+     * Compila la función a una clase oculta.
+     * @return Un MethodHandle de tipo (Object[]) -> Object, o null si la función no se puede compilar.
+     * @throws LinkageError Si la JVM rechaza la clase generada (call() sigue interpretando).
+     */
+    static MethodHandle compile(Environment.LispFunction function) {
+        List<Symbol> params = function.getParameters();
+        List<Object> body = function.getBody();
+        if (body.size() != 1 || params.size() > MAX_PARAMETERS) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            Environment globals = function.getGlobals();
+            Emitter emitter = new Emitter(function.getName(), params, globals != null && !globals.hasVariable(T));
+            emitter.compileTick();
+            emitter.compileReturn(body.get(0));
+            bytes = emitter.toClassFile();
+            if (emitter.assumesTrue) {
+                ASSUME_TRUE.add(function);
+                if (globals.hasVariable(T)) return null; // Alguien le dio valor a t mientras se compilaba
+            }
+        } catch (Unsupported e) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            Class<?>[] types = new Class<?>[params.size()];
+            Arrays.fill(types, long.class);
+            MethodHandle run = hidden.findStatic(hidden.lookupClass(), "run", MethodType.methodType(long.class, types));
+
+            MethodHandle[] unbox = new MethodHandle[params.size()];
+            Arrays.fill(unbox, UNBOX);
+            MethodHandle handle = MethodHandles.filterArguments(MethodHandles.filterReturnValue(run, BOX), 0, unbox);
+            return handle.asSpreader(Object[].class, params.size());
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // AYUDAS QUE LLAMA EL CÓDIGO COMPILADO
+
+    public static long divide(long a, long b) {
+        if (b == 0 || (a == Long.MIN_VALUE && b == -1)) {
+            throw BAILOUT; // El intérprete da el error o el BigInteger
+        }
+        return a / b;
+    }
+
+    public static long noClause() {
+        throw BAILOUT; // El cond devuelve null, que no es un long
+    }
+
+    private static long unbox(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    // La función usa algo que el compilador no soporta
+    private static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Genera el bytecode del método run. Los parámetros son las variables locales
+     * 0, 2, 4, ... (un long ocupa dos posiciones).
+     */
+    private static final class Emitter {
+        // Códigos de operación usados
+        private static final int LCONST_0 = 0x09, LCONST_1 = 0x0a, LDC2_W = 0x14, LLOAD = 0x16, LSTORE = 0x37;
+        private static final int LCMP = 0x94, IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e;
+        private static final int GOTO = 0xa7, LRETURN = 0xad, INVOKESTATIC = 0xb8;
+
+        private final String name;
+        private final List<Symbol> params;
+        private final String descriptor;
+        private final ConstantPool pool = new ConstantPool();
+        private byte[] code = new byte[256];
+        private int length;
+        private int stack;    // Tamaño actual de la pila de operandos
+        private int maxStack;
+        private final boolean trueIsTrue; // t no tiene valor donde se definió la función
+        private boolean assumesTrue; // Algún (t ...) de un cond se compiló como siempre verdadero
+
+        Emitter(String name, List<Symbol> params, boolean trueIsTrue) {
+            this.name = name;
+            this.params = params;
+            this.trueIsTrue = trueIsTrue;
+            StringBuilder desc = new StringBuilder("(");
+            for (int i = 0; i < params.size(); i++) {
+                desc.append('J');
+            }
+            this.descriptor = desc.append(")J").toString();
+        }
+
+        /**
+         * Al inicio del método: cada llamada, y cada vuelta de una llamada de cola
+         * (que salta a la posición 0), gasta una reducción del Scheduler.
+         */
+        void compileTick() {
+            invoke("Scheduler", "tick", "()V", 0);
+        }
+
+        /**
+         * Expresión cuyo valor es el valor de la función (posición de cola).
+         * Una llamada a la misma función aquí se convierte en un salto al inicio.
+         */
+        void compileReturn(Object expr) {
+            List<?> list = asForm(expr);
+            if (list != null && isOperator(list, "cond")) {
+                for (int i = 1; i < list.size(); i++) {
+                    List<?> clause = asClause(list.get(i));
+                    Label next = new Label();
+                    compileTest(clause.get(0), next);
+                    compileReturn(clause.get(1));
+                    next.bind(this);
+                }
+                invoke(SELF, "noClause", "()J", 2);
+                op(LRETURN, -2);
+                return;
+            }
+            if (list != null && isSelfCall(list)) {
+                for (int i = 1; i < list.size(); i++) {
+                    compileValue(list.get(i));
+                }
+                for (int i = params.size() - 1; i >= 0; i--) {
+                    op(LSTORE, -2);
+                    u1(2 * i);
+                }
+                jump(GOTO, new Label(0));
+                return;
+            }
+            compileValue(expr);
+            op(LRETURN, -2);
+        }
+
+        /**
+         * Deja el valor de la expresión en la pila, como long.
+         */
+        void compileValue(Object expr) {
+            if (expr instanceof Integer || expr instanceof Long) {
+                long value = ((Number) expr).longValue();
+                if (value == 0 || value == 1) {
+                    op(LCONST_0 + (int) value, 2);
+                } else {
+                    op(LDC2_W, 2);
+                    u2(pool.longConstant(value));
+                }
+                return;
+            }
+            Symbol symbol = Symbol.of(expr);
+            if (symbol != null) {
+                int index = params.indexOf(symbol);
+                if (index < 0) throw new Unsupported(); // Variable global
+                op(LLOAD, 2);
+                u1(2 * index);
+                return;
+            }
+            List<?> list = asForm(expr);
+            if (list == null) throw new Unsupported();
+            int args = list.size() - 1;
+            switch (Symbol.of(list.get(0)).getName()) {
+                case "+":
+                    arithmetic(list, "addExact", 0);
+                    return;
+                case "*":
+                    arithmetic(list, "multiplyExact", 1);
+                    return;
+                case "-":
+                    if (args == 0) throw new Unsupported();
+                    compileValue(list.get(1));
+                    if (args == 1) {
+                        invoke("java/lang/Math", "negateExact", "(J)J", 0);
+                        return;
+                    }
+                    for (int i = 2; i < list.size(); i++) {
+                        compileValue(list.get(i));
+                        invoke("java/lang/Math", "subtractExact", "(JJ)J", -2);
+                    }
+                    return;
+                case "/":
+                    if (args == 0) throw new Unsupported();
+                    if (args == 1) {
+                        op(LCONST_1, 2); // (/ x) es 1/x
+                    } else {
+                        compileValue(list.get(1));
+                    }
+                    for (int i = args == 1 ? 1 : 2; i < list.size(); i++) {
+                        compileValue(list.get(i));
+                        invoke(SELF, "divide", "(JJ)J", -2);
+                    }
+                    return;
+                case "cond":
+                    compileCond(list);
+                    return;
+                default:
+                    if (!isSelfCall(list)) throw new Unsupported();
+                    for (int i = 1; i < list.size(); i++) {
+                        compileValue(list.get(i));
+                    }
+                    invoke(CLASS_NAME, "run", descriptor, -2 * params.size() + 2);
+            }
+        }
+
+        // + y * con cualquier cantidad de argumentos; Math.*Exact lanza ArithmeticException si desborda
+        private void arithmetic(List<?> list, String method, int identity) {
+            if (list.size() == 1) {
+                op(LCONST_0 + identity, 2);
+                return;
+            }
+            compileValue(list.get(1));
+            for (int i = 2; i < list.size(); i++) {
+                compileValue(list.get(i));
+                invoke("java/lang/Math", method, "(JJ)J", -2);
+            }
+        }
+
+        // cond que no está en posición de cola: cada rama salta al final con su valor en la pila
+        private void compileCond(List<?> list) {
+            Label end = new Label();
+            int base = stack;
+            for (int i = 1; i < list.size(); i++) {
+                List<?> clause = asClause(list.get(i));
+                Label next = new Label();
+                compileTest(clause.get(0), next);
+                compileValue(clause.get(1));
+                jump(GOTO, end);
+                stack = base;
+                next.bind(this);
+            }
+            invoke(SELF, "noClause", "()J", 2);
+            end.bind(this);
+        }
+
+        /**
+         * Evalúa la condición de un cond y salta a "otherwise" si es falsa.
+         */
+        private void compileTest(Object test, Label otherwise) {
+            if (Symbol.of(test) == T) {
+                if (params.contains(T)) {
+                    return; // Un parámetro es un número: siempre verdadero
+                }
+                if (!trueIsTrue) throw new Unsupported(); // t tiene un valor: que lo lea el intérprete
+                assumesTrue = true;
+                return;
+            }
+            List<?> list = asForm(test);
+            if (list == null || list.size() != 3) throw new Unsupported();
+            int jumpIfFalse;
+            switch (Symbol.of(list.get(0)).getName()) {
+                case "<": jumpIfFalse = IFGE; break;
+                case ">": jumpIfFalse = IFLE; break;
+                case "<=": jumpIfFalse = IFGT; break;
+                case ">=": jumpIfFalse = IFLT; break;
+                case "equal": jumpIfFalse = IFNE; break;
+                default: throw new Unsupported();
+            }
+            compileValue(list.get(1));
+            compileValue(list.get(2));
+            op(LCMP, -3);
+            jump(jumpIfFalse, otherwise);
+        }
+
+        // Devuelve la lista si es una forma con un símbolo como operador, o null si es un átomo
+        private List<?> asForm(Object expr) {
+            if (!(expr instanceof List)) return null;
+            List<?> list = (List<?>) expr;
+            if (list.isEmpty() || Symbol.of(list.get(0)) == null) throw new Unsupported();
+            return list;
+        }
+
+        private List<?> asClause(Object clause) {
+            if (!(clause instanceof List) || ((List<?>) clause).size() != 2) throw new Unsupported();
+            return (List<?>) clause;
+        }
+
+        private boolean isOperator(List<?> list, String operator) {
+            return Symbol.of(list.get(0)).getName().equals(operator);
+        }
+
+        private boolean isSelfCall(List<?> list) {
+            return Symbol.of(list.get(0)).getName().equals(name) && list.size() - 1 == params.size();
+        }
+
+        // EMISIÓN
+
+        private void op(int opcode, int stackChange) {
+            u1(opcode);
+            stack += stackChange;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void invoke(String owner, String method, String desc, int stackChange) {
+            op(INVOKESTATIC, stackChange);
+            u2(pool.methodRef(owner, method, desc));
+        }
+
+        private void jump(int opcode, Label target) {
+            int at = length;
+            op(opcode, opcode == GOTO ? 0 : -1);
+            target.use(this, at);
+        }
+
+        private void u1(int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        byte[] toClassFile() {
+            if (length > 65535) throw new Unsupported();
+            return pool.toClassFile(CLASS_NAME, "run", descriptor, Arrays.copyOf(code, length),
+                maxStack, 2 * params.size());
+        }
+    }
+
+    /**
+     * Posición dentro del código. Los saltos hacia una etiqueta que todavía no tiene
+     * posición se corrigen cuando se ubica (bind).
+     */
+    private static final class Label {
+        private int position = -1;
+        private final List<Integer> uses = new ArrayList<>(); // Posiciones de los saltos pendientes
+
+        Label() {
+        }
+
+        Label(int position) {
+            this.position = position;
+        }
+
+        void use(Emitter emitter, int at) {
+            if (position >= 0) {
+                emitter.u2(offset(position - at));
+            } else {
+                uses.add(at);
+                emitter.u2(0);
+            }
+        }
+
+        void bind(Emitter emitter) {
+            position = emitter.length;
+            for (int at : uses) {
+                int offset = offset(position - at);
+                emitter.code[at + 1] = (byte) (offset >> 8);
+                emitter.code[at + 2] = (byte) offset;
+            }
+        }
+
+        // Los saltos usan un short con signo: un cuerpo más largo no se compila
+        private static int offset(int offset) {
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) throw new Unsupported();
+            return offset;
+        }
+    }
+
+    /**
+     * Tabla de constantes de la clase y escritura del archivo .class.
+     * Se usa la versión 49 del formato (Java 5), que no necesita StackMapTable.
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1; // La posición 0 no se usa
+
+        int utf8(String value) {
+            return entry("U" + value, 1, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int classRef(String name) {
+            int utf = utf8(name);
+            return entry("C" + name, 1, () -> {
+                out.writeByte(7);
+                out.writeShort(utf);
+            });
+        }
+
+        int methodRef(String owner, String name, String desc) {
+            int owning = classRef(owner);
+            int nameIndex = utf8(name);
+            int descIndex = utf8(desc);
+            int nameAndType = entry("N" + name + desc, 1, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descIndex);
+            });
+            return entry("M" + owner + "." + name + desc, 1, () -> {
+                out.writeByte(10);
+                out.writeShort(owning);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int longConstant(long value) {
+            return entry("J" + value, 2, () -> { // Un long ocupa dos posiciones de la tabla
+                out.writeByte(5);
+                out.writeLong(value);
+            });
+        }
+
+        private int entry(String key, int size, Writer writer) {
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            entries.put(key, count);
+            count += size;
+            if (count > 65535) throw new Unsupported();
+            return count - size;
+        }
+
+        byte[] toClassFile(String className, String method, String desc, byte[] code, int maxStack, int maxLocals) {
+            int thisClass = classRef(className);
+            int superClass = classRef("java/lang/Object");
+            int methodName = utf8(method);
+            int methodDesc = utf8(desc);
+            int codeName = utf8("Code");
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(file);
+            try {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);  // Versión menor
+                out.writeShort(49); // Versión mayor
+                out.writeShort(count);
+                bytes.writeTo(out);
+                out.writeShort(0x0031); // public final super
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0); // Interfaces
+                out.writeShort(0); // Campos
+                out.writeShort(1); // Métodos
+                out.writeShort(0x0009); // public static
+                out.writeShort(methodName);
+                out.writeShort(methodDesc);
+                out.writeShort(1); // Atributos del método: Code
+                out.writeShort(codeName);
+                out.writeInt(12 + code.length);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(code.length);
+                out.write(code);
+                out.writeShort(0); // Tabla de excepciones
+                out.writeShort(0); // Atributos de Code
+                out.writeShort(0); // Atributos de la clase
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return file.toByteArray();
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+}
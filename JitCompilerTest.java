@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JitCompilerTest extends LispTest {
+
+    @BeforeEach
+    public void setUp() {
+        interpreter.setOptimize(false); // Si no, (doble 3) se calcula al optimizar y la función no se llama
+    }
+
+    @Test
+    public void testHotFunctionIsCompiled() {
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        assertEquals(6765, run("(fibonacci 20)"));
+        assertNotNull(environment.getFunction("fibonacci").getJitCode());
+        assertEquals(832040, run("(fibonacci 30)"));
+    }
+
+    @Test
+    public void testOverflowFallsBackToInterpreter() {
+        run("(defun factorial (n) (cond ((<= n 1) 1) (t (* n (factorial (- n 1))))))");
+        for (int i = 0; i < JitCompiler.THRESHOLD; i++) {
+            run("(factorial 5)");
+        }
+        assertNotNull(environment.getFunction("factorial").getJitCode());
+        assertEquals(120, run("(factorial 5)"));
+        assertEquals(new BigInteger("265252859812191058636308480000000"), run("(factorial 30)"));
+    }
+
+    @Test
+    public void testAssigningTDropsCompiledCode() {
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        assertEquals(6765, run("(fibonacci 20)"));
+        assertNotNull(environment.getFunction("fibonacci").getJitCode());
+        run("(setq t (equal 1 2))"); // nil es un símbolo (verdadero); falso es false
+        assertNull(environment.getFunction("fibonacci").getJitCode());
+        assertNull(run("(fibonacci 20)")); // Ninguna cláusula se cumple, igual que en el intérprete
+        for (int i = 0; i < JitCompiler.THRESHOLD; i++) {
+            run("(fibonacci 1)");
+        }
+        assertNull(environment.getFunction("fibonacci").getJitCode()); // t tiene valor: no se vuelve a compilar
+    }
+
+    @Test
+    public void testLongBodiesStayInterpreted() {
+        // Más de 32767 bytes entre el salto del cond y su destino
+        StringBuilder sum = new StringBuilder("(+");
+        for (int i = 0; i < 8000; i++) {
+            sum.append(" n");
+        }
+        sum.append(")");
+        run("(defun grande (n) (cond ((< n 0) " + sum + ") (t n)))");
+        for (int i = 0; i < JitCompiler.THRESHOLD; i++) {
+            run("(grande 3)");
+        }
+        assertNull(environment.getFunction("grande").getJitCode());
+        assertEquals(-8000, run("(grande -1)"));
+    }
+
+    @Test
+    public void testDivisionByZeroKeepsInterpreterError() {
+        run("(defun divide (a b) (/ a b))");
+        for (int i = 0; i < JitCompiler.THRESHOLD; i++) {
+            run("(divide 7 2)");
+        }
+        assertNotNull(environment.getFunction("divide").getJitCode());
+        assertEquals(3, run("(divide 7 2)"));
+        RuntimeException error = assertThrows(RuntimeException.class, () -> run("(divide 1 0)"));
+        assertEquals("No se puede dividir por 0", error.getMessage());
+    }
+
+    @Test
+    public void testTailCallsBecomeLoops() {
+        run("(defun cuenta (n) (cond ((<= n 0) 0) (t (cuenta (- n 1)))))");
+        for (int i = 0; i < JitCompiler.THRESHOLD; i++) {
+            run("(cuenta 1)");
+        }
+        assertNotNull(environment.getFunction("cuenta").getJitCode());
+        assertEquals(0, run("(cuenta 1000000)"));
+    }
+
+    @Test
+    public void testRedefinitionGoesBackToInterpreter() {
+        run("(defun doble (n) (* n 2))");
+        for (int i = 0; i < JitCompiler.THRESHOLD; i++) {
+            run("(doble 3)");
+        }
+        Environment.LispFunction old = environment.getFunction("doble");
+        assertNotNull(old.getJitCode());
+        run("(defun doble (n) (* n 3))");
+        assertNull(old.getJitCode());
+        assertEquals(9, run("(doble 3)"));
+    }
+
+    @Test
+    public void testUnsupportedBodiesStayInterpreted() {
+        run("(setq k 2)");
+        run("(defun escala (n) (* n k))");
+        assertNull(JitCompiler.compile(environment.getFunction("escala")));
+        run("(defun envuelve (n) (list n))");
+        assertNull(JitCompiler.compile(environment.getFunction("envuelve")));
+        for (int i = 0; i < JitCompiler.THRESHOLD + 5; i++) {
+            assertEquals(6, run("(escala 3)"));
+        }
+    }
+
+    @Test
+    public void testEvaluatorUsesCompiledCode() {
+        interpreter.setUseCompiler(false);
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        assertEquals(6765, run("(fibonacci 20)"));
+        assertNotNull(environment.getFunction("fibonacci").getJitCode());
+    }
+}
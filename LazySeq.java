@@ -0,0 +1,464 @@
+import java.util.AbstractSequentialList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Secuencia perezosa: (range ...), (lazy-map f s), (lazy-filter f s), (take n s) y (drop n s).
+ *
+ * Una LazySeq no guarda sus elementos sino la receta para producirlos. Cada vez que se
+ * recorre, los elementos se calculan por bloques de CHUNK_SIZE (un arreglo por bloque,
+ * no una celda por elemento) y se sueltan apenas se usan. Por eso una cadena como
+ * (reduce suma 0 (lazy-map doble (range 10000000))) usa memoria constante, aunque la
+ * secuencia esté guardada en una variable. Recorrerla dos veces vuelve a llamar a las
+ * funciones de lazy-map y lazy-filter.
+ *
+ * Cada bloque que producen range y las listas gasta una reducción del Scheduler, así
+ * recorrer una secuencia enorme (length de un range) se puede cancelar.
+ *
+ * Implementa List (solo lectura, hacia adelante) para que car, cdr, null, length,
+ * equal y el resto del intérprete la acepten como cualquier lista.
+ */
+public final class LazySeq extends AbstractSequentialList<Object> {
+    static final int CHUNK_SIZE = 64; // Elementos que se calculan a la vez
+
+    /**
+     * Productor de bloques para un recorrido.
+     */
+    interface Chunks {
+        /**
+         * Pone los siguientes elementos al inicio del arreglo.
+         * @return Cuántos puso; 0 cuando ya no hay más.
+         */
+        int fill(Object[] chunk);
+    }
+
+    private final Supplier<Chunks> source; // Crea un productor nuevo para cada recorrido
+    private final Cell cell; // Con cdr: bloque ya calculado donde empieza (null si no viene de cdr)
+    private final int offset; // Posición dentro de cell
+
+    private LazySeq(Supplier<Chunks> source) {
+        this.source = source;
+        this.cell = null;
+        this.offset = 0;
+    }
+
+    // Secuencia que empieza en una posición de un recorrido ya calculado (ver rest)
+    private LazySeq(Cell cell, int offset) {
+        this.source = () -> cell.from(offset);
+        this.cell = cell;
+        this.offset = offset;
+    }
+
+    // CONSTRUCTORES DE LAS PRIMITIVAS
+
+    /**
+     * (range fin), (range inicio fin) o (range inicio fin paso): enteros desde inicio
+     * hasta antes de fin.
+     */
+    public static LazySeq range(long start, long end, long step) {
+        if (step == 0) {
+            throw new RuntimeException("range necesita un paso distinto de 0");
+        }
+        return new LazySeq(() -> new Chunks() {
+            private long next = start;
+
+            @Override
+            public int fill(Object[] chunk) {
+                Scheduler.tick();
+                int count = 0;
+                while (count < chunk.length && (step > 0 ? next < end : next > end)) {
+                    chunk[count++] = Numbers.valueOf(next);
+                    next += step;
+                }
+                return count;
+            }
+        });
+    }
+
+    /**
+     * (lazy-map f s): f aplicada a cada elemento, a medida que se piden.
+     */
+    public static LazySeq map(UnaryOperator<Object> function, Object seq) {
+        LazySeq input = of(seq, "lazy-map");
+        return new LazySeq(() -> {
+            Chunks upstream = input.source.get();
+            return chunk -> {
+                int count = upstream.fill(chunk);
+                for (int i = 0; i < count; i++) {
+                    chunk[i] = function.apply(chunk[i]);
+                }
+                return count;
+            };
+        });
+    }
+
+    /**
+     * (lazy-filter f s): los elementos para los que f no devuelve falso (regla de cond).
+     */
+    public static LazySeq filter(UnaryOperator<Object> predicate, Object seq) {
+        LazySeq input = of(seq, "lazy-filter");
+        return new LazySeq(() -> {
+            Chunks upstream = input.source.get();
+            return chunk -> {
+                // Se filtra en el mismo arreglo; si no queda nada se pide el siguiente bloque
+                while (true) {
+                    int read = upstream.fill(chunk);
+                    if (read == 0) return 0;
+                    int count = 0;
+                    for (int i = 0; i < read; i++) {
+                        Object value = chunk[i];
+                        if (Node.isTrue(predicate.apply(value))) {
+                            chunk[count++] = value;
+                        }
+                    }
+                    if (count > 0) return count;
+                }
+            };
+        });
+    }
+
+    /**
+     * (take n s): los primeros n elementos.
+     */
+    public static LazySeq take(long n, Object seq) {
+        LazySeq input = of(seq, "take");
+        return new LazySeq(() -> {
+            Chunks upstream = input.source.get();
+            return new Chunks() {
+                private long remaining = n;
+
+                @Override
+                public int fill(Object[] chunk) {
+                    if (remaining <= 0) return 0;
+                    // Se pide un bloque más chico al final, así no se calculan elementos de más
+                    Object[] target = remaining < chunk.length ? new Object[(int) remaining] : chunk;
+                    int count = upstream.fill(target);
+                    if (target != chunk) {
+                        System.arraycopy(target, 0, chunk, 0, count);
+                    }
+                    remaining -= count;
+                    return count;
+                }
+            };
+        });
+    }
+
+    /**
+     * (drop n s): todos menos los primeros n elementos.
+     */
+    public static LazySeq drop(long n, Object seq) {
+        LazySeq input = of(seq, "drop");
+        return new LazySeq(() -> {
+            Chunks upstream = input.source.get();
+            return new Chunks() {
+                private long skip = n;
+
+                @Override
+                public int fill(Object[] chunk) {
+                    while (true) {
+                        int count = upstream.fill(chunk);
+                        if (skip <= 0 || count == 0) return count;
+                        if (count > skip) {
+                            int from = (int) skip;
+                            System.arraycopy(chunk, from, chunk, 0, count - from);
+                            skip = 0;
+                            return count - from;
+                        }
+                        skip -= count;
+                    }
+                }
+            };
+        });
+    }
+
+    /**
+     * (reduce f inicial s): (f (f (f inicial e1) e2) ...). Recorre cualquier lista o secuencia
+     * sin armarla completa.
+     */
+    public static Object reduce(BinaryOperator<Object> function, Object initial, Object seq) {
+        Chunks chunks = of(seq, "reduce").source.get();
+        Object[] chunk = new Object[CHUNK_SIZE];
+        Object result = initial;
+        int count;
+        while ((count = chunks.fill(chunk)) > 0) {
+            for (int i = 0; i < count; i++) {
+                result = function.apply(result, chunk[i]);
+            }
+        }
+        return result;
+    }
+
+    // AYUDAS PARA EL EVALUATOR Y LOS NODOS
+
+    /**
+     * Arma un range con 1 a 3 argumentos ya evaluados: (range fin), (range inicio fin),
+     * (range inicio fin paso).
+     */
+    static LazySeq range(Object[] args) {
+        if (args.length < 1 || args.length > 3) {
+            throw new RuntimeException("range necesita de 1 a 3 argumentos");
+        }
+        long start = args.length == 1 ? 0 : count(args[0], "range");
+        long end = count(args[args.length == 1 ? 0 : 1], "range");
+        long step = args.length == 3 ? count(args[2], "range") : 1;
+        return range(start, end, step);
+    }
+
+    /**
+     * Convierte un argumento numérico (un Integer o Long) en long.
+     */
+    static long count(Object value, String operation) {
+        if (!(value instanceof Integer) && !(value instanceof Long)) {
+            throw new RuntimeException(operation + " necesita un entero, pero se obtuvo: " + value);
+        }
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * Revisa que la función exista y reciba la cantidad de argumentos que se le van a pasar.
+     */
+    static Environment.LispFunction check(Environment.LispFunction function, Symbol name, int arity, String operation) {
+        if (function == null) {
+            throw new RuntimeException("Operador desconocido: " + name);
+        }
+        if (function.getParameters().size() != arity) {
+            throw new RuntimeException(operation + " necesita una función de " + arity
+                + (arity == 1 ? " parámetro: " : " parámetros: ") + name);
+        }
+        return function;
+    }
+
+    /**
+     * Convierte una lista (o null) en secuencia; una LazySeq se devuelve tal cual.
+     */
+    static LazySeq of(Object seq, String operation) {
+        if (seq instanceof LazySeq) {
+            return (LazySeq) seq;
+        }
+        if (seq != null && !(seq instanceof List)) {
+            throw new RuntimeException(operation + " necesita una lista o secuencia, pero se obtuvo: " + seq);
+        }
+        List<?> list = seq == null ? Cons.NIL : (List<?>) seq;
+        return new LazySeq(() -> {
+            Iterator<?> it = list.iterator();
+            return chunk -> {
+                Scheduler.tick();
+                int count = 0;
+                while (count < chunk.length && it.hasNext()) {
+                    chunk[count++] = it.next();
+                }
+                return count;
+            };
+        });
+    }
+
+    // CAR Y CDR SIN RECORRER TODA LA SECUENCIA
+
+    /**
+     * Primer elemento (null si está vacía). No calcula los demás.
+     */
+    public Object first() {
+        if (cell != null) {
+            return offset < cell.count ? cell.items[offset] : null;
+        }
+        Object[] chunk = new Object[1];
+        return source.get().fill(chunk) > 0 ? chunk[0] : null;
+    }
+
+    /**
+     * La secuencia sin su primer elemento. Guarda el recorrido y la posición, así recorrer
+     * con car y cdr calcula cada bloque una sola vez en lugar de volver a empezar en cada
+     * cdr. Los bloques que ya nadie alcanza se liberan; si se guarda una de estas
+     * secuencias en una variable, se quedan en memoria los bloques desde ahí.
+     */
+    public LazySeq rest() {
+        Cell start = cell != null ? cell : new Cell(source.get());
+        int next = offset + 1;
+        if (next < start.count) {
+            return new LazySeq(start, next);
+        }
+        return new LazySeq(start.count == 0 ? start : start.next(), 0);
+    }
+
+    /**
+     * Bloque de un recorrido que ya se calculó. Cada bloque sabe pedir el siguiente una
+     * sola vez; las secuencias de rest() comparten la cadena de bloques.
+     */
+    private static final class Cell {
+        final Object[] items = new Object[CHUNK_SIZE];
+        final int count; // 0: la secuencia terminó
+        private Chunks upstream; // Productor del siguiente bloque (null cuando ya se pidió)
+        private Cell next;
+
+        Cell(Chunks upstream) {
+            this.count = upstream.fill(items);
+            this.upstream = count == 0 ? null : upstream;
+        }
+
+        synchronized Cell next() {
+            if (next == null) {
+                next = count == 0 ? this : new Cell(upstream);
+                upstream = null;
+            }
+            return next;
+        }
+
+        // Productor que copia los bloques desde la posición dada
+        Chunks from(int offset) {
+            return new Chunks() {
+                private Cell current = Cell.this;
+                private int position = offset;
+
+                @Override
+                public int fill(Object[] chunk) {
+                    while (position >= current.count) {
+                        if (current.count == 0) return 0;
+                        current = current.next();
+                        position = 0;
+                    }
+                    int n = Math.min(chunk.length, current.count - position);
+                    System.arraycopy(current.items, position, chunk, 0, n);
+                    position += n;
+                    return n;
+                }
+            };
+        }
+    }
+
+    // LIST
+
+    @Override
+    public boolean isEmpty() {
+        if (cell != null) {
+            return offset >= cell.count;
+        }
+        return source.get().fill(new Object[1]) == 0;
+    }
+
+    /**
+     * Cuenta los elementos recorriendo la secuencia (sin guardarlos).
+     */
+    @Override
+    public int size() {
+        long size = 0;
+        Chunks chunks = source.get();
+        Object[] chunk = new Object[CHUNK_SIZE];
+        int count;
+        while ((count = chunks.fill(chunk)) > 0) {
+            size += count;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Arma todos los elementos en un solo recorrido (size() haría uno más).
+     */
+    @Override
+    public Object[] toArray() {
+        List<Object> items = new ArrayList<>();
+        for (Object item : this) {
+            items.add(item);
+        }
+        return items.toArray();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator(int index) {
+        Elements it = new Elements(source.get());
+        for (int i = 0; i < index; i++) {
+            it.next();
+        }
+        return it;
+    }
+
+    /**
+     * Se imprime como una lista de Lisp: (1 2 3).
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("(");
+        for (Object item : this) {
+            if (out.length() > 1) out.append(' ');
+            out.append(item);
+        }
+        return out.append(')').toString();
+    }
+
+    /**
+     * Iterador que pide un bloque a la vez. Solo avanza hacia adelante.
+     */
+    private static final class Elements implements ListIterator<Object> {
+        private final Chunks chunks;
+        private final Object[] chunk = new Object[CHUNK_SIZE];
+        private int position; // Siguiente elemento dentro del bloque
+        private int count;    // Elementos válidos en el bloque
+        private boolean finished;
+        private int index;
+
+        Elements(Chunks chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < count) return true;
+            if (finished) return false;
+            position = 0;
+            count = chunks.fill(chunk);
+            finished = count == 0;
+            return !finished;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            index++;
+            Object value = chunk[position];
+            chunk[position++] = null; // Se suelta apenas se entrega
+            return value;
+        }
+
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+
+        @Override
+        public int previousIndex() {
+            return index - 1;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return index > 0;
+        }
+
+        @Override
+        public Object previous() {
+            throw new UnsupportedOperationException("Una secuencia perezosa solo se recorre hacia adelante");
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Las secuencias perezosas no se pueden modificar");
+        }
+
+        @Override
+        public void set(Object value) {
+            throw new UnsupportedOperationException("Las secuencias perezosas no se pueden modificar");
+        }
+
+        @Override
+        public void add(Object value) {
+            throw new UnsupportedOperationException("Las secuencias perezosas no se pueden modificar");
+        }
+    }
+}
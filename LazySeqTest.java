@@ -0,0 +1,79 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazySeqTest extends LispTest {
+
+    @BeforeEach
+    public void setUp() {
+        run("(defun doble (n) (* n 2))");
+        run("(defun par (n) (equal (* (/ n 2) 2) n))");
+        run("(defun suma (a b) (+ a b))");
+    }
+
+    @Test
+    public void testRange() {
+        assertEquals(Arrays.asList(0, 1, 2, 3), run("(range 4)"));
+        assertEquals(Arrays.asList(2, 4, 6), run("(range 2 8 2)"));
+        assertEquals(Arrays.asList(3, 2, 1), run("(range 3 0 -1)"));
+        assertEquals(true, run("(null (range 5 5))"));
+        assertEquals("(1 2 3)", run("(range 1 4)").toString());
+    }
+
+    @Test
+    public void testPipeline() {
+        assertEquals(Arrays.asList(0, 4, 8), run("(take 3 (lazy-map doble (lazy-filter par (range 100))))"));
+        assertEquals(Arrays.asList(97, 98, 99), run("(drop 97 (range 100))"));
+        assertEquals(Arrays.asList(2, 4), run("(lazy-map doble '(1 2))"));
+        assertEquals(4950, run("(reduce suma 0 (range 100))"));
+        assertEquals(6, run("(reduce suma 0 (list 1 2 3))"));
+    }
+
+    @Test
+    public void testCarCdrLengthOnSequences() {
+        assertEquals(10, run("(car (drop 10 (range 1000000000)))"));
+        assertEquals(Arrays.asList(1, 2), run("(take 2 (cdr (range 100)))"));
+        assertEquals(50, run("(length (lazy-filter par (range 100)))"));
+        assertEquals(Arrays.asList(-1, 0, 1), run("(cons -1 (range 2))"));
+        assertEquals(true, run("(equal (range 3) '(0 1 2))"));
+    }
+
+    @Test
+    public void testWalkWithCdr() {
+        // Cada cdr sigue desde donde quedó el anterior: recorrer n elementos es lineal
+        run("(defun cuenta-cdr (s acc) (cond ((null s) acc) (t (cuenta-cdr (cdr s) (+ acc (car s))))))");
+        assertEquals(4999950000L, run("(cuenta-cdr (range 100000) 0)"));
+        assertEquals(Arrays.asList(64, 65), run("(take 2 (cdr (drop 63 (range 100))))"));
+        run("(setq resto (cdr (cdr (range 3))))");
+        assertEquals(Arrays.asList(2), run("resto"));
+        assertEquals(Arrays.asList(2), run("resto")); // Se puede volver a recorrer
+        assertEquals(true, run("(null (cdr resto))"));
+        assertEquals(true, run("(null (cdr (cdr resto)))"));
+    }
+
+    @Test
+    public void testOnlyRequestedElementsAreComputed() {
+        run("(setq llamadas 0)");
+        run("(defun cuenta (n) (setq llamadas (+ llamadas 1)) n)");
+        run("(setq s (lazy-map cuenta (range 1000000)))");
+        assertEquals(0, run("llamadas"));
+        assertEquals(Arrays.asList(0, 1, 2), run("(take 3 s)"));
+        assertEquals(3, run("llamadas"));
+    }
+
+    @Test
+    public void testLargePipelineInEvaluator() {
+        interpreter.setUseCompiler(false);
+        assertEquals(999_999_000_000L, run("(reduce suma 0 (lazy-map doble (range 1000000)))"));
+    }
+
+    @Test
+    public void testErrors() {
+        assertThrows(RuntimeException.class, () -> run("(lazy-map suma (range 3))"));
+        assertThrows(RuntimeException.class, () -> run("(take 2 5)"));
+        assertThrows(RuntimeException.class, () -> run("(range 1 10 0)"));
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.function.BiConsumer;
+
+/**
+ * Tabla hash de Lisp: (make-hash-table), (puthash llave valor tabla), (gethash llave tabla),
+ * (remhash llave tabla), (hash-table-count tabla) y (maphash f tabla).
+ *
+ * Usa direccionamiento abierto con sondeo lineal: las llaves y los valores están en dos
+ * arreglos, sin un objeto Entry por elemento, y una búsqueda recorre posiciones seguidas.
+ * Al borrar se corren hacia atrás las llaves que venían después (no quedan lápidas), así
+ * que las búsquedas no se hacen más lentas después de muchos remhash.
+ *
+ * Las llaves se comparan como equal. Los símbolos están internados y se comparan con ==,
+ * y sus hash (como los de los enteros) se calculan sin recorrer nada; con otras llaves,
+ * como listas, se usa su hashCode.
+ *
+ * No es segura para usarse desde varios hilos a la vez (por ejemplo dentro de pmap).
+ */
+public final class LispHashTable {
+    private static final int MIN_CAPACITY = 16; // Siempre una potencia de 2
+    private static final int MAX_CAPACITY = 1 << 30; // La potencia de 2 más grande que cabe en un int
+    private static final Object NIL_KEY = new Object(); // Representa una llave null
+
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;  // capacidad - 1
+    private int shift; // 32 - log2(capacidad): se usan los bits altos del hash
+
+    public LispHashTable(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    // Capacidad para guardar expected llaves llenándose a lo más hasta el 75%
+    static int capacityFor(int expected) {
+        int capacity = MIN_CAPACITY;
+        while ((long) capacity * 3 / 4 < expected && capacity < MAX_CAPACITY) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    public LispHashTable() {
+        this(0);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    // Posición ideal de la llave: multiplicación de Fibonacci y los bits altos del resultado,
+    // así enteros seguidos (o múltiplos de la capacidad) quedan repartidos en toda la tabla
+    private int slot(Object key) {
+        return hash(key) * 0x9E3779B9 >>> shift;
+    }
+
+    private static int hash(Object key) {
+        int h;
+        if (key instanceof Symbol) {
+            h = System.identityHashCode(key); // Internados: misma llave, mismo objeto
+        } else if (key instanceof Integer) {
+            h = (Integer) key;
+        } else {
+            h = key.hashCode();
+        }
+        return h;
+    }
+
+    private static boolean same(Object a, Object b) {
+        return a == b || (!(a instanceof Symbol) && a.equals(b));
+    }
+
+    // Posición de la llave, o ~posición del lugar libre donde iría (negativo: no está)
+    private int find(Object key) {
+        int i = slot(key);
+        while (true) {
+            Object k = keys[i];
+            if (k == null) return ~i;
+            if (same(k, key)) return i;
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * (gethash llave tabla)
+     * @return El valor, o missing si la llave no está.
+     */
+    public Object get(Object key, Object missing) {
+        int i = find(key == null ? NIL_KEY : key);
+        return i >= 0 ? values[i] : missing;
+    }
+
+    /**
+     * (puthash llave valor tabla): agrega o reemplaza.
+     */
+    public Object put(Object key, Object value) {
+        if (key == null) key = NIL_KEY;
+        int i = find(key);
+        if (i >= 0) {
+            values[i] = value;
+            return value;
+        }
+        if ((size + 1L) * 4 > (long) keys.length * 3) {
+            if (keys.length == MAX_CAPACITY) {
+                throw new RuntimeException("La tabla hash está llena: " + size + " llaves");
+            }
+            resize(keys.length * 2);
+            i = find(key);
+        }
+        keys[~i] = key;
+        values[~i] = value;
+        size++;
+        return value;
+    }
+
+    /**
+     * (remhash llave tabla)
+     * @return true si la llave estaba.
+     */
+    public boolean remove(Object key) {
+        int i = find(key == null ? NIL_KEY : key);
+        if (i < 0) {
+            return false;
+        }
+        // Corre hacia atrás las llaves del mismo grupo que quedarían inalcanzables
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            Object k = keys[j];
+            if (k == null) break;
+            int home = slot(k);
+            // La llave en j se puede mover al hueco si su posición ideal no está entre el hueco y j
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = k;
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * (maphash f tabla): llama a f con cada llave y valor. Recorre una copia de los
+     * arreglos, así f puede agregar o borrar llaves sin afectar el recorrido.
+     */
+    public void forEach(BiConsumer<Object, Object> action) {
+        Object[] k = keys.clone();
+        Object[] v = values.clone();
+        for (int i = 0; i < k.length; i++) {
+            if (i % Scheduler.CHUNK == 0) {
+                Scheduler.tick(); // Una tabla grande casi vacía no llama a f, pero igual tarda
+            }
+            if (k[i] != null) {
+                action.accept(k[i] == NIL_KEY ? null : k[i], v[i]);
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (i % Scheduler.CHUNK == 0) {
+                Scheduler.tick();
+            }
+            Object key = oldKeys[i];
+            if (key != null) {
+                int j = slot(key);
+                while (keys[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = key;
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    // AYUDAS PARA EL EVALUATOR Y LOS NODOS
+
+    /**
+     * (make-hash-table) o (make-hash-table tamaño-esperado)
+     */
+    static LispHashTable make(Object[] args) {
+        if (args.length > 1) {
+            throw new RuntimeException("make-hash-table necesita a lo más un argumento");
+        }
+        return args.length == 0 ? new LispHashTable() : new LispHashTable(NumericVector.index(args[0], "make-hash-table"));
+    }
+
+    /**
+     * Convierte el argumento en tabla, o lanza error.
+     */
+    static LispHashTable of(Object value, String operation) {
+        if (!(value instanceof LispHashTable)) {
+            throw new RuntimeException(operation + " necesita una tabla hash, pero se obtuvo: " + value);
+        }
+        return (LispHashTable) value;
+    }
+
+    /**
+     * (gethash llave tabla) o (gethash llave tabla por-defecto)
+     */
+    static Object gethash(Object[] args) {
+        if (args.length < 2 || args.length > 3) {
+            throw new RuntimeException("gethash necesita 2 o 3 argumentos");
+        }
+        return of(args[1], "gethash").get(args[0], args.length == 3 ? args[2] : null);
+    }
+
+    /**
+     * Se imprime como en Common Lisp, sin el contenido: #<hash-table 3>.
+     */
+    @Override
+    public String toString() {
+        return "#<hash-table " + size + ">";
+    }
+}
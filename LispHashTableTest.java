@@ -0,0 +1,110 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LispHashTableTest extends LispTest {
+
+    @BeforeEach
+    public void setUp() {
+        run("(setq destino (make-hash-table))");
+        run("(defun copiar (llave valor) (puthash llave (* valor 2) destino))");
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        run("(setq t1 (make-hash-table))");
+        assertEquals(1, run("(puthash 'a 1 t1)"));
+        run("(puthash 'b 2 t1)");
+        run("(puthash 'a 10 t1)");
+        assertEquals(10, run("(gethash 'a t1)"));
+        assertNull(run("(gethash 'c t1)"));
+        assertEquals(0, run("(gethash 'c t1 0)"));
+        assertEquals(2, run("(hash-table-count t1)"));
+        assertEquals(true, run("(remhash 'a t1)"));
+        assertEquals(false, run("(remhash 'a t1)"));
+        assertEquals(2, run("(gethash 'b t1)"));
+        assertEquals("#<hash-table 1>", run("t1").toString());
+    }
+
+    @Test
+    public void testListAndNumberKeys() {
+        run("(setq t1 (make-hash-table 4))");
+        run("(puthash '(1 2) 'lista t1)");
+        run("(puthash 4294967296 'largo t1)");
+        assertEquals(Symbol.intern("lista"), run("(gethash (list 1 2) t1)"));
+        assertEquals(Symbol.intern("largo"), run("(gethash (* 65536 65536) t1)"));
+    }
+
+    @Test
+    public void testManyKeysWithRemovals() {
+        // Crece varias veces y borra la mitad: las llaves corridas hacia atrás se deben seguir encontrando
+        LispHashTable table = new LispHashTable();
+        Map<Object, Object> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            Object key = i % 3 == 0 ? Symbol.intern("s" + i) : Numbers.valueOf(i * 1024);
+            table.put(key, i);
+            expected.put(key, i);
+        }
+        for (int i = 0; i < 20000; i += 2) {
+            Object key = i % 3 == 0 ? Symbol.intern("s" + i) : Numbers.valueOf(i * 1024);
+            assertTrue(table.remove(key));
+            expected.remove(key);
+        }
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<Object, Object> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), table.get(entry.getKey(), null));
+        }
+        Map<Object, Object> seen = new HashMap<>();
+        table.forEach(seen::put);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public void testCapacity() {
+        assertEquals(16, LispHashTable.capacityFor(0));
+        assertEquals(16, LispHashTable.capacityFor(12));
+        assertEquals(32, LispHashTable.capacityFor(13));
+        assertEquals(1 << 30, LispHashTable.capacityFor(500_000_000)); // Sin desbordar el int
+        assertEquals(1 << 30, LispHashTable.capacityFor(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testMapHash() {
+        run("(setq t1 (make-hash-table))");
+        run("(puthash 'a 1 t1)");
+        run("(puthash 'b 2 t1)");
+        run("(puthash 'c 3 t1)");
+        assertNull(run("(maphash copiar t1)"));
+        assertEquals(3, run("(hash-table-count destino)"));
+        assertEquals(6, run("(gethash 'c destino)"));
+    }
+
+    @Test
+    public void testEvaluatorPath() {
+        interpreter.setUseCompiler(false);
+        run("(setq t1 (make-hash-table))");
+        run("(puthash 1 10 t1)");
+        run("(puthash 2 20 t1)");
+        assertEquals(20, run("(gethash 2 t1)"));
+        assertEquals(true, run("(remhash 1 t1)"));
+        assertEquals(1, run("(hash-table-count t1)"));
+        run("(puthash 3 30 t1)");
+        run("(maphash copiar t1)");
+        assertEquals(2, run("(hash-table-count destino)"));
+        assertEquals(60, run("(gethash 3 destino)"));
+    }
+
+    @Test
+    public void testErrors() {
+        assertThrows(RuntimeException.class, () -> run("(gethash 'a '(1 2))"));
+        assertThrows(RuntimeException.class, () -> run("(puthash 'a 1 5)"));
+        assertThrows(RuntimeException.class, () -> run("(make-hash-table 'grande)"));
+        run("(setq t1 (make-hash-table))");
+        assertThrows(RuntimeException.class, () -> run("(maphash car t1)"));
+        assertTrue(new LispValue(run("t1")).isHashTable());
+    }
+}
@@ -6,7 +6,12 @@ import java.util.*;
  */
 public class LispInterpreter {
     private Environment environment; // Entorno donde se almacenan variables y funciones
-    private Evaluator evaluator; // Evaluador de expresiones Lisp
+    private Evaluator evaluator; // Evaluador de expresiones Lisp (recorre el árbol directamente)
+    private Compiler compiler; // Compilador a nodos ejecutables
+    private boolean useCompiler; // true: compila antes de evaluar, false: usa el Evaluator
+    private Optimizer optimizer; // Reescribe cada expresión antes de evaluarla
+    private boolean optimize = !"false".equals(System.getProperty("lisp.optimize"));
+    private boolean dumpOptimized = Boolean.getBoolean("lisp.optimize.dump"); // Muestra la forma optimizada
 
     /**
      * Constructor del LispInterpreter.
@@ -15,14 +20,73 @@ public class LispInterpreter {
     public LispInterpreter(Environment environment) {
         this.environment = environment;
         this.evaluator = new Evaluator(environment); // Crear un evaluador para manejar expresiones
+        this.compiler = new Compiler(environment);
+        this.optimizer = new Optimizer(environment);
+        this.useCompiler = true; // Por defecto se usa el camino compilado
+    }
+
+    /**
+     * Elige si las expresiones se compilan a nodos antes de evaluarlas
+     * o si se usa el Evaluator original (útil para comparar resultados y tiempos).
+     * @param useCompiler true para compilar, false para usar el Evaluator.
+     */
+    public void setUseCompiler(boolean useCompiler) {
+        this.useCompiler = useCompiler;
+    }
+
+    /**
+     * Indica si el intérprete está usando el camino compilado.
+     */
+    public boolean isUsingCompiler() {
+        return useCompiler;
+    }
+
+    /**
+     * Cambia la salida de lo que muestra el código (como el reporte de profile).
+     * Por defecto es System.out.
+     */
+    public void setOutput(Appendable output) {
+        environment.setOutput(output);
+    }
+
+    /**
+     * Activa o desactiva el Optimizer (por defecto activo; -Dlisp.optimize=false lo apaga).
+     */
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    /**
+     * Si es true, imprime cada expresión como queda después del Optimizer
+     * (por defecto -Dlisp.optimize.dump=true).
+     */
+    public void setDumpOptimized(boolean dumpOptimized) {
+        this.dumpOptimized = dumpOptimized;
     }
 
     /**
      * Evalúa una expresión Lisp y devuelve el resultado.
+     * Primero la pasa por el Optimizer (si está activo).
      * @param expression La expresión Lisp a evaluar.
      * @return El resultado de la evaluación.
      */
     public Object evaluate(Object expression) {
+        if (!optimize) {
+            return run(expression);
+        }
+        Optimizer.Result optimized = optimizer.optimize(expression);
+        if (dumpOptimized) {
+            System.out.println("Optimizado: " + Cons.fromTree(optimized.getForm()));
+        }
+        Object result = run(optimized.getForm());
+        optimized.link(environment); // Si era una defun que copió otras funciones
+        return result;
+    }
+
+    private Object run(Object expression) {
+        if (useCompiler) {
+            return compiler.compile(expression).eval(null); // Compila una vez y ejecuta los nodos
+        }
         return evaluator.evaluateExpression(expression); // Usa el Evaluator para evaluar la expresión
     }
 
@@ -0,0 +1,285 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor de REPL: escucha en un socket TCP local o en un socket Unix y evalúa
+ * el código Lisp que mandan los clientes.
+ *
+ * Cada conexión tiene su propia sesión (Environment.newSession()) encima de una
+ * biblioteca compartida, así las funciones cargadas al inicio no se repiten por cliente.
+ * Las expresiones se evalúan a medida que llegan y cada resultado se manda apenas está:
+ *   => resultado
+ *   !! mensaje de error
+ * Lo que la expresión muestra antes (como el reporte de profile) va antes de su
+ * resultado, una línea por línea, con el prefijo ";; ".
+ * La expresión (server-stats) devuelve los contadores del servidor en vez de evaluarse.
+ *
+ * El servidor no pide contraseña: cualquier programa de la máquina se puede conectar.
+ * Por eso las sesiones no pueden usar (save-image) ni (load-image), que leen y escriben
+ * archivos; setImageDirectory() las permite solo dentro de una carpeta.
+ *
+ * Cada conexión corre en su propio hilo. Con Java 21 o más se usan hilos virtuales;
+ * en versiones anteriores, un pool de hilos normales que crece según haga falta.
+ */
+public class LispServer implements Closeable {
+    private static final Symbol SERVER_STATS = Symbol.intern("server-stats");
+
+    private final Environment library;     // Biblioteca compartida por todas las sesiones
+    private final ServerSocketChannel server;
+    private final ExecutorService connections;
+    private final Path socketFile;         // Archivo del socket Unix (null si es TCP)
+    private final Stats stats = new Stats();
+    private volatile Path imageDirectory;  // Carpeta de las imágenes de las sesiones (null: no se permiten)
+
+    /**
+     * Contadores del servidor. Se pueden leer mientras el servidor atiende conexiones.
+     */
+    public static class Stats {
+        private final long started = System.nanoTime();
+        private final LongAdder connections = new LongAdder();
+        private final LongAdder activeConnections = new LongAdder();
+        private final LongAdder expressions = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();     // Tiempo total evaluando
+        private final AtomicLong maxNanos = new AtomicLong();     // Expresión más lenta
+
+        void record(long nanos, boolean failed) {
+            expressions.increment();
+            if (failed) errors.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getConnections() {
+            return connections.sum();
+        }
+
+        public long getActiveConnections() {
+            return activeConnections.sum();
+        }
+
+        public long getExpressions() {
+            return expressions.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * Expresiones evaluadas por segundo desde que arrancó el servidor.
+         */
+        public double getExpressionsPerSecond() {
+            long elapsed = System.nanoTime() - started;
+            return elapsed == 0 ? 0 : getExpressions() * 1e9 / elapsed;
+        }
+
+        /**
+         * Tiempo promedio de evaluación de una expresión, en microsegundos.
+         */
+        public double getMeanLatencyMicros() {
+            long count = getExpressions();
+            return count == 0 ? 0 : totalNanos.sum() / 1e3 / count;
+        }
+
+        public double getMaxLatencyMicros() {
+            return maxNanos.get() / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d conexiones (%d activas), %d expresiones (%d errores), %.0f expr/s, "
+                    + "latencia media %.1f us, máxima %.1f us",
+                getConnections(), getActiveConnections(), getExpressions(), getErrors(),
+                getExpressionsPerSecond(), getMeanLatencyMicros(), getMaxLatencyMicros());
+        }
+    }
+
+    /**
+     * Abre el servidor en un puerto TCP de la máquina local (127.0.0.1).
+     * @param library Biblioteca compartida (las sesiones se crean encima de ella).
+     * @param port Puerto; 0 elige uno libre (ver getAddress()).
+     */
+    public static LispServer tcp(Environment library, int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return new LispServer(library, server, null);
+    }
+
+    /**
+     * Abre el servidor en un socket Unix. El archivo se borra al cerrar el servidor.
+     * @param library Biblioteca compartida (las sesiones se crean encima de ella).
+     * @param path Ruta del socket (no debe existir).
+     */
+    public static LispServer unix(Environment library, Path path) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        return new LispServer(library, server, path);
+    }
+
+    private LispServer(Environment library, ServerSocketChannel server, Path socketFile) {
+        this.library = library;
+        this.server = server;
+        this.socketFile = socketFile;
+        this.connections = newThreadPerTaskExecutor("lisp-session");
+    }
+
+    /**
+     * Un hilo por tarea: hilos virtuales si la JVM los tiene (Java 21+), si no un pool
+     * de hilos normales. También lo usa el Scheduler.
+     */
+    static ExecutorService newThreadPerTaskExecutor(String threadName) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Permite que las sesiones usen (save-image) y (load-image) con archivos dentro de
+     * una carpeta. Vale para las conexiones que lleguen después.
+     * @param directory Carpeta de las imágenes, o null para no permitirlas (por defecto).
+     */
+    public void setImageDirectory(Path directory) {
+        this.imageDirectory = directory;
+    }
+
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Empieza a aceptar conexiones en un hilo aparte y regresa enseguida.
+     */
+    public void start() {
+        Thread acceptor = new Thread(this::acceptLoop, "lisp-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel client = server.accept();
+                connections.execute(() -> serve(client));
+            } catch (ClosedChannelException e) {
+                return; // close() cerró el servidor
+            } catch (IOException e) {
+                System.err.println("Error aceptando una conexión: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Atiende una conexión: lee expresiones hasta que el cliente cierra su lado.
+     */
+    private void serve(SocketChannel client) {
+        stats.connections.increment();
+        stats.activeConnections.increment();
+        try (SocketChannel channel = client) {
+            if (socketFile == null) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // Cada resultado sale enseguida
+            }
+            Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+            Parser parser = new Parser(new Tokenizer(Channels.newReader(channel, StandardCharsets.UTF_8)));
+            Environment session = library.newSession();
+            session.restrictImages(imageDirectory); // El cliente no elige cualquier archivo
+            LispInterpreter interpreter = new LispInterpreter(session);
+            StringBuilder output = new StringBuilder(); // Lo que muestra la expresión en curso
+            interpreter.setOutput(output);
+
+            while (true) {
+                Object expression;
+                try {
+                    if (!parser.hasNext()) break;
+                    expression = parser.parse();
+                } catch (RuntimeException e) {
+                    // Expresión incompleta o paréntesis de más: no se puede seguir leyendo
+                    reply(out, "!! " + e.getMessage());
+                    break;
+                }
+                String line = evaluate(interpreter, expression);
+                for (String shown : output.toString().split("\\R")) {
+                    if (!shown.isEmpty()) {
+                        reply(out, ";; " + shown);
+                    }
+                }
+                output.setLength(0);
+                reply(out, line);
+            }
+        } catch (IOException e) {
+            // El cliente cerró la conexión
+        } finally {
+            stats.activeConnections.decrement();
+        }
+    }
+
+    // Evalúa una expresión del cliente y arma la línea de respuesta
+    private String evaluate(LispInterpreter interpreter, Object expression) {
+        if (expression instanceof List && !((List<?>) expression).isEmpty()
+                && Symbol.of(((List<?>) expression).get(0)) == SERVER_STATS) {
+            return "=> " + stats;
+        }
+        long start = System.nanoTime();
+        String line;
+        boolean failed = false;
+        try {
+            line = "=> " + interpreter.evaluate(expression);
+        } catch (RuntimeException e) {
+            line = "!! " + e.getMessage();
+            failed = true;
+        } catch (StackOverflowError e) {
+            line = "!! Recursión demasiado profunda";
+            failed = true;
+        }
+        stats.record(System.nanoTime() - start, failed);
+        return line;
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * Deja de aceptar conexiones. Las sesiones abiertas terminan cuando su cliente cierra.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdown();
+        if (socketFile != null) {
+            Files.deleteIfExists(socketFile);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LispServerTest {
+
+    private Environment library;
+    private LispServer server;
+
+    @BeforeEach
+    public void setUp() {
+        library = new Environment();
+        new LispInterpreter(library).evaluate(new Parser(new Tokenizer("(defun cuadrado (x) (* x x))")).parse());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (server != null) server.close();
+    }
+
+    // Manda todo el texto, cierra el lado de escritura y devuelve las líneas de respuesta
+    private List<String> send(SocketChannel channel, String source) throws IOException {
+        try (channel) {
+            Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            out.write(source);
+            out.flush();
+            channel.shutdownOutput();
+            BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            List<String> lines = new ArrayList<>();
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+
+    private SocketChannel connectTcp() throws IOException {
+        if (server == null) {
+            server = LispServer.tcp(library, 0);
+        }
+        server.start();
+        return SocketChannel.open(server.getAddress());
+    }
+
+    @Test
+    public void testEvaluatesFormsFromTheSocket() throws IOException {
+        List<String> lines = send(connectTcp(), "(setq x 4)\n(cuadrado\n  x) (/ 1 0) (list x 5)");
+        assertEquals(Arrays.asList("=> 4", "=> 16", "!! No se puede dividir por 0", "=> (4 5)"), lines);
+    }
+
+    @Test
+    public void testProfileReportGoesToTheClient() throws IOException {
+        List<String> lines = send(connectTcp(),
+            "(defun cuenta (n) (cond ((<= n 0) 0) (t (cuenta (- n 1))))) (profile (cuenta 3))");
+        assertEquals("=> cuenta", lines.get(0));
+        assertTrue(lines.get(1).startsWith(";; Perfil"));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith(";; cuenta")));
+        assertEquals("=> 0", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testResultsAreStreamed() throws IOException {
+        try (SocketChannel channel = connectTcp()) {
+            Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            out.write("(cuadrado 3)\n");
+            out.flush();
+            assertEquals("=> 9", in.readLine()); // Llega antes de mandar la siguiente expresión
+            out.write("(cuadrado 5)\n");
+            out.flush();
+            assertEquals("=> 25", in.readLine());
+        }
+    }
+
+    @Test
+    public void testConnectionsHaveSeparateSessions() throws IOException {
+        send(connectTcp(), "(setq y 1) (defun cuadrado (x) 0)");
+        assertEquals(Arrays.asList("=> y", "=> 49"), send(SocketChannel.open(server.getAddress()), "y (cuadrado 7)"));
+    }
+
+    @Test
+    public void testIncompleteInput() throws IOException {
+        assertEquals(Arrays.asList("=> 4", "!! Error: Expresión incompleta."), send(connectTcp(), "(cuadrado 2) (cuadrado"));
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        send(connectTcp(), "(cuadrado 2) (cuadrado 3) (car 5)");
+        List<String> lines = send(SocketChannel.open(server.getAddress()), "(server-stats)");
+        assertTrue(lines.get(0).startsWith("=> 2 conexiones"), lines.get(0));
+        assertEquals(3, server.getStats().getExpressions());
+        assertEquals(1, server.getStats().getErrors());
+    }
+
+    @Test
+    public void testClientsCannotSaveOrLoadImages(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("x.img");
+        List<String> lines = send(connectTcp(), "(save-image \"/tmp/x\") (save-image " + file + ") (load-image " + file + ")");
+        assertEquals(3, lines.size());
+        for (String line : lines) {
+            assertEquals("!! save-image y load-image no están permitidos en esta sesión", line);
+        }
+        assertFalse(file.toFile().exists());
+    }
+
+    @Test
+    public void testImagesOnlyInsideTheImageDirectory(@TempDir Path dir) throws IOException {
+        server = LispServer.tcp(library, 0);
+        server.setImageDirectory(dir);
+        List<String> lines = send(connectTcp(), "(save-image prelude.img) (save-image ../fuera.img) (load-image prelude.img)");
+        assertEquals("=> 1", lines.get(0));
+        assertTrue(lines.get(1).startsWith("!! La imagen debe estar dentro de"), lines.get(1));
+        assertEquals("=> 1", lines.get(2));
+        assertTrue(dir.resolve("prelude.img").toFile().exists());
+        assertFalse(dir.resolveSibling("fuera.img").toFile().exists());
+    }
+
+    @Test
+    public void testUnixSocket(@TempDir Path dir) throws IOException {
+        Path socket = dir.resolve("lisp.sock");
+        server = LispServer.unix(library, socket);
+        server.start();
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(UnixDomainSocketAddress.of(socket));
+        assertEquals(Collections.singletonList("=> 36"), send(channel, "(cuadrado 6)"));
+        server.close();
+        assertFalse(socket.toFile().exists());
+    }
+}
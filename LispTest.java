@@ -0,0 +1,38 @@
+import org.junit.jupiter.api.BeforeEach;
+
+/**
+ * Base de los tests que evalúan código Lisp: cada test empieza con un entorno y un
+ * intérprete nuevos. Termina en Test para que Maven la compile junto con los tests;
+ * como es abstracta, JUnit no la corre.
+ */
+abstract class LispTest {
+    protected Environment environment;
+    protected LispInterpreter interpreter;
+
+    @BeforeEach
+    void setUpInterpreter() {
+        environment = new Environment();
+        interpreter = new LispInterpreter(environment);
+    }
+
+    /**
+     * Parsea una expresión.
+     */
+    static Object parse(String source) {
+        return new Parser(new Tokenizer(source)).parse();
+    }
+
+    /**
+     * Evalúa una expresión con el intérprete del test.
+     */
+    Object run(String source) {
+        return run(interpreter, source);
+    }
+
+    /**
+     * Evalúa una expresión con otro intérprete (otra sesión, otro entorno).
+     */
+    static Object run(LispInterpreter interpreter, String source) {
+        return interpreter.evaluate(parse(source));
+    }
+}
@@ -4,7 +4,7 @@ import java.util.*;
  * La clase LispValue representa los valores básicos en Lisp.
  */
 public class LispValue {
-    private Object value; // Puede ser un número, lista o string
+    private Object value; // Puede ser un número, lista, vector, tabla hash o string
 
     /**
      * Constructor para crear un LispValue con un valor asignado.
@@ -47,10 +47,37 @@ public class LispValue {
     }
 
     /**
-     * Verifica si el valor almacenado es un símbolo (string).
-     * @return true si es un string (símbolo de Lisp), false en caso contrario.
+     * Verifica si el valor almacenado es un vector numérico (make-vector).
+     * @return true si es un vector, false en caso contrario.
+     */
+    public boolean isVector() {
+        return value instanceof NumericVector;
+    }
+
+    /**
+     * Verifica si el valor almacenado es una tabla hash (make-hash-table).
+     * @return true si es una tabla hash, false en caso contrario.
+     */
+    public boolean isHashTable() {
+        return value instanceof LispHashTable;
+    }
+
+    /**
+     * Verifica si el valor almacenado es un símbolo.
+     * Se aceptan también los String de las formas armadas a mano.
+     * @return true si es un símbolo de Lisp, false en caso contrario.
      */
     public boolean isSymbol() {
-        return value instanceof String;
+        return value instanceof Symbol || value instanceof String;
+    }
+
+    /**
+     * Verifica si el valor almacenado es exactamente el símbolo dado.
+     * Como los símbolos están internados, basta comparar con ==.
+     * @param symbol Símbolo con el que se compara.
+     * @return true si es el mismo símbolo.
+     */
+    public boolean isSymbol(Symbol symbol) {
+        return value == symbol;
     }
 }
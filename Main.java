@@ -1,5 +1,8 @@
 import java.util.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Clase principal del intérprete Lisp.
@@ -8,9 +11,46 @@ import java.io.*;
  */
 public class Main {
     public static void main(String[] args) {
-        // Creamos el entorno y el evaluador
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (options.remove("--profile")) {
+            startProfiler();
+        }
+        if (options.remove("--no-optimize")) {
+            System.setProperty("lisp.optimize", "false");
+        }
+        if (options.remove("--dump-optimized")) {
+            System.setProperty("lisp.optimize.dump", "true"); // Muestra cada expresión optimizada
+        }
+        Path image = null;
+        int imageOption = options.indexOf("--image");
+        if (imageOption >= 0 && imageOption + 1 < options.size()) {
+            image = Paths.get(options.remove(imageOption + 1));
+            options.remove(imageOption);
+        }
+        int cacheOption = options.indexOf("--cache");
+        if (cacheOption >= 0 && cacheOption + 1 < options.size()) {
+            System.setProperty("lisp.cache.dir", options.remove(cacheOption + 1));
+            options.remove(cacheOption);
+        }
+        // La caché de archivos solo se usa si se pidió un directorio (--cache o -Dlisp.cache.dir)
+        Path cache = options.remove("--no-cache") ? null : FormCache.configuredDirectory();
+        args = options.toArray(new String[0]);
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(runBatch(args, image, cache));
+        }
+
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(args, image, cache);
+            return;
+        }
+
+        // Creamos el entorno y el intérprete
         Environment environment = new Environment();
-        Evaluator evaluator = new Evaluator(environment);
+        LispInterpreter interpreter = new LispInterpreter(environment);
+        if (image != null && !loadImage(environment, image)) {
+            return;
+        }
 
         Scanner scanner = new Scanner(System.in);
 
@@ -23,28 +63,27 @@ public class Main {
             System.out.print("Ingresa el nombre del archivo: ");
             String fileName = scanner.nextLine();
 
-            try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.trim().isEmpty()) continue; // Salta las líneas vacías
-
-                    try {
-                        // Tokeniza la lista
-                        Tokenizer tokenizer = new Tokenizer(line);
-                        List<String> tokens = tokenizer.tokenize();
-
-                        // Parsea los tokens
-                        Parser parser = new Parser(tokens);
-                        Object parsed = parser.parse();
-
-                        // Evalua la expresion
-                        Object result = evaluator.evaluateExpression(parsed);
+            // Carga el archivo completo: cada expresión se evalúa apenas se cierra,
+            // aunque ocupe varias líneas
+            ScriptLoader loader = new ScriptLoader(interpreter);
+            if (cache != null) {
+                loader.setCache(new FormCache(cache));
+            }
+            try {
+                loader.load(Paths.get(fileName), new ScriptLoader.Listener() {
+                    public void result(Object expression, Object result) {
                         System.out.println("Resultado: " + result);
-                    } catch (Exception e) {
-                        System.out.println("Error evaluando la línea: " + line);
+                    }
+
+                    public void error(Object expression, RuntimeException e) {
+                        System.out.println("Error evaluando la expresión: " + expression);
                         System.out.println("Detalle: " + e.getMessage());
                     }
-                }
+
+                    public void progress(ScriptLoader.Progress progress) {
+                        System.out.println("Progreso: " + progress);
+                    }
+                });
             } catch (IOException e) {
                 System.out.println("Error leyendo el archivo: " + e.getMessage());
             }
@@ -53,26 +92,30 @@ public class Main {
         // CONSOLA
         System.out.println("¡Bienvenido!\nEscribe 'salir' para cerrar el programa.");
 
+        // Las líneas se van pasando al IncrementalParser: una expresión puede ocupar varias
+        // líneas y se evalúa apenas se cierra
+        IncrementalParser parser = new IncrementalParser();
         while (true) {
-            System.out.print("Ingresa una expresión Lisp: ");
-            String input = scanner.nextLine().trim();
+            System.out.print(parser.isPending() ? "... " : "Ingresa una expresión Lisp: ");
+            if (!scanner.hasNextLine()) {
+                break;
+            }
+            String input = scanner.nextLine();
 
-            if (input.equalsIgnoreCase("salir")) {
+            if (!parser.isPending() && input.trim().equalsIgnoreCase("salir")) {
                 break;
             }
 
             try {
-                // Tokeniza la expresion
-                Tokenizer tokenizer = new Tokenizer(input);
-                List<String> tokens = tokenizer.tokenize();
-
-                // Parsea los tokens
-                Parser parser = new Parser(tokens);
-                Object parsed = parser.parse();
-
-                // Evalua la expresion
-                Object result = evaluator.evaluateExpression(parsed);
-                System.out.println("Resultado: " + result);
+                parser.feed(input + "\n", parsed -> {
+                    try {
+                        // Evalua la expresion
+                        Object result = interpreter.evaluate(parsed);
+                        System.out.println("Resultado: " + result);
+                    } catch (Exception e) {
+                        System.out.println("Error en la evaluación: " + e.getMessage());
+                    }
+                });
             } catch (Exception e) {
                 System.out.println("Error en la evaluación: " + e.getMessage());
             }
@@ -81,6 +124,126 @@ public class Main {
         scanner.close();
         System.out.println("Gracias por usar el intérprete de Lisp en Java.");
     }
+
+    /**
+     * --profile: mide todas las llamadas a funciones y muestra el reporte al terminar
+     * (también si el programa se corta con Ctrl-C).
+     */
+    private static void startProfiler() {
+        Profiler profiler = Profiler.startGlobal();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            profiler.stop();
+            System.out.print(profiler.report());
+        }));
+    }
+
+    /**
+     * --image archivo: carga una imagen guardada con (save-image archivo) antes de empezar.
+     */
+    private static boolean loadImage(Environment environment, Path image) {
+        long start = System.nanoTime();
+        try {
+            int count = Image.load(environment, image);
+            System.out.printf("Imagen %s: %d definiciones en %.1f ms%n", image, count, (System.nanoTime() - start) / 1e6);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("No se pudo cargar la imagen: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Modo sin consola: java Main --batch [--quiet] [--stats] [archivo ...]
+     * Sin archivos (o con "-") lee la entrada estándar. Ver BatchRunner para los códigos de salida.
+     */
+    private static int runBatch(String[] args, Path image, Path cache) {
+        List<String> inputs = new ArrayList<>(Arrays.asList(args).subList(1, args.length));
+        boolean quiet = inputs.remove("--quiet");
+        boolean stats = inputs.remove("--stats");
+
+        Environment environment = new Environment();
+        if (image != null && !loadImage(environment, image)) {
+            return BatchRunner.IO_ERROR;
+        }
+        BatchRunner runner = new BatchRunner(new LispInterpreter(environment),
+            new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8),
+            new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+        runner.setQuiet(quiet);
+        if (cache != null) {
+            runner.setCache(new FormCache(cache));
+        }
+        int status = runner.run(inputs, System.in);
+        if (stats) {
+            System.err.println("Estadísticas: " + runner.getStats());
+        }
+        return status;
+    }
+
+    /**
+     * Modo servidor: java Main --server <puerto o ruta de socket Unix> [--load archivo ...] [--image-dir carpeta]
+     * Los archivos de --load se cargan una vez en la biblioteca que comparten todas las sesiones.
+     * Sin --image-dir las sesiones no pueden usar save-image ni load-image.
+     */
+    private static void runServer(String[] args, Path image, Path cache) {
+        if (args.length < 2) {
+            System.out.println("Uso: java Main --server <puerto|ruta-de-socket> [--load archivo ...] [--image-dir carpeta]");
+            return;
+        }
+        Environment library = new Environment();
+        if (image != null && !loadImage(library, image)) {
+            return;
+        }
+        ScriptLoader loader = new ScriptLoader(new LispInterpreter(library));
+        if (cache != null) {
+            loader.setCache(new FormCache(cache));
+        }
+        Path imageDirectory = null;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--image-dir")) {
+                imageDirectory = Paths.get(args[i + 1]);
+                continue;
+            }
+            if (!args[i].equals("--load")) {
+                System.out.println("Opción desconocida: " + args[i]);
+                return;
+            }
+            try {
+                ScriptLoader.Progress progress = loader.load(Paths.get(args[i + 1]), new ScriptLoader.Listener() {
+                    public void result(Object expression, Object result) {
+                    }
+
+                    public void error(Object expression, RuntimeException e) {
+                        System.out.println("Error evaluando la expresión: " + expression);
+                        System.out.println("Detalle: " + e.getMessage());
+                    }
+
+                    public void progress(ScriptLoader.Progress progress) {
+                    }
+                });
+                System.out.println("Cargado " + args[i + 1] + ": " + progress);
+            } catch (IOException e) {
+                System.out.println("Error leyendo el archivo: " + e.getMessage());
+                return;
+            }
+        }
+
+        String target = args[1];
+        try (LispServer server = target.matches("\\d+")
+                ? LispServer.tcp(library, Integer.parseInt(target))
+                : LispServer.unix(library, Paths.get(target))) {
+            server.setImageDirectory(imageDirectory);
+            server.start();
+            System.out.println("Servidor escuchando en " + server.getAddress());
+            while (true) {
+                Thread.sleep(60_000);
+                System.out.println("Estadísticas: " + server.getStats());
+            }
+        } catch (IOException e) {
+            System.out.println("No se pudo abrir el servidor: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
 
 
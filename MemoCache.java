@@ -0,0 +1,115 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caché de resultados de una función definida con defun-memo.
+ * Guarda el resultado para cada combinación de argumentos y, cuando se llena,
+ * descarta el que se usó hace más tiempo (LRU). También cuenta aciertos y fallos.
+ */
+public class MemoCache {
+    public static final int DEFAULT_CAPACITY = 10000; // Resultados guardados por defecto
+
+    // Valor que devuelve get() cuando no hay resultado (null es un resultado válido)
+    static final Object MISSING = new Object();
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Object> entries;
+    private long hits;   // Llamadas que se respondieron desde la caché
+    private long misses; // Llamadas que tuvieron que evaluar el cuerpo
+
+    /**
+     * Crea una caché vacía.
+     * @param capacity Cantidad máxima de resultados que se guardan.
+     */
+    public MemoCache(int capacity) {
+        this.capacity = capacity;
+        // accessOrder = true: cada get() mueve la entrada al final, así la primera es la menos usada
+        this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > MemoCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Busca el resultado guardado para unos argumentos.
+     * @return El resultado, o MISSING si no está en la caché.
+     */
+    public synchronized Object get(Object[] args) {
+        Key key = new Key(args);
+        Object value = entries.get(key);
+        if (value == null && !entries.containsKey(key)) {
+            misses++;
+            return MISSING;
+        }
+        hits++;
+        return value;
+    }
+
+    /**
+     * Guarda el resultado de una llamada. El arreglo de argumentos queda como llave sin
+     * copiarse: quien llama no lo debe cambiar después (Node.Call guarda una copia porque
+     * el cuerpo puede cambiar sus slots; los valores del Evaluator nunca cambian).
+     */
+    public synchronized void put(Object[] args, Object value) {
+        entries.put(new Key(args), value);
+    }
+
+    /**
+     * Borra todos los resultados y reinicia las estadísticas.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Estadísticas como lista de Lisp: (aciertos fallos tamaño).
+     */
+    public synchronized List<Object> statistics() {
+        return Arrays.asList(Numbers.valueOf(hits), Numbers.valueOf(misses), Numbers.valueOf(entries.size()));
+    }
+
+    /**
+     * Llave de la caché: los valores de los argumentos, comparados uno por uno.
+     */
+    private static final class Key {
+        private final Object[] args;
+        private final int hash;
+
+        Key(Object[] args) {
+            this.args = args;
+            this.hash = Arrays.hashCode(args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(args, ((Key) other).args);
+        }
+    }
+}
@@ -0,0 +1,946 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Un Node es una expresión Lisp ya compilada por el Compiler.
+ * El tipo de expresión (suma, cond, llamada a función, etc.) se decide una sola vez
+ * al compilar, así que evaluarla es solo una llamada virtual a eval().
+ */
+public abstract class Node {
+
+    /**
+     * Evalúa el nodo.
+     * Los parámetros de funciones se leen del frame por posición; las variables
+     * globales (setq) se leen del Environment que guarda cada nodo al compilarse.
+     * @param frame Frame de la llamada actual (null en el nivel superior).
+     * @return El resultado de la evaluación.
+     */
+    public abstract Object eval(Frame frame);
+
+    /**
+     * Avisa al nodo que está en posición de cola (su valor es el valor de la función).
+     * Por defecto no hace nada; cond lo pasa a sus ramas y las llamadas lo usan para
+     * no crecer la pila de Java (ver Call y TailCall).
+     */
+    public void markTail() {
+    }
+
+    /**
+     * Regla de verdad de Lisp usada por cond: un Boolean vale por sí mismo,
+     * cualquier otro valor es verdadero si no es null.
+     */
+    static boolean isTrue(Object val) {
+        if (val instanceof Boolean) {
+            return (Boolean) val;
+        }
+        return val != null;
+    }
+
+    // NODOS BASICOS
+
+    /**
+     * Valor constante (números, listas vacías, formas que no se evalúan).
+     */
+    public static class Constant extends Node {
+        private final Object value;
+
+        public Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return value;
+        }
+    }
+
+    /**
+     * Referencia a un parámetro, ya traducida a (profundidad, posición).
+     */
+    public static class LocalRef extends Node {
+        private final int depth;
+        private final int slot;
+
+        public LocalRef(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return frame.get(depth, slot);
+        }
+    }
+
+    /**
+     * Referencia a un símbolo global. Si es una variable devuelve su valor,
+     * si no devuelve el símbolo tal cual. La celda se resolvió al compilar.
+     */
+    public static class GlobalRef extends Node {
+        private final Environment.Binding binding;
+
+        public GlobalRef(Environment.Binding binding) {
+            this.binding = binding;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return binding.isBound() ? binding.getValue() : binding.getSymbol();
+        }
+    }
+
+    /**
+     * (setq nombre valor) sobre una variable global.
+     */
+    public static class SetGlobal extends Node {
+        private final Environment.Binding binding;
+        private final Node value;
+
+        public SetGlobal(Environment.Binding binding, Node value) {
+            this.binding = binding;
+            this.value = value;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Object result = value.eval(frame);
+            binding.setValue(result);
+            return result;
+        }
+    }
+
+    /**
+     * (setq nombre valor) sobre un parámetro de la función.
+     */
+    public static class SetLocal extends Node {
+        private final int depth;
+        private final int slot;
+        private final Node value;
+
+        public SetLocal(int depth, int slot, Node value) {
+            this.depth = depth;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Object result = value.eval(frame);
+            frame.set(depth, slot, result);
+            return result;
+        }
+    }
+
+    /**
+     * (atom x)
+     */
+    public static class Atom extends Node {
+        private final Node arg;
+
+        public Atom(Node arg) {
+            this.arg = arg;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return !(arg.eval(frame) instanceof List);
+        }
+    }
+
+    /**
+     * (list a b c ...)
+     */
+    public static class ListNode extends Node {
+        private final Node[] items;
+
+        public ListNode(Node[] items) {
+            this.items = items;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Object[] values = new Object[items.length];
+            for (int i = 0; i < items.length; i++) {
+                values[i] = items[i].eval(frame);
+            }
+            return Cons.list(values);
+        }
+    }
+
+    /**
+     * (equal a b)
+     */
+    public static class Equal extends Node {
+        private final Node left;
+        private final Node right;
+
+        public Equal(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Object a = left.eval(frame);
+            Object b = right.eval(frame);
+            return a.equals(b);
+        }
+    }
+
+    // LISTAS (ver Cons)
+
+    /**
+     * (car lista)
+     */
+    public static class Car extends Node {
+        private final Node arg;
+
+        public Car(Node arg) {
+            this.arg = arg;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Cons.car(arg.eval(frame));
+        }
+    }
+
+    /**
+     * (cdr lista)
+     */
+    public static class Cdr extends Node {
+        private final Node arg;
+
+        public Cdr(Node arg) {
+            this.arg = arg;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Cons.cdr(arg.eval(frame));
+        }
+    }
+
+    /**
+     * (cons x lista)
+     */
+    public static class ConsNode extends Node {
+        private final Node car;
+        private final Node cdr;
+
+        public ConsNode(Node car, Node cdr) {
+            this.car = car;
+            this.cdr = cdr;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Cons.cons(car.eval(frame), cdr.eval(frame));
+        }
+    }
+
+    /**
+     * (null x)
+     */
+    public static class IsNull extends Node {
+        private final Node arg;
+
+        public IsNull(Node arg) {
+            this.arg = arg;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Cons.isNull(arg.eval(frame));
+        }
+    }
+
+    /**
+     * (length lista)
+     */
+    public static class Length extends Node {
+        private final Node arg;
+
+        public Length(Node arg) {
+            this.arg = arg;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Cons.length(arg.eval(frame));
+        }
+    }
+
+    /**
+     * (append a b ...)
+     */
+    public static class Append extends Node {
+        private final Node[] lists;
+
+        public Append(Node[] lists) {
+            this.lists = lists;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Object[] values = new Object[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                values[i] = lists[i].eval(frame);
+            }
+            return Cons.append(values);
+        }
+    }
+
+    // OPERACIONES ARITMETICAS Y DE COMPARACION
+
+    /**
+     * Base para +, -, * y / con cualquier cantidad de argumentos.
+     * Las operaciones las hace Numbers, que usa enteros pequeños sin crear objetos
+     * y pasa a Long o BigInteger cuando el resultado no cabe.
+     */
+    public abstract static class Arithmetic extends Node {
+        private final Node[] args;
+
+        protected Arithmetic(Node[] args) {
+            this.args = args;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            if (args.length == 0) {
+                return identity();
+            }
+            Object result = Numbers.check(args[0].eval(frame));
+            if (args.length == 1) {
+                return single(result);
+            }
+            for (int i = 1; i < args.length; i++) {
+                result = apply(result, Numbers.check(args[i].eval(frame)));
+            }
+            return result;
+        }
+
+        protected abstract Object apply(Object a, Object b);
+
+        // Resultado con un solo argumento (ej. (- 5) es -5)
+        protected Object single(Object a) {
+            return a;
+        }
+
+        // Resultado sin argumentos (ej. (+) es 0)
+        protected Object identity() {
+            throw new RuntimeException("Faltan argumentos para la operación");
+        }
+    }
+
+    public static class Add extends Arithmetic { // Suma
+        public Add(Node[] args) { super(args); }
+        protected Object apply(Object a, Object b) { return Numbers.add(a, b); }
+        protected Object identity() { return Numbers.valueOf(0); }
+    }
+
+    public static class Subtract extends Arithmetic { // Resta
+        public Subtract(Node[] args) { super(args); }
+        protected Object apply(Object a, Object b) { return Numbers.subtract(a, b); }
+        protected Object single(Object a) { return Numbers.negate(a); }
+    }
+
+    public static class Multiply extends Arithmetic { // Multiplicacion
+        public Multiply(Node[] args) { super(args); }
+        protected Object apply(Object a, Object b) { return Numbers.multiply(a, b); }
+        protected Object identity() { return Numbers.valueOf(1); }
+    }
+
+    public static class Divide extends Arithmetic { // Division
+        public Divide(Node[] args) { super(args); }
+        protected Object apply(Object a, Object b) { return Numbers.divide(a, b); }
+        protected Object single(Object a) { return Numbers.divide(Numbers.valueOf(1), a); }
+    }
+
+    /**
+     * Base para comparaciones numéricas de dos argumentos.
+     * Cada subclase solo decide qué hacer con el resultado de Numbers.compare.
+     */
+    public abstract static class Comparison extends Node {
+        private final Node left;
+        private final Node right;
+
+        protected Comparison(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Object a = Numbers.check(left.eval(frame));
+            Object b = Numbers.check(right.eval(frame));
+            return test(Numbers.compare(a, b));
+        }
+
+        protected abstract boolean test(int comparison);
+    }
+
+    public static class LessThan extends Comparison { // Menor que (<)
+        public LessThan(Node left, Node right) { super(left, right); }
+        protected boolean test(int c) { return c < 0; }
+    }
+
+    public static class GreaterThan extends Comparison { // Mayor que (>)
+        public GreaterThan(Node left, Node right) { super(left, right); }
+        protected boolean test(int c) { return c > 0; }
+    }
+
+    public static class LessThanOrEqual extends Comparison { // Menor o igual que (<=)
+        public LessThanOrEqual(Node left, Node right) { super(left, right); }
+        protected boolean test(int c) { return c <= 0; }
+    }
+
+    public static class GreaterThanOrEqual extends Comparison { // Mayor o igual que (>=)
+        public GreaterThanOrEqual(Node left, Node right) { super(left, right); }
+        protected boolean test(int c) { return c >= 0; }
+    }
+
+    // CONTROL Y FUNCIONES
+
+    /**
+     * (cond (prueba1 resultado1) (prueba2 resultado2) ...)
+     */
+    public static class Cond extends Node {
+        private final Node[] tests;
+        private final Node[] results;
+
+        public Cond(Node[] tests, Node[] results) {
+            this.tests = tests;
+            this.results = results;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            for (int i = 0; i < tests.length; i++) {
+                if (isTrue(tests[i].eval(frame))) {
+                    return results[i].eval(frame);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void markTail() {
+            for (Node result : results) {
+                result.markTail();
+            }
+        }
+    }
+
+    /**
+     * (defun nombre (params) cuerpo...) y (defun-memo nombre (params) cuerpo...)
+     * El cuerpo ya viene compilado y se guarda junto con la función, además del
+     * frame donde se definió (para los parámetros de funciones que la contienen).
+     */
+    public static class Defun extends Node {
+        private final Environment globals;
+        private final Environment.Binding binding;
+        private final List<Symbol> params;
+        private final List<Object> body;
+        private final Compiler.Scope scope; // Alcance del cuerpo, por si hay que volver a compilarlo
+        private final Node[] compiledBody;
+        private final boolean memoized; // true para defun-memo
+
+        public Defun(Environment globals, Environment.Binding binding, List<Symbol> params, List<Object> body,
+                     Compiler.Scope scope, Node[] compiledBody, boolean memoized) {
+            this.globals = globals;
+            this.binding = binding;
+            this.params = params;
+            this.body = body;
+            this.scope = scope;
+            this.compiledBody = compiledBody;
+            this.memoized = memoized;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Environment.LispFunction fn = new Environment.LispFunction(binding.getSymbol().getName(), params, body);
+            fn.setCompiledBody(compiledBody);
+            fn.setScope(scope);
+            fn.setGlobals(globals);
+            fn.setClosure(frame);
+            if (memoized) {
+                fn.setMemo(new MemoCache(MemoCache.DEFAULT_CAPACITY));
+            }
+            binding.setFunction(fn);
+            return binding.getSymbol();
+        }
+    }
+
+    // EVALUACIÓN EN PARALELO (ver Parallel)
+
+    /**
+     * (pcall expr1 expr2 ...): evalúa las expresiones en paralelo y devuelve la lista de resultados.
+     */
+    public static class PCall extends Node {
+        private final Node[] exprs;
+
+        public PCall(Node[] exprs) {
+            this.exprs = exprs;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            List<Supplier<Object>> bodies = new ArrayList<>(exprs.length);
+            for (Node expr : exprs) {
+                bodies.add(() -> expr.eval(frame));
+            }
+            return Parallel.evaluateAll(bodies);
+        }
+    }
+
+    /**
+     * (pmap funcion lista): llama a la función con cada elemento, en paralelo.
+     */
+    public static class PMap extends Node {
+        private final Environment globals;
+        private final Environment.Binding binding;
+        private final Node list;
+
+        public PMap(Environment globals, Environment.Binding binding, Node list) {
+            this.globals = globals;
+            this.binding = binding;
+            this.list = list;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Environment.LispFunction function = binding.getFunction();
+            if (function == null) {
+                throw new RuntimeException("Operador desconocido: " + binding.getSymbol());
+            }
+            if (function.getParameters().size() != 1) {
+                throw new RuntimeException("pmap necesita una función de un parámetro: " + function.getName());
+            }
+            Object items = list.eval(frame);
+            if (!(items instanceof List)) {
+                throw new RuntimeException("pmap necesita una lista, pero se obtuvo: " + items);
+            }
+            Object[] values = ((List<?>) items).toArray();
+            List<Supplier<Object>> bodies = new ArrayList<>(values.length);
+            for (Object value : values) {
+                bodies.add(() -> Call.invoke(globals, function, new Object[] {value}));
+            }
+            return Parallel.evaluateAll(bodies);
+        }
+    }
+
+    /**
+     * (range fin), (range inicio fin) o (range inicio fin paso)
+     */
+    public static class Range extends Node {
+        private final Node[] args;
+
+        public Range(Node[] args) {
+            this.args = args;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Object[] values = new Object[args.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = args[i].eval(frame);
+            }
+            return LazySeq.range(values);
+        }
+    }
+
+    /**
+     * (lazy-map funcion secuencia) o (lazy-filter funcion secuencia)
+     */
+    public static class LazyMap extends Node {
+        private final Environment globals;
+        private final Environment.Binding binding;
+        private final Node seq;
+        private final boolean filter;
+
+        public LazyMap(Environment globals, Environment.Binding binding, Node seq, boolean filter) {
+            this.globals = globals;
+            this.binding = binding;
+            this.seq = seq;
+            this.filter = filter;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Environment.LispFunction function = LazySeq.check(binding.getFunction(), binding.getSymbol(), 1,
+                filter ? "lazy-filter" : "lazy-map");
+            Object items = seq.eval(frame);
+            UnaryOperator<Object> call = value -> Call.invoke(globals, function, new Object[] {value});
+            return filter ? LazySeq.filter(call, items) : LazySeq.map(call, items);
+        }
+    }
+
+    /**
+     * (take n secuencia) o (drop n secuencia)
+     */
+    public static class Take extends Node {
+        private final Node count;
+        private final Node seq;
+        private final boolean drop;
+
+        public Take(Node count, Node seq, boolean drop) {
+            this.count = count;
+            this.seq = seq;
+            this.drop = drop;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            long n = LazySeq.count(count.eval(frame), drop ? "drop" : "take");
+            Object items = seq.eval(frame);
+            return drop ? LazySeq.drop(n, items) : LazySeq.take(n, items);
+        }
+    }
+
+    /**
+     * (reduce funcion inicial secuencia)
+     */
+    public static class Reduce extends Node {
+        private final Environment globals;
+        private final Environment.Binding binding;
+        private final Node initial;
+        private final Node seq;
+
+        public Reduce(Environment globals, Environment.Binding binding, Node initial, Node seq) {
+            this.globals = globals;
+            this.binding = binding;
+            this.initial = initial;
+            this.seq = seq;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Environment.LispFunction function = LazySeq.check(binding.getFunction(), binding.getSymbol(), 2, "reduce");
+            Object start = initial.eval(frame);
+            Object items = seq.eval(frame);
+            return LazySeq.reduce((result, value) -> Call.invoke(globals, function, new Object[] {result, value}),
+                start, items);
+        }
+    }
+
+    /**
+     * Operación que solo necesita sus argumentos ya evaluados (vectores y tablas hash).
+     */
+    public static class Primitive extends Node {
+        private final Node[] args;
+        private final Function<Object[], Object> operation;
+
+        public Primitive(Node[] args, Function<Object[], Object> operation) {
+            this.args = args;
+            this.operation = operation;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Object[] values = new Object[args.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = args[i].eval(frame);
+            }
+            return operation.apply(values);
+        }
+    }
+
+    /**
+     * (vmap funcion vector)
+     */
+    public static class VMap extends Node {
+        private final Environment globals;
+        private final Environment.Binding binding;
+        private final Node vector;
+
+        public VMap(Environment globals, Environment.Binding binding, Node vector) {
+            this.globals = globals;
+            this.binding = binding;
+            this.vector = vector;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Environment.LispFunction function = LazySeq.check(binding.getFunction(), binding.getSymbol(), 1, "vmap");
+            NumericVector items = NumericVector.of(vector.eval(frame), "vmap");
+            return items.map(value -> Call.invoke(globals, function, new Object[] {value}));
+        }
+    }
+
+    /**
+     * (maphash funcion tabla)
+     */
+    public static class MapHash extends Node {
+        private final Environment globals;
+        private final Environment.Binding binding;
+        private final Node table;
+
+        public MapHash(Environment globals, Environment.Binding binding, Node table) {
+            this.globals = globals;
+            this.binding = binding;
+            this.table = table;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Environment.LispFunction function = LazySeq.check(binding.getFunction(), binding.getSymbol(), 2, "maphash");
+            LispHashTable items = LispHashTable.of(table.eval(frame), "maphash");
+            items.forEach((key, value) -> Call.invoke(globals, function, new Object[] {key, value}));
+            return null;
+        }
+    }
+
+    /**
+     * (future expr)
+     */
+    public static class Future extends Node {
+        private final Node expr;
+
+        public Future(Node expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Parallel.future(() -> expr.eval(frame));
+        }
+    }
+
+    /**
+     * (deref future)
+     */
+    public static class Deref extends Node {
+        private final Node expr;
+
+        public Deref(Node expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Parallel.deref(expr.eval(frame));
+        }
+    }
+
+    /**
+     * (profile expr)
+     */
+    public static class Profile extends Node {
+        private final Environment globals; // Su salida recibe el reporte
+        private final Node expr;
+
+        public Profile(Environment globals, Node expr) {
+            this.globals = globals;
+            this.expr = expr;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Profiler.profile(() -> expr.eval(frame), globals.getOutput());
+        }
+    }
+
+    /**
+     * (save-image archivo) y (load-image archivo), ver Image.
+     */
+    public static class ImageFile extends Node {
+        private final boolean save;
+        private final Environment globals;
+        private final Object file;
+
+        public ImageFile(boolean save, Environment globals, Object file) {
+            this.save = save;
+            this.globals = globals;
+            this.file = file;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            return Image.evaluate(save, globals, file);
+        }
+    }
+
+    /**
+     * (memo-stats nombre) y (memo-clear nombre) sobre la caché de una función defun-memo.
+     */
+    public static class Memo extends Node {
+        private final Environment.Binding binding;
+        private final boolean clear; // true para memo-clear
+
+        public Memo(Environment.Binding binding, boolean clear) {
+            this.binding = binding;
+            this.clear = clear;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Environment.LispFunction function = binding.getFunction();
+            if (function == null || function.getMemo() == null) {
+                throw new RuntimeException("La función no usa memo: " + binding.getSymbol());
+            }
+            if (clear) {
+                function.getMemo().clear();
+                return true;
+            }
+            return function.getMemo().statistics();
+        }
+    }
+
+    /**
+     * Llamada a un operador que no es forma especial.
+     * Igual que en el Evaluator: si el nombre es una variable global devuelve su valor,
+     * si es una función la llama, y si no existe lanza error. La celda del nombre se
+     * resolvió al compilar, así que no se busca nada por nombre en cada llamada, y la
+     * función encontrada se guarda hasta que cambie Environment.version().
+     * Los argumentos se guardan en un Object[] nuevo que será el frame de la llamada.
+     *
+     * Si la llamada está en posición de cola no llama a la función: devuelve un TailCall
+     * y el ciclo de invoke() de quien la llamó la ejecuta, así la recursión de cola
+     * usa pila de Java constante.
+     */
+    public static class Call extends Node {
+        private final Environment globals;
+        private final Environment.Binding binding;
+        private final Node[] args;
+        private boolean tail; // true si el valor de esta llamada es el valor de la función
+        private Environment.CachedFunction cache; // Función resuelta la última vez (caché en línea)
+
+        public Call(Environment globals, Environment.Binding binding, Node[] args) {
+            this.globals = globals;
+            this.binding = binding;
+            this.args = args;
+        }
+
+        @Override
+        public void markTail() {
+            tail = true;
+        }
+
+        @Override
+        public Object eval(Frame frame) {
+            Environment.LispFunction function;
+            Environment.CachedFunction cached = cache;
+            if (cached != null && cached.version == Environment.version()) {
+                function = cached.function;
+            } else {
+                int version = Environment.version();
+                if (binding.isBound()) {
+                    return binding.getValue();
+                }
+                function = binding.getFunction();
+                if (function == null) {
+                    throw new RuntimeException("Operador desconocido: " + binding.getSymbol());
+                }
+                cache = new Environment.CachedFunction(version, globals, function);
+            }
+
+            int arity = function.getParameters().size();
+            if (args.length < arity) {
+                throw new RuntimeException("Faltan argumentos para la función: " + function.getName());
+            }
+
+            // Asignar argumentos a parámetros (por posición)
+            Object[] slots = new Object[arity];
+            for (int i = 0; i < arity; i++) {
+                slots[i] = args[i].eval(frame);
+            }
+
+            if (tail) {
+                return new TailCall(function, slots);
+            }
+            return invoke(globals, function, slots);
+        }
+
+        /**
+         * Ejecuta una función con sus argumentos ya evaluados.
+         * Usa el código compilado si la función ya está compilada (JitCompiler);
+         * si se definió con defun-memo, primero busca el resultado en su caché.
+         * Si hay un Profiler activo, la llamada se mide.
+         * Cada llamada gasta una reducción del Scheduler.
+         */
+        static Object invoke(Environment globals, Environment.LispFunction function, Object[] slots) {
+            Scheduler.tick();
+            Profiler profiler = Profiler.active();
+            if (profiler == null) {
+                return dispatch(globals, function, slots);
+            }
+            profiler.enter(function);
+            try {
+                return dispatch(globals, function, slots);
+            } finally {
+                profiler.exit();
+            }
+        }
+
+        private static Object dispatch(Environment globals, Environment.LispFunction function, Object[] slots) {
+            Object compiled = JitCompiler.call(function, slots);
+            if (compiled != JitCompiler.NOT_COMPILED) {
+                return compiled;
+            }
+            MemoCache memo = function.getMemo();
+            if (memo == null) {
+                return run(globals, function, slots);
+            }
+            Object cached = memo.get(slots);
+            if (cached != MemoCache.MISSING) {
+                return cached;
+            }
+            Object[] key = slots.clone(); // El cuerpo puede cambiar los slots con setq; es la única copia
+            Object result = run(globals, function, slots);
+            memo.put(key, result);
+            return result;
+        }
+
+        /**
+         * Evalúa el cuerpo de una función (trampolín).
+         * Mientras el cuerpo termine en una llamada de cola, se reemplaza la función
+         * y los argumentos y se repite el ciclo en vez de hacer una llamada recursiva.
+         */
+        private static Object run(Environment globals, Environment.LispFunction function, Object[] slots) {
+            while (true) {
+                Frame callFrame = new Frame(slots, function.getClosure());
+                Object result = null;
+                for (Node expr : Compiler.bodyOf(globals, function)) {
+                    result = expr.eval(callFrame);
+                }
+                if (!(result instanceof TailCall)) {
+                    return result;
+                }
+                TailCall next = (TailCall) result;
+                if (next.function.getMemo() != null) {
+                    // El resultado de una función con memo se tiene que guardar: se llama normalmente
+                    return invoke(globals, next.function, next.slots);
+                }
+                Scheduler.tick();
+                Profiler profiler = Profiler.active();
+                if (profiler != null) {
+                    profiler.tailCall(next.function);
+                }
+                Object compiled = JitCompiler.call(next.function, next.slots);
+                if (compiled != JitCompiler.NOT_COMPILED) {
+                    return compiled;
+                }
+                function = next.function;
+                slots = next.slots;
+            }
+        }
+    }
+
+    /**
+     * Llamada pendiente que devuelve una Call en posición de cola.
+     * Nunca sale del ciclo de Call.invoke(), así que el código Lisp no la ve.
+     */
+    static final class TailCall {
+        final Environment.LispFunction function;
+        final Object[] slots;
+
+        TailCall(Environment.LispFunction function, Object[] slots) {
+            this.function = function;
+            this.slots = slots;
+        }
+    }
+}
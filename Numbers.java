@@ -0,0 +1,180 @@
+import java.math.BigInteger;
+
+/**
+ * Operaciones numéricas de Lisp (la "torre numérica" de enteros).
+ * Un entero se representa como Integer si cabe en int, como Long si cabe en long,
+ * y como BigInteger si no; las operaciones pasan al tipo más grande cuando hay overflow
+ * y vuelven al más pequeño cuando el resultado cabe, así (factorial 13) da el valor correcto.
+ *
+ * Los enteros pequeños salen de una tabla creada al inicio, así que la aritmética común
+ * (contadores, índices, resultados pequeños) no crea objetos nuevos.
+ */
+public final class Numbers {
+    private static final int CACHE_LOW = -1024;  // Menor entero de la tabla
+    private static final int CACHE_HIGH = 32767; // Mayor entero de la tabla
+    private static final Integer[] CACHE = new Integer[CACHE_HIGH - CACHE_LOW + 1];
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = Integer.valueOf(CACHE_LOW + i);
+        }
+    }
+
+    private Numbers() {
+    }
+
+    // CONVERSIONES
+
+    /**
+     * Devuelve el entero en su representación más pequeña (Integer o Long).
+     * Si está en la tabla de enteros pequeños no se crea ningún objeto.
+     */
+    public static Object valueOf(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[(int) value - CACHE_LOW];
+        }
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return Integer.valueOf((int) value);
+        }
+        return Long.valueOf(value);
+    }
+
+    /**
+     * Devuelve un BigInteger en su representación más pequeña.
+     */
+    public static Object valueOf(BigInteger value) {
+        if (value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0) {
+            return valueOf(value.longValue());
+        }
+        return value;
+    }
+
+    /**
+     * Convierte un token en número, o devuelve null si no es un entero.
+     * @param token Texto del token (ej. 42, -7 o 123456789012345678901234).
+     */
+    public static Object parse(String token) {
+        int start = token.startsWith("-") ? 1 : 0; // Signo negativo opcional
+        if (start == token.length()) return null;
+        for (int i = start; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) return null;
+        }
+        if (token.length() - start <= 18) {
+            return valueOf(Long.parseLong(token)); // 18 dígitos siempre caben en long
+        }
+        return valueOf(new BigInteger(token));
+    }
+
+    /**
+     * Verifica si un valor es un entero de Lisp.
+     */
+    public static boolean isNumber(Object val) {
+        return val instanceof Integer || val instanceof Long || val instanceof BigInteger;
+    }
+
+    /**
+     * Devuelve el mismo valor si es un número; si no, lanza error.
+     */
+    public static Object check(Object val) {
+        if (isNumber(val)) {
+            return val;
+        }
+        throw new RuntimeException("Se esperaba un número, pero se obtuvo: " + val);
+    }
+
+    // OPERACIONES ARITMETICAS
+
+    public static Object add(Object a, Object b) { // Suma
+        if (a instanceof Integer && b instanceof Integer) {
+            return valueOf((long) (Integer) a + (Integer) b); // Dos int nunca desbordan un long
+        }
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long x = ((Number) a).longValue();
+            long y = ((Number) b).longValue();
+            long r = x + y;
+            if (((x ^ r) & (y ^ r)) >= 0) { // Sin overflow (misma prueba que Math.addExact)
+                return valueOf(r);
+            }
+        }
+        return valueOf(big(a).add(big(b)));
+    }
+
+    public static Object subtract(Object a, Object b) { // Resta
+        if (a instanceof Integer && b instanceof Integer) {
+            return valueOf((long) (Integer) a - (Integer) b);
+        }
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long x = ((Number) a).longValue();
+            long y = ((Number) b).longValue();
+            long r = x - y;
+            if (((x ^ y) & (x ^ r)) >= 0) { // Sin overflow (misma prueba que Math.subtractExact)
+                return valueOf(r);
+            }
+        }
+        return valueOf(big(a).subtract(big(b)));
+    }
+
+    public static Object multiply(Object a, Object b) { // Multiplicacion
+        if (a instanceof Integer && b instanceof Integer) {
+            return valueOf((long) (Integer) a * (Integer) b); // Dos int nunca desbordan un long
+        }
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long x = ((Number) a).longValue();
+            long y = ((Number) b).longValue();
+            long high = Math.multiplyHigh(x, y);
+            long r = x * y;
+            if ((high == 0 && r >= 0) || (high == -1 && r < 0)) { // El resultado cabe en long
+                return valueOf(r);
+            }
+        }
+        return valueOf(big(a).multiply(big(b)));
+    }
+
+    public static Object divide(Object a, Object b) { // Division entera
+        if (isZero(b)) throw new ArithmeticException("No se puede dividir por 0");
+        if (a instanceof Integer && b instanceof Integer) {
+            return valueOf((long) (Integer) a / (Integer) b); // En long, MIN_VALUE / -1 no desborda
+        }
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long x = ((Number) a).longValue();
+            long y = ((Number) b).longValue();
+            if (!(x == Long.MIN_VALUE && y == -1)) {
+                return valueOf(x / y);
+            }
+        }
+        return valueOf(big(a).divide(big(b)));
+    }
+
+    public static Object negate(Object a) {
+        return subtract(CACHE[-CACHE_LOW], a);
+    }
+
+    // COMPARACION
+
+    /**
+     * Compara dos números.
+     * @return Negativo si a < b, 0 si son iguales, positivo si a > b.
+     */
+    public static int compare(Object a, Object b) {
+        if (a instanceof Integer && b instanceof Integer) {
+            return Integer.compare((Integer) a, (Integer) b);
+        }
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        }
+        return big(a).compareTo(big(b));
+    }
+
+    private static boolean isZero(Object val) {
+        if (val instanceof BigInteger) return ((BigInteger) val).signum() == 0;
+        return ((Number) val).longValue() == 0;
+    }
+
+    private static BigInteger big(Object val) {
+        if (val instanceof BigInteger) return (BigInteger) val;
+        return BigInteger.valueOf(((Number) val).longValue());
+    }
+}
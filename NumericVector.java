@@ -0,0 +1,377 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * Vector de enteros guardados sin objetos: (make-vector n 'int) usa un int[] y
+ * (make-vector n 'long) un long[]. Un elemento ocupa 4 u 8 bytes, en vez de un puntero
+ * más un Integer de 16 bytes en una lista, y los elementos quedan seguidos en memoria.
+ *
+ * vsum y vdot recorren el arreglo con un ciclo simple, sin saltos, que el JIT de la JVM
+ * puede vectorizar: el overflow se acumula en una bandera en vez de revisarse con
+ * Math.addExact en cada paso. Solo si hubo overflow se repite el cálculo con BigInteger
+ * (igual que el resto de la aritmética, ver Numbers). Un valor que no cabe en el tipo del
+ * vector es un error, no se recorta.
+ *
+ * Como el intérprete solo tiene enteros, no hay vectores de double.
+ */
+public abstract class NumericVector {
+
+    /**
+     * Crea un vector lleno con el valor inicial.
+     * @param kind Símbolo int o long.
+     */
+    public static NumericVector make(Symbol kind, int length, Object initial) {
+        if (length < 0) {
+            throw new RuntimeException("make-vector necesita un tamaño positivo: " + length);
+        }
+        NumericVector vector;
+        switch (kind.getName()) {
+            case "int": vector = new Ints(new int[length]); break;
+            case "long": vector = new Longs(new long[length]); break;
+            default: throw new RuntimeException("Tipo de vector desconocido (se espera int o long): " + kind);
+        }
+        if (initial != null && !initial.equals(0)) {
+            vector.fill(initial);
+        }
+        return vector;
+    }
+
+    /**
+     * Arma un make-vector con sus argumentos ya evaluados: (make-vector n), (make-vector n tipo)
+     * o (make-vector n tipo inicial). El tipo por defecto es long.
+     */
+    static NumericVector make(Object[] args) {
+        if (args.length < 1 || args.length > 3) {
+            throw new RuntimeException("make-vector necesita de 1 a 3 argumentos");
+        }
+        Symbol kind = args.length > 1 ? Symbol.of(args[1]) : Symbol.intern("long");
+        if (kind == null) {
+            throw new RuntimeException("Tipo de vector desconocido (se espera int o long): " + args[1]);
+        }
+        return make(kind, index(args[0], "make-vector"), args.length > 2 ? args[2] : null);
+    }
+
+    /**
+     * (vref v i)
+     */
+    static Object vref(Object vector, Object index) {
+        NumericVector v = of(vector, "vref");
+        return v.get(v.checkIndex(index(index, "vref")));
+    }
+
+    /**
+     * (vset! v i x)
+     */
+    static Object vset(Object vector, Object index, Object value) {
+        NumericVector v = of(vector, "vset!");
+        return v.set(v.checkIndex(index(index, "vset!")), value);
+    }
+
+    /**
+     * (vsum v)
+     */
+    static Object vsum(Object vector) {
+        return of(vector, "vsum").sum();
+    }
+
+    /**
+     * (vdot a b)
+     */
+    static Object vdot(Object a, Object b) {
+        return of(a, "vdot").dot(of(b, "vdot"));
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= length()) {
+            throw new RuntimeException("Índice fuera del vector: " + index + " (tamaño " + length() + ")");
+        }
+        return index;
+    }
+
+    /**
+     * Convierte el argumento en vector, o lanza error.
+     */
+    static NumericVector of(Object value, String operation) {
+        if (!(value instanceof NumericVector)) {
+            throw new RuntimeException(operation + " necesita un vector, pero se obtuvo: " + value);
+        }
+        return (NumericVector) value;
+    }
+
+    /**
+     * Convierte el argumento en índice (o tamaño), o lanza error.
+     */
+    static int index(Object value, String operation) {
+        if (!(value instanceof Integer)) {
+            throw new RuntimeException(operation + " necesita un índice entero, pero se obtuvo: " + value);
+        }
+        return (Integer) value;
+    }
+
+    // Valor como long, o error si no es un entero que quepa
+    static long toLong(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        throw new RuntimeException("El valor no cabe en un vector long: " + value);
+    }
+
+    public abstract int length();
+
+    public abstract String getKind();
+
+    /**
+     * (vref v i)
+     */
+    public abstract Object get(int index);
+
+    /**
+     * (vset! v i x): cambia el elemento y devuelve x.
+     */
+    public abstract Object set(int index, Object value);
+
+    protected abstract void fill(Object value);
+
+    /**
+     * (vsum v): suma de los elementos.
+     */
+    public abstract Object sum();
+
+    /**
+     * (vdot a b): suma de los productos elemento por elemento.
+     */
+    public abstract Object dot(NumericVector other);
+
+    /**
+     * (vmap f v): vector nuevo del mismo tipo con f aplicada a cada elemento.
+     */
+    public abstract NumericVector map(UnaryOperator<Object> function);
+
+    // Revisa que los dos vectores sean del mismo tipo y tamaño
+    protected void checkSameShape(NumericVector other) {
+        if (other.getClass() != getClass() || other.length() != length()) {
+            throw new RuntimeException("vdot necesita dos vectores del mismo tipo y tamaño");
+        }
+    }
+
+    /**
+     * Se imprime como en Common Lisp: #(1 2 3).
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("#(");
+        for (int i = 0; i < length(); i++) {
+            if (i > 0) out.append(' ');
+            out.append(get(i));
+        }
+        return out.append(')').toString();
+    }
+
+    /**
+     * Vector respaldado por un int[].
+     */
+    static final class Ints extends NumericVector {
+        final int[] data;
+
+        Ints(int[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int length() {
+            return data.length;
+        }
+
+        @Override
+        public String getKind() {
+            return "int";
+        }
+
+        @Override
+        public Object get(int index) {
+            return Numbers.valueOf(data[index]);
+        }
+
+        @Override
+        public Object set(int index, Object value) {
+            data[index] = toInt(value);
+            return value;
+        }
+
+        @Override
+        protected void fill(Object value) {
+            Arrays.fill(data, toInt(value));
+        }
+
+        @Override
+        public Object sum() {
+            long sum = 0; // Con int nunca desborda: 2^31 elementos de 2^31 caben en un long
+            for (int i = 0; i < data.length; ) {
+                Scheduler.tick(); // Una reducción por bloque; el ciclo de adentro queda simple
+                for (int end = i + Math.min(Scheduler.CHUNK, data.length - i); i < end; i++) {
+                    sum += data[i];
+                }
+            }
+            return Numbers.valueOf(sum);
+        }
+
+        @Override
+        public Object dot(NumericVector other) {
+            checkSameShape(other);
+            int[] b = ((Ints) other).data;
+            long sum = 0; // Cada producto cabe en un long, pero la suma puede desbordar
+            boolean overflow = false;
+            for (int i = 0; i < data.length; ) {
+                Scheduler.tick();
+                for (int end = i + Math.min(Scheduler.CHUNK, data.length - i); i < end; i++) {
+                    long product = (long) data[i] * b[i];
+                    long r = sum + product;
+                    overflow |= ((sum ^ r) & (product ^ r)) < 0;
+                    sum = r;
+                }
+            }
+            return overflow ? bigDot(this, other) : Numbers.valueOf(sum);
+        }
+
+        @Override
+        public NumericVector map(UnaryOperator<Object> function) {
+            int[] result = new int[data.length];
+            for (int i = 0; i < data.length; i++) {
+                result[i] = toInt(function.apply(Numbers.valueOf(data[i])));
+            }
+            return new Ints(result);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Ints && Arrays.equals(data, ((Ints) other).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(data);
+        }
+
+        private static int toInt(Object value) {
+            if (value instanceof Integer) {
+                return (Integer) value;
+            }
+            throw new RuntimeException("El valor no cabe en un vector int: " + value);
+        }
+    }
+
+    /**
+     * Vector respaldado por un long[].
+     */
+    static final class Longs extends NumericVector {
+        final long[] data;
+
+        Longs(long[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int length() {
+            return data.length;
+        }
+
+        @Override
+        public String getKind() {
+            return "long";
+        }
+
+        @Override
+        public Object get(int index) {
+            return Numbers.valueOf(data[index]);
+        }
+
+        @Override
+        public Object set(int index, Object value) {
+            data[index] = toLong(value);
+            return value;
+        }
+
+        @Override
+        protected void fill(Object value) {
+            Arrays.fill(data, toLong(value));
+        }
+
+        @Override
+        public Object sum() {
+            long sum = 0;
+            boolean overflow = false;
+            for (int i = 0; i < data.length; ) {
+                Scheduler.tick();
+                for (int end = i + Math.min(Scheduler.CHUNK, data.length - i); i < end; i++) {
+                    long value = data[i];
+                    long r = sum + value;
+                    overflow |= ((sum ^ r) & (value ^ r)) < 0; // Misma prueba que Math.addExact
+                    sum = r;
+                }
+            }
+            if (!overflow) {
+                return Numbers.valueOf(sum);
+            }
+            BigInteger big = BigInteger.ZERO;
+            for (int i = 0; i < data.length; i++) {
+                if (i % Scheduler.CHUNK == 0) {
+                    Scheduler.tick();
+                }
+                big = big.add(BigInteger.valueOf(data[i]));
+            }
+            return Numbers.valueOf(big);
+        }
+
+        @Override
+        public Object dot(NumericVector other) {
+            checkSameShape(other);
+            long[] b = ((Longs) other).data;
+            long sum = 0;
+            boolean overflow = false;
+            for (int i = 0; i < data.length; ) {
+                Scheduler.tick();
+                for (int end = i + Math.min(Scheduler.CHUNK, data.length - i); i < end; i++) {
+                    long product = data[i] * b[i];
+                    overflow |= Math.multiplyHigh(data[i], b[i]) != (product >> 63); // El producto no cabe
+                    long r = sum + product;
+                    overflow |= ((sum ^ r) & (product ^ r)) < 0;
+                    sum = r;
+                }
+            }
+            return overflow ? bigDot(this, other) : Numbers.valueOf(sum);
+        }
+
+        @Override
+        public NumericVector map(UnaryOperator<Object> function) {
+            long[] result = new long[data.length];
+            for (int i = 0; i < data.length; i++) {
+                result[i] = toLong(function.apply(Numbers.valueOf(data[i])));
+            }
+            return new Longs(result);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Longs && Arrays.equals(data, ((Longs) other).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(data);
+        }
+    }
+
+    // Producto punto con BigInteger, cuando el resultado no cabe en un long
+    private static Object bigDot(NumericVector a, NumericVector b) {
+        BigInteger sum = BigInteger.ZERO;
+        for (int i = 0; i < a.length(); i++) {
+            if (i % Scheduler.CHUNK == 0) {
+                Scheduler.tick();
+            }
+            sum = sum.add(BigInteger.valueOf(((Number) a.get(i)).longValue())
+                .multiply(BigInteger.valueOf(((Number) b.get(i)).longValue())));
+        }
+        return Numbers.valueOf(sum);
+    }
+}
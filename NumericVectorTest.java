@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NumericVectorTest extends LispTest {
+
+    @BeforeEach
+    public void setUp() {
+        run("(defun cuadrado (n) (* n n))");
+    }
+
+    @Test
+    public void testMakeRefSet() {
+        run("(setq v (make-vector 4 'int 7))");
+        assertEquals("#(7 7 7 7)", run("v").toString());
+        assertEquals(9, run("(vset! v 2 9)"));
+        assertEquals(9, run("(vref v 2)"));
+        assertEquals(4, run("(length v)"));
+        assertEquals("#(0 0)", run("(make-vector 2)").toString());
+        assertEquals(true, run("(equal (make-vector 3 'long 1) (make-vector 3 'long 1))"));
+    }
+
+    @Test
+    public void testBulkOperations() {
+        run("(setq v (make-vector 1000 'int 3))");
+        assertEquals(3000, run("(vsum v)"));
+        assertEquals(9000, run("(vdot v v)"));
+        assertEquals(9000, run("(vsum (vmap cuadrado v))"));
+    }
+
+    @Test
+    public void testOverflowPromotesToBigInteger() {
+        run("(setq v (make-vector 3 'long 4611686018427387904))"); // 2^62
+        assertEquals(BigInteger.valueOf(3).shiftLeft(62), run("(vsum v)"));
+        assertEquals(BigInteger.valueOf(3).shiftLeft(124), run("(vdot v v)"));
+        run("(setq w (make-vector 3 'int 2147483647))");
+        assertEquals(BigInteger.valueOf(2147483647L).pow(2).multiply(BigInteger.valueOf(3)), run("(vdot w w)"));
+    }
+
+    @Test
+    public void testEvaluatorPath() {
+        interpreter.setUseCompiler(false);
+        run("(setq v (make-vector 5 'long 2))");
+        run("(vset! v 0 10)");
+        assertEquals(18, run("(vsum v)"));
+        assertEquals("#(100 4 4 4 4)", run("(vmap cuadrado v)").toString());
+    }
+
+    @Test
+    public void testErrors() {
+        run("(setq v (make-vector 2 'int))");
+        assertThrows(RuntimeException.class, () -> run("(vref v 2)"));
+        assertThrows(RuntimeException.class, () -> run("(vset! v 0 4294967296)")); // No cabe en int
+        assertThrows(RuntimeException.class, () -> run("(make-vector 2 'double)"));
+        assertThrows(RuntimeException.class, () -> run("(vdot v (make-vector 3 'int))"));
+        assertThrows(RuntimeException.class, () -> run("(vsum '(1 2))"));
+    }
+
+    @Test
+    public void testLispValueRecognizesVectors() {
+        LispValue value = new LispValue(run("(make-vector 1)"));
+        assertTrue(value.isVector());
+        assertFalse(value.isList());
+    }
+}
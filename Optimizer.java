@@ -0,0 +1,410 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * El Optimizer reescribe la salida del Parser antes de evaluarla (lo usa LispInterpreter):
+ * - Calcula las operaciones cuyos argumentos son constantes: (* 60 60) queda 3600.
+ * - Quita de un cond las cláusulas que nunca se eligen y las que siguen a una que
+ *   siempre se elige; (cond (t x)) queda x.
+ * - Convierte los datos citados ('(1 2 3)) en listas Cons una sola vez.
+ * - Copia el cuerpo de las funciones triviales en quien las llama: con
+ *   (defun cuadrado (x) (* x x)), (cuadrado n) queda (* n n) y (cuadrado 3) queda 9.
+ *
+ * Una función es trivial si su cuerpo es una sola expresión hecha de aritmética,
+ * comparaciones y operaciones de listas sobre sus parámetros y constantes (así no puede
+ * ser recursiva ni tener efectos). Solo se copia si cada argumento es una constante o
+ * una variable, para no evaluar dos veces una expresión.
+ *
+ * Si una función copiada se redefine, las funciones que la tenían copiada vuelven a su
+ * cuerpo original (ver LispFunction.deoptimize). Lo mismo pasa con las que dieron un
+ * (t ...) por verdadero cuando después se le da un valor a t (ver assigned).
+ */
+public class Optimizer {
+    private static final Symbol T = Symbol.intern("t");
+
+    // Operaciones sin efectos: con argumentos constantes se calculan al optimizar
+    private static final Set<String> PURE = new HashSet<>(Arrays.asList(
+        "+", "-", "*", "/", "<", ">", "<=", ">=", "equal", "atom",
+        "car", "cdr", "cons", "list", "null", "length", "append"));
+
+    // Funciones donde un (t ...) de un cond se dio por verdadero. Un setq de t en cualquier
+    // entorno las devuelve a su cuerpo original, igual que JitCompiler con su propio código.
+    private static final Set<Environment.LispFunction> ASSUME_T_UNBOUND =
+        Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final Environment environment; // Donde se buscan las funciones a copiar
+
+    /**
+     * Forma optimizada, y lo necesario para enlazar una defun con las funciones que copió.
+     */
+    public static final class Result {
+        private final Object form;
+        private final Symbol defined;   // Función que define la forma (null si la defun no tomó nada del entorno)
+        private final List<Object> source;                // Cuerpo original de esa función
+        private final Links links;      // Lo que el cuerpo tomó del entorno
+
+        Result(Object form, Symbol defined, List<Object> source, Links links) {
+            this.form = form;
+            this.defined = defined;
+            this.source = source;
+            this.links = links;
+        }
+
+        public Object getForm() {
+            return form;
+        }
+
+        /**
+         * Después de evaluar la defun: registra en cada función copiada que la nueva
+         * depende de ella, y si dio t por verdadero, que depende de que t no tenga valor
+         * (ver assigned). Si algo de eso ya cambió, la nueva vuelve a su cuerpo original.
+         */
+        public void link(Environment environment) {
+            if (defined == null) {
+                return;
+            }
+            Environment.LispFunction function = environment.getFunction(defined);
+            if (function == null) {
+                return;
+            }
+            function.setSource(source);
+            for (Environment.LispFunction callee : links.inlined) {
+                callee.addDependent(function);
+                if (environment.getFunction(callee.getName()) != callee) {
+                    function.deoptimize();
+                }
+            }
+            if (links.assumesT) {
+                ASSUME_T_UNBOUND.add(function);
+                if (environment.hasVariable(T)) {
+                    function.deoptimize();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lo que una forma tomó del entorno al optimizarse.
+     */
+    private static final class Links {
+        final List<Environment.LispFunction> inlined = new ArrayList<>(); // Funciones copiadas
+        boolean assumesT; // Un (t ...) de un cond se dio por verdadero porque t no tenía valor
+    }
+
+    public Optimizer(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Se le asignó un valor a un símbolo (lo llama Environment.Binding). Si es t, las
+     * funciones que lo dieron por verdadero vuelven a su cuerpo original.
+     */
+    static void assigned(Symbol symbol) {
+        if (symbol != T || ASSUME_T_UNBOUND.isEmpty()) {
+            return;
+        }
+        Environment.LispFunction[] functions;
+        synchronized (ASSUME_T_UNBOUND) {
+            functions = ASSUME_T_UNBOUND.toArray(new Environment.LispFunction[0]);
+            ASSUME_T_UNBOUND.clear();
+        }
+        for (Environment.LispFunction function : functions) {
+            function.deoptimize();
+        }
+    }
+
+    /**
+     * Optimiza una expresión del nivel superior.
+     */
+    public Result optimize(Object form) {
+        Links links = new Links();
+        if (isDefun(form)) {
+            List<Object> defun = Evaluator.asList(form);
+            Object optimized = optimizeDefun(defun, Collections.emptySet(), links);
+            if (!links.inlined.isEmpty() || links.assumesT) {
+                List<Object> source = new ArrayList<>(defun.subList(3, defun.size()));
+                return new Result(optimized, Symbol.of(defun.get(1)), source, links);
+            }
+            return new Result(optimized, null, null, null);
+        }
+        // Una expresión suelta se evalúa una sola vez: no hace falta enlazar lo que copió
+        return new Result(optimize(form, Collections.emptySet(), links), null, null, null);
+    }
+
+    private static boolean isDefun(Object form) {
+        if (!(form instanceof List) || ((List<?>) form).size() < 3) {
+            return false;
+        }
+        Symbol operator = Symbol.of(((List<?>) form).get(0));
+        return operator != null && (operator.getName().equals("defun") || operator.getName().equals("defun-memo"));
+    }
+
+    /**
+     * Optimiza una expresión.
+     * @param locals Parámetros visibles (no son constantes ni se reemplazan por funciones).
+     * @param links Donde se anota lo que se tomó del entorno; null si no se puede enlazar
+     *              (entonces no se copian funciones ni se da t por verdadero).
+     */
+    private Object optimize(Object form, Set<Symbol> locals, Links links) {
+        if (!(form instanceof List) || ((List<?>) form).isEmpty()) {
+            return form;
+        }
+        List<Object> list = Evaluator.asList(form);
+        Symbol operator = Symbol.of(list.get(0));
+        if (operator == null) {
+            return form;
+        }
+        switch (operator.getName()) {
+            case "quote": return hoistQuote(list);
+            case "defun":
+            case "defun-memo":
+                // Una defun anidada no se enlaza (ver Result.link): no se copia nada en ella
+                return isDefun(list) ? optimizeDefun(list, locals, null) : form;
+            case "cond": return optimizeCond(list, locals, links);
+            case "setq": return optimizeFrom(list, 2, locals, links);
+            case "pmap":
+            case "lazy-map":
+            case "lazy-filter":
+            case "reduce":
+            case "vmap":
+            case "maphash": return optimizeFrom(list, 2, locals, links); // El primero es un nombre
+            case "memo-stats":
+            case "memo-clear": return form;
+            default:
+                List<Object> call = optimizeFrom(list, 1, locals, links);
+                if (PURE.contains(operator.getName())) {
+                    return fold(call);
+                }
+                if (!Evaluator.isSpecialForm(operator)) {
+                    return inline(call, operator, locals, links);
+                }
+                return call;
+        }
+    }
+
+    // Optimiza los elementos desde "start"; si ninguno cambia devuelve la misma lista
+    private List<Object> optimizeFrom(List<Object> list, int start, Set<Symbol> locals,
+                                      Links links) {
+        List<Object> result = null;
+        for (int i = start; i < list.size(); i++) {
+            Object element = list.get(i);
+            Object optimized = optimize(element, locals, links);
+            if (optimized != element && result == null) {
+                result = new Evaluator.CallSite();
+                result.addAll(list.subList(0, i));
+            }
+            if (result != null) {
+                result.add(optimized);
+            }
+        }
+        return result != null ? result : list;
+    }
+
+    /**
+     * (defun nombre (params) cuerpo...): optimiza el cuerpo con los parámetros como locales.
+     * El propio nombre también cuenta como local, así una llamada recursiva nunca se
+     * reemplaza por la definición anterior.
+     */
+    private Object optimizeDefun(List<Object> defun, Set<Symbol> locals, Links links) {
+        Set<Symbol> scope = new HashSet<>(locals);
+        Symbol name = Symbol.of(defun.get(1));
+        if (name != null) {
+            scope.add(name);
+        }
+        if (defun.get(2) instanceof List) {
+            for (Object param : (List<?>) defun.get(2)) {
+                Symbol symbol = Symbol.of(param);
+                if (symbol != null) {
+                    scope.add(symbol);
+                    environment.declareLocal(symbol); // En el Evaluator el parámetro tapa a la función del mismo nombre
+                }
+            }
+        }
+        return optimizeFrom(defun, 3, scope, links);
+    }
+
+    /**
+     * (quote dato): el dato se arma como Cons una vez, así el Evaluator y el Compiler
+     * devuelven siempre la misma lista sin volver a construirla.
+     */
+    private static Object hoistQuote(List<Object> list) {
+        if (list.size() != 2 || !(list.get(1) instanceof List) || list.get(1) instanceof Cons) {
+            return list;
+        }
+        return quote(Cons.fromTree(list.get(1)));
+    }
+
+    private static List<Object> quote(Object value) {
+        List<Object> quoted = new Evaluator.CallSite();
+        quoted.add(Symbol.QUOTE);
+        quoted.add(value);
+        return quoted;
+    }
+
+    /**
+     * Calcula una operación sin efectos si todos sus argumentos son constantes.
+     * Si el cálculo falla (por ejemplo división entre cero) se deja para la ejecución,
+     * así el error aparece cuando el programa realmente llega ahí.
+     */
+    private static Object fold(List<Object> call) {
+        for (int i = 1; i < call.size(); i++) {
+            if (!isConstant(call.get(i))) {
+                return call;
+            }
+        }
+        Object value;
+        try {
+            value = new Evaluator(new Environment()).evaluateExpression(call);
+        } catch (RuntimeException e) {
+            return call;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof List || value instanceof Symbol) {
+            return quote(Cons.fromTree(value));
+        }
+        return call;
+    }
+
+    private static boolean isConstant(Object form) {
+        return form instanceof Number || form instanceof Boolean || isQuote(form);
+    }
+
+    private static boolean isQuote(Object form) {
+        return form instanceof List && ((List<?>) form).size() == 2 && Symbol.of(((List<?>) form).get(0)) == Symbol.QUOTE;
+    }
+
+    /**
+     * Devuelve si la condición de un cond siempre es verdadera (TRUE), nunca lo es (FALSE),
+     * o null si depende de la ejecución.
+     */
+    private Boolean truth(Object condition, Set<Symbol> locals, Links links) {
+        if (condition instanceof Boolean) {
+            return (Boolean) condition;
+        }
+        if (condition instanceof Number || isQuote(condition) && ((List<?>) condition).get(1) != null) {
+            return Boolean.TRUE;
+        }
+        if (condition == T && links != null && !locals.contains(T) && !environment.hasVariable(T)) {
+            links.assumesT = true; // Si después se le da valor a t, la función vuelve atrás
+            return Boolean.TRUE; // t sin valor se evalúa a sí mismo
+        }
+        return null;
+    }
+
+    /**
+     * (cond (prueba resultado) ...): las cláusulas con una prueba siempre falsa se quitan,
+     * y una prueba siempre verdadera termina el cond. Si la primera cláusula que queda
+     * siempre se elige, el cond se reemplaza por su resultado.
+     */
+    private Object optimizeCond(List<Object> cond, Set<Symbol> locals, Links links) {
+        List<Object> result = new Evaluator.CallSite();
+        result.add(cond.get(0));
+        boolean changed = false;
+        for (int i = 1; i < cond.size(); i++) {
+            Object clause = cond.get(i);
+            if (!(clause instanceof List) || ((List<?>) clause).isEmpty()) {
+                result.add(clause);
+                continue;
+            }
+            List<Object> optimized = optimizeFrom(Evaluator.asList(clause), 0, locals, links);
+            changed |= optimized != clause;
+            Boolean known = truth(optimized.get(0), locals, links);
+            if (known == Boolean.FALSE) {
+                changed = true; // Nunca se elige
+                continue;
+            }
+            if (known == Boolean.TRUE) {
+                if (result.size() == 1 && optimized.size() == 2) {
+                    return optimized.get(1); // Siempre se elige la primera
+                }
+                result.add(optimized);
+                changed |= i < cond.size() - 1; // Las que siguen nunca se alcanzan
+                break;
+            }
+            result.add(optimized);
+        }
+        return changed ? result : cond;
+    }
+
+    /**
+     * Reemplaza la llamada a una función trivial por su cuerpo, con los parámetros
+     * sustituidos por los argumentos, y vuelve a optimizar el resultado.
+     */
+    private Object inline(List<Object> call, Symbol operator, Set<Symbol> locals,
+                          Links links) {
+        // Un parámetro con ese nombre, o una variable, se evalúa en vez de llamar
+        if (links == null || locals.contains(operator) || environment.isShadowed(operator)
+                || environment.hasVariable(operator)) {
+            return call;
+        }
+        Environment.LispFunction callee = environment.getFunction(operator);
+        if (callee == null || callee.getMemo() != null) {
+            return call;
+        }
+        List<Symbol> params = callee.getParameters();
+        List<Object> body = callee.getBody();
+        if (call.size() - 1 != params.size() || body.size() != 1 || !isTrivial(body.get(0), params)) {
+            return call;
+        }
+        Map<Symbol, Object> arguments = new HashMap<>();
+        for (int i = 0; i < params.size(); i++) {
+            Object arg = call.get(i + 1);
+            if (!isConstant(arg) && !(arg instanceof Symbol)) {
+                return call; // Una expresión se evaluaría una vez por cada uso del parámetro
+            }
+            arguments.put(params.get(i), arg);
+        }
+        links.inlined.add(callee);
+        return optimize(substitute(body.get(0), arguments), locals, links);
+    }
+
+    // Cuerpo hecho solo de operaciones sin efectos, parámetros y constantes
+    private static boolean isTrivial(Object expr, List<Symbol> params) {
+        if (expr instanceof Number || expr instanceof Boolean) {
+            return true;
+        }
+        if (expr instanceof Symbol) {
+            return params.contains(expr);
+        }
+        if (!(expr instanceof List) || ((List<?>) expr).isEmpty()) {
+            return false;
+        }
+        List<?> list = (List<?>) expr;
+        Symbol operator = Symbol.of(list.get(0));
+        if (operator == Symbol.QUOTE) {
+            return true;
+        }
+        if (operator == null || !PURE.contains(operator.getName())) {
+            return false;
+        }
+        for (int i = 1; i < list.size(); i++) {
+            if (!isTrivial(list.get(i), params)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object substitute(Object expr, Map<Symbol, Object> arguments) {
+        if (expr instanceof Symbol) {
+            return arguments.getOrDefault(expr, expr);
+        }
+        if (!(expr instanceof List) || isQuote(expr)) {
+            return expr;
+        }
+        List<Object> result = new Evaluator.CallSite();
+        for (Object element : (List<?>) expr) {
+            result.add(substitute(element, arguments));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OptimizerTest extends LispTest {
+
+    private Optimizer optimizer;
+
+    @BeforeEach
+    public void setUp() {
+        optimizer = new Optimizer(environment);
+    }
+
+    private String optimize(String source) {
+        return String.valueOf(Cons.fromTree(optimizer.optimize(parse(source)).getForm()));
+    }
+
+    @Test
+    public void testConstantFolding() {
+        assertEquals("3600", optimize("(* 60 60)"));
+        assertEquals("(+ x 3600)", optimize("(+ x (* 60 60))"));
+        assertEquals("true", optimize("(< 1 2)"));
+        assertEquals("(quote (1 2 3))", optimize("(list 1 2 (+ 1 2))"));
+        // La división entre cero se deja para cuando se evalúe
+        assertEquals("(/ 1 0)", optimize("(/ 1 0)"));
+        assertThrows(RuntimeException.class, () -> run("(/ 1 0)"));
+    }
+
+    @Test
+    public void testCondPruning() {
+        assertEquals("x", optimize("(cond ((> 1 2) y) (t x) (z w))"));
+        assertEquals("(cond ((< n 1) 0) (t n))", optimize("(cond ((< n 1) 0) ((equal 1 2) 5) (t n) (z w))"));
+        run("(setq t 5)");
+        assertEquals("(cond (t x))", optimize("(cond (t x))")); // t tiene valor: se evalúa
+    }
+
+    @Test
+    public void testQuoteIsBuiltOnce() {
+        Object form = optimizer.optimize(parse("'(1 (2 3))")).getForm();
+        Object quoted = ((List<?>) form).get(1);
+        assertTrue(quoted instanceof Cons);
+        assertSame(quoted, new Evaluator(environment).evaluateExpression(form));
+    }
+
+    @Test
+    public void testTrivialFunctionsAreInlined() {
+        run("(defun cuadrado (x) (* x x))");
+        run("(defun contador (n) (setq total (+ total n)))");
+        assertEquals("9", optimize("(cuadrado 3)"));
+        assertEquals("(defun f (n) (+ (* n n) 1))", optimize("(defun f (n) (+ (cuadrado n) 1))"));
+        // El argumento no es una variable ni constante: se evaluaría dos veces
+        assertEquals("(cuadrado (g 2))", optimize("(cuadrado (g 2))"));
+        // Solo se copian funciones sin efectos
+        assertEquals("(contador 2)", optimize("(contador 2)"));
+    }
+
+    @Test
+    public void testRedefinitionRestoresInlinedCallers() {
+        for (boolean compiled : new boolean[] {true, false}) {
+            interpreter.setUseCompiler(compiled);
+            run("(defun cuadrado (x) (* x x))");
+            run("(defun suma-cuadrados (a b) (+ (cuadrado a) (cuadrado b)))");
+            assertEquals(25, run("(suma-cuadrados 3 4)"));
+            Object body = Cons.fromTree(environment.getFunction("suma-cuadrados").getBody());
+            assertEquals("((+ (* a a) (* b b)))", body.toString());
+            run("(defun cuadrado (x) (* x 10))");
+            assertEquals(70, run("(suma-cuadrados 3 4)"));
+        }
+    }
+
+    @Test
+    public void testRecursiveFunctionsAreKept() {
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        assertEquals("(fibonacci 10)", optimize("(fibonacci 10)"));
+        assertEquals(55, run("(fibonacci 10)"));
+    }
+
+    @Test
+    public void testSameResultsWithoutOptimizer() {
+        String[] program = {
+            "(defun cuadrado (x) (* x x))",
+            "(defun signo (n) (cond ((< n 0) -1) ((equal n 0) 0) (t 1)))",
+            "(defun f (n) (+ (cuadrado n) (signo n) (* 60 60)))",
+        };
+        LispInterpreter plain = new LispInterpreter(new Environment());
+        plain.setOptimize(false);
+        for (String source : program) {
+            run(source);
+            plain.evaluate(parse(source));
+        }
+        for (String call : new String[] {"(f 3)", "(f -2)", "(f 0)", "(car (cdr '(1 2 3)))"}) {
+            assertEquals(plain.evaluate(parse(call)), run(call));
+        }
+    }
+
+    @Test
+    public void testAssigningTRestoresFoldedCond() {
+        for (boolean compiled : new boolean[] {true, false}) {
+            LispInterpreter session = new LispInterpreter(new Environment());
+            session.setUseCompiler(compiled);
+            run(session, "(defun f () (cond (t 1) (2 2)))");
+            assertEquals(1, run(session, "(f)"));
+            run(session, "(setq t (< 2 1))"); // t deja de ser verdadero: el cond ya no se puede saltar
+            assertEquals(2, run(session, "(f)"));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Evaluación en paralelo para pmap, pcall y future/deref.
+ * Las tareas corren en un ForkJoinPool (con robo de trabajo), con un hilo por núcleo.
+ * Una tarea que espera a otra (deref, o un pmap dentro de otro) ayuda a ejecutar
+ * tareas pendientes en vez de bloquear su hilo.
+ *
+ * Cada tarea evalúa con su propio entorno hijo (Evaluator) o su propio frame
+ * (Compiler); las variables globales se comparten y sus celdas son seguras entre hilos
+ * (ver Environment).
+ */
+public final class Parallel {
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private Parallel() {
+    }
+
+    /**
+     * Tarea de Lisp: el valor que devuelve future.
+     */
+    public static final class Task extends RecursiveTask<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final Supplier<Object> body;
+        private final Profiler profiler = Profiler.current(); // (profile expr) de quien creó la tarea
+        private volatile RuntimeException failure; // Error original (join puede lanzar una copia)
+
+        Task(Supplier<Object> body) {
+            this.body = body;
+        }
+
+        @Override
+        protected Object compute() {
+            try {
+                return Profiler.runWith(profiler, body);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return isDone() ? "#<future listo>" : "#<future pendiente>";
+        }
+    }
+
+    /**
+     * Evalúa todas las tareas en paralelo y devuelve sus resultados en orden, como lista.
+     * Si alguna lanza un error, se lanza aquí el de la primera que falló.
+     */
+    public static Cons evaluateAll(List<Supplier<Object>> bodies) {
+        Task[] tasks = new Task[bodies.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new Task(bodies.get(i));
+        }
+        Task all = new Task(() -> {
+            ForkJoinTask.invokeAll(tasks);
+            Object[] results = new Object[tasks.length];
+            for (int i = 0; i < tasks.length; i++) {
+                results[i] = join(tasks[i]);
+            }
+            return Cons.list(results);
+        });
+        return (Cons) run(all);
+    }
+
+    /**
+     * (future expr): empieza a evaluar en otro hilo y devuelve la tarea sin esperar.
+     */
+    public static Task future(Supplier<Object> body) {
+        Task task = new Task(body);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.fork(); // Dentro del pool: va a la cola del hilo actual
+        } else {
+            POOL.execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * (deref f): espera el resultado de un future.
+     */
+    public static Object deref(Object value) {
+        if (!(value instanceof Task)) {
+            throw new RuntimeException("deref necesita un future, pero se obtuvo: " + value);
+        }
+        return join((Task) value);
+    }
+
+    // Espera el resultado; si la tarea falló, lanza el mismo error que lanzó la expresión
+    private static Object join(Task task) {
+        try {
+            return task.join();
+        } catch (RuntimeException e) {
+            throw task.failure != null ? task.failure : e;
+        }
+    }
+
+    // Ejecuta una tarea y espera el resultado (dentro del pool la ejecuta el hilo actual)
+    private static Object run(Task task) {
+        try {
+            return ForkJoinTask.inForkJoinPool() ? task.invoke() : POOL.invoke(task);
+        } catch (RuntimeException e) {
+            throw task.failure != null ? task.failure : e;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelTest extends LispTest {
+
+    @BeforeEach
+    public void setUp() {
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+    }
+
+    @Test
+    public void testPmapKeepsOrder() {
+        assertEquals(Arrays.asList(0, 1, 1, 2, 3, 5, 8, 13, 21, 34),
+            run("(pmap fibonacci '(0 1 2 3 4 5 6 7 8 9))"));
+        assertEquals(Arrays.asList(6765, 10946), run("(pmap 'fibonacci (list 20 21))"));
+    }
+
+    @Test
+    public void testPcall() {
+        run("(setq x 10)");
+        assertEquals(Arrays.asList(6765, 20, 3), run("(pcall (fibonacci 20) (+ x x) (length (list 1 2 3)))"));
+    }
+
+    @Test
+    public void testFutureAndDeref() {
+        run("(setq f (future (fibonacci 22)))");
+        assertEquals(17711, run("(deref f)"));
+        assertEquals(17711, run("(deref f)"));
+        assertThrows(RuntimeException.class, () -> run("(deref 5)"));
+    }
+
+    @Test
+    public void testErrorsReachTheCaller() {
+        RuntimeException error = assertThrows(RuntimeException.class, () -> run("(pcall (+ 1 2) (/ 1 0))"));
+        assertEquals("No se puede dividir por 0", error.getMessage());
+    }
+
+    @Test
+    public void testNestedParallelCalls() {
+        run("(defun pares (n) (pcall (fibonacci n) (fibonacci (+ n 1))))");
+        assertEquals(Arrays.asList(Arrays.asList(55, 89), Arrays.asList(89, 144)), run("(pmap pares (list 10 11))"));
+    }
+
+    @Test
+    public void testEvaluatorUsesChildEnvironments() {
+        interpreter.setUseCompiler(false);
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        run("(setq x 1)");
+        assertEquals(Arrays.asList(5, 55), run("(pcall (setq x 5) (fibonacci 10))"));
+        assertEquals(1, run("x"));
+        assertEquals(Arrays.asList(1, 1, 2), run("(pmap fibonacci (list 1 2 3))"));
+        assertEquals(8, run("(deref (future (fibonacci 6)))"));
+    }
+}
@@ -1,7 +1,8 @@
 import java.util.*;
 
 public class Parser {
-    private List<String> tokens; // Lista de tokens generados por el Tokenizer
+    private List<String> tokens; // Lista de tokens generados por el Tokenizer (o null si se leen en línea)
+    private Tokenizer tokenizer; // Tokenizer del que se piden los tokens a medida que se necesitan
     private int index; // Índice que recorre la lista de tokens
 
     /**
@@ -13,42 +14,86 @@ public class Parser {
         this.index = 0; // El índice comienza en 0.
     }
 
+    /**
+     * Constructor del Parser que pide los tokens al Tokenizer uno por uno,
+     * sin generar antes la lista completa.
+     * @param tokenizer Tokenizer del que se leerán los tokens.
+     */
+    public Parser(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * Indica si quedan expresiones por parsear.
+     */
+    public boolean hasNext() {
+        return peekToken() != null;
+    }
+
     /**
      * Método principal que organiza la estructura en una lista de objetos.
      * @return Lista de objetos representando la expresión parseada.
      */
     public Object parse() {
-        if (index >= tokens.size()) {
+        Object next = nextToken();
+        if (next == null) {
             throw new RuntimeException("Error: Expresión incompleta.");
         }
+        if (next instanceof Symbol) {
+            return next; // El Tokenizer ya lo internó
+        }
 
-        String token = tokens.get(index);
-        index++;
-
-        if (token.equals("(")) { 
-            List<Object> list = new ArrayList<>(); // Se crea una lista para la subexpresión
-            while (!tokens.get(index).equals(")")) { 
+        String token = (String) next;
+        if (token.equals("(")) {
+            List<Object> list = new Evaluator.CallSite(); // Lista de la subexpresión (guarda la función si es una llamada)
+            while (!")".equals(peekToken())) {
                 list.add(parse()); // Llamado recursivo para agregar elementos a la lista
             }
-            index++; // Saltamos el ')'
+            nextToken(); // Saltamos el ')'
             return list; // Devolvemos la lista completa
-        } 
+        }
         else if (token.equals(")")) {
             throw new RuntimeException("Error: Paréntesis en posición incorrecta.");
-        } 
-        else if (token.equals("quote")) { 
-            List<Object> quotedList = new ArrayList<>();
-            quotedList.add("quote");
-            quotedList.add(parse()); // La siguiente expresión debe tratarse como una lista sin evaluar
-            return quotedList;
-        } 
-        else {
-            try {
-                return Integer.parseInt(token); // Si es un número, lo devolvemos como entero
-            } catch (NumberFormatException e) {
-                return token; // Si no es un número, lo tratamos como un símbolo
+        }
+        else if (token.equals("'")) {
+            if (")".equals(peekToken())) {
+                throw new RuntimeException("Error: Paréntesis en posición incorrecta.");
             }
+            return quote(parse()); // La siguiente expresión debe tratarse como una lista sin evaluar
+        }
+        else if (Character.isDigit(token.charAt(0)) || token.charAt(0) == '-') {
+            Object number = Numbers.parse(token); // Si es un número, lo devolvemos como entero
+            return number != null ? number : Symbol.intern(token); // Ej. 1a se trata como símbolo
+        }
+        else {
+            return Symbol.intern(token); // Si no es un número, lo tratamos como un símbolo (tokens de una lista)
         }
     }
-}
 
+    /**
+     * Arma (quote x) para un 'x. Solo el ' es un prefijo; la palabra quote es un símbolo
+     * como cualquier otro, así (quote x) queda tal cual. IncrementalParser usa la misma regla.
+     */
+    static List<Object> quote(Object expression) {
+        List<Object> quoted = new ArrayList<>();
+        quoted.add(Symbol.QUOTE);
+        quoted.add(expression);
+        return quoted;
+    }
+
+    // Devuelve el siguiente token sin avanzar (null si no hay más); del Tokenizer los símbolos llegan como Symbol
+    private Object peekToken() {
+        if (tokenizer != null) {
+            return tokenizer.peekToken();
+        }
+        return index < tokens.size() ? tokens.get(index) : null;
+    }
+
+    // Devuelve el siguiente token y avanza (null si no hay más)
+    private Object nextToken() {
+        if (tokenizer != null) {
+            return tokenizer.nextToken();
+        }
+        return index < tokens.size() ? tokens.get(index++) : null;
+    }
+}
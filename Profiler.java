@@ -0,0 +1,388 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Perfilador de funciones Lisp: cuenta las llamadas de cada LispFunction y mide
+ * su tiempo total, su tiempo propio (sin contar las funciones que llama) y los bytes
+ * que asigna el propio cuerpo.
+ *
+ * (profile expr) mide solo el hilo que la evalúa y las tareas que ese hilo manda a
+ * Parallel (pmap, pcall, future); las demás sesiones del servidor no se ven. La opción
+ * --profile de Main mide todos los hilos. Mientras no hay un perfilador activo, cada
+ * llamada solo lee dos campos (ver Node.Call.invoke). Las llamadas que hace el código
+ * compilado por JitCompiler dentro de sí mismo no se ven.
+ *
+ * Si hay una grabación de JDK Flight Recorder con el evento lisp.FunctionCall activado
+ * (por ejemplo java -XX:StartFlightRecording ...), cada llamada también queda como evento.
+ */
+public final class Profiler {
+    private static volatile Profiler global; // --profile: mide todos los hilos (null: ninguno)
+    private static final ThreadLocal<Profiler> CURRENT = new ThreadLocal<>(); // Perfilador de cada hilo
+    private static final AtomicInteger RUNNING = new AtomicInteger(); // Perfiladores de hilo sin detener
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final Profiler previous; // El que tenía el hilo antes de start() (null si es global)
+    private final boolean perThread;
+    private final Map<Environment.LispFunction, Entry> entries = new ConcurrentHashMap<>();
+    private final ThreadLocal<CallStack> stacks = ThreadLocal.withInitial(CallStack::new);
+    private final long started = System.nanoTime();
+    private volatile long elapsed = -1;
+    private volatile boolean stopped;
+
+    private Profiler(Profiler previous, boolean perThread) {
+        this.previous = previous;
+        this.perThread = perThread;
+    }
+
+    /**
+     * Devuelve el perfilador que mide al hilo actual, o null si no se está midiendo nada.
+     */
+    public static Profiler active() {
+        if (RUNNING.get() == 0) {
+            return global;
+        }
+        Profiler profiler = current();
+        return profiler != null ? profiler : global;
+    }
+
+    // Perfilador del hilo (sin contar el global); se salta los que ya se detuvieron
+    static Profiler current() {
+        if (RUNNING.get() == 0) {
+            return null;
+        }
+        Profiler profiler = CURRENT.get();
+        while (profiler != null && profiler.stopped) {
+            profiler = profiler.previous;
+        }
+        return profiler;
+    }
+
+    /**
+     * Empieza a medir las llamadas del hilo actual (y de las tareas que mande a Parallel)
+     * hasta stop().
+     */
+    public static Profiler start() {
+        Profiler profiler = new Profiler(current(), true);
+        CURRENT.set(profiler);
+        RUNNING.incrementAndGet();
+        return profiler;
+    }
+
+    /**
+     * Empieza a medir las llamadas de todos los hilos hasta stop() (opción --profile).
+     */
+    public static Profiler startGlobal() {
+        Profiler profiler = new Profiler(null, false);
+        global = profiler;
+        return profiler;
+    }
+
+    /**
+     * Deja de medir. Si era el perfilador del hilo, el hilo vuelve al anterior que siga
+     * midiendo; si se detienen fuera de orden, uno ya detenido no se vuelve a activar.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+        }
+        elapsed = System.nanoTime() - started;
+        if (!perThread) {
+            synchronized (Profiler.class) {
+                if (global == this) {
+                    global = null;
+                }
+            }
+            return;
+        }
+        if (CURRENT.get() == this) {
+            Profiler previous = current();
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+        RUNNING.decrementAndGet();
+    }
+
+    /**
+     * Ejecuta el cuerpo con el perfilador dado como el del hilo (lo usa Parallel para que
+     * una tarea se mida con el perfilador de quien la mandó).
+     */
+    static <T> T runWith(Profiler profiler, Supplier<T> body) {
+        if (profiler == null && RUNNING.get() == 0) {
+            return body.get();
+        }
+        Profiler saved = CURRENT.get();
+        CURRENT.set(profiler);
+        try {
+            return body.get();
+        } finally {
+            CURRENT.set(saved);
+        }
+    }
+
+    /**
+     * (profile expr): evalúa la expresión midiendo las llamadas, escribe el reporte en
+     * la salida de la sesión y devuelve el valor de la expresión.
+     */
+    public static Object profile(Supplier<Object> body, Appendable out) {
+        Profiler profiler = start();
+        try {
+            return body.get();
+        } finally {
+            profiler.stop();
+            try {
+                out.append(profiler.report());
+            } catch (IOException e) {
+                throw new RuntimeException("No se pudo escribir el perfil: " + e.getMessage());
+            }
+        }
+    }
+
+    // MEDICIÓN
+
+    /**
+     * Entra a una función. Cada enter() debe terminar con exit() (en un finally).
+     */
+    public void enter(Environment.LispFunction function) {
+        CallStack stack = stacks.get();
+        stack.push(new Activation(function, stack));
+    }
+
+    /**
+     * Sale de la función que está arriba de la pila del hilo.
+     */
+    public void exit() {
+        CallStack stack = stacks.get();
+        Activation activation = stack.calls.poll();
+        if (activation == null) {
+            return; // El perfilador empezó dentro de esta llamada
+        }
+        long now = System.nanoTime();
+        long allocated = allocatedBytes();
+        finish(activation, stack, now, allocated);
+        Activation parent = stack.calls.peek();
+        if (parent != null) {
+            parent.childNanos += now - activation.chainStart;
+            parent.childBytes += allocated - activation.chainStartBytes;
+        }
+    }
+
+    /**
+     * La función de arriba de la pila termina con una llamada de cola a otra:
+     * se registra la primera y la misma entrada de la pila pasa a ser la nueva.
+     */
+    public void tailCall(Environment.LispFunction next) {
+        CallStack stack = stacks.get();
+        Activation activation = stack.calls.peek();
+        if (activation == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long allocated = allocatedBytes();
+        finish(activation, stack, now, allocated);
+        activation.restart(next, stack, now, allocated);
+    }
+
+    // Registra el tramo de la activación que termina en "now"
+    private void finish(Activation activation, CallStack stack, long now, long allocated) {
+        long total = now - activation.start;
+        long self = total - activation.childNanos;
+        long selfBytes = allocated - activation.startBytes - activation.childBytes;
+        boolean outermost = stack.leave(activation.function);
+        entries.computeIfAbsent(activation.function, Entry::new)
+            .record(outermost ? total : 0, self, selfBytes);
+        if (activation.event != null) {
+            activation.event.function = activation.function.getName();
+            activation.event.selfTime = self;
+            activation.event.allocatedBytes = selfBytes;
+            activation.event.commit();
+        }
+    }
+
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean;
+            }
+        }
+        return null; // Esta JVM no mide asignaciones por hilo
+    }
+
+    // REPORTE
+
+    /**
+     * Resultados por función, de mayor a menor tiempo propio.
+     */
+    public List<Entry> getEntries() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        list.sort((a, b) -> Long.compare(b.getSelfNanos(), a.getSelfNanos()));
+        return list;
+    }
+
+    /**
+     * Tabla con los resultados, ordenada por tiempo propio.
+     */
+    public String report() {
+        long total = elapsed >= 0 ? elapsed : System.nanoTime() - started;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Perfil (%.1f ms)%n", total / 1e6));
+        out.append(String.format("%-24s %10s %12s %12s %14s%n", "función", "llamadas", "total ms", "propio ms", "asignado KB"));
+        for (Entry entry : getEntries()) {
+            out.append(String.format("%-24s %10d %12.2f %12.2f %14.1f%n", entry.getName(), entry.getCalls(),
+                entry.getTotalNanos() / 1e6, entry.getSelfNanos() / 1e6, entry.getAllocatedBytes() / 1024.0));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Totales de una función.
+     */
+    public static final class Entry {
+        private final String name;
+        private long calls;
+        private long totalNanos;     // Tiempo desde que se entra hasta que se sale (sin repetir recursión)
+        private long selfNanos;      // Tiempo en el cuerpo, sin las funciones que llama
+        private long allocatedBytes; // Bytes asignados en el cuerpo, sin las funciones que llama
+
+        Entry(Environment.LispFunction function) {
+            this.name = function.getName();
+        }
+
+        synchronized void record(long total, long self, long bytes) {
+            calls++;
+            totalNanos += total;
+            selfNanos += self;
+            allocatedBytes += bytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized long getCalls() {
+            return calls;
+        }
+
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public synchronized long getSelfNanos() {
+            return selfNanos;
+        }
+
+        public synchronized long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    /**
+     * Llamadas en curso de un hilo.
+     */
+    private static final class CallStack {
+        private final ArrayDeque<Activation> calls = new ArrayDeque<>();
+        // Cuántas veces está cada función en la pila (para no sumar dos veces el total en la recursión)
+        private final Map<Environment.LispFunction, int[]> depth = new IdentityHashMap<>();
+
+        void push(Activation activation) {
+            calls.push(activation);
+        }
+
+        // Devuelve true si era la primera vez que la función estaba en la pila
+        boolean enter(Environment.LispFunction function) {
+            return depth.computeIfAbsent(function, f -> new int[1])[0]++ == 0;
+        }
+
+        // Devuelve true si era la llamada más externa de la función
+        boolean leave(Environment.LispFunction function) {
+            int[] count = depth.get(function);
+            return count == null || --count[0] == 0;
+        }
+    }
+
+    /**
+     * Una llamada en curso. Con llamadas de cola la misma activación pasa de una función
+     * a otra; chainStart es cuando empezó la primera (lo que se le descuenta al padre).
+     */
+    private static final class Activation {
+        private Environment.LispFunction function;
+        private long start;
+        private long startBytes;
+        private final long chainStart;
+        private final long chainStartBytes;
+        private long childNanos;
+        private long childBytes;
+        private CallEvent event;
+
+        Activation(Environment.LispFunction function, CallStack stack) {
+            long now = System.nanoTime();
+            long allocated = allocatedBytes();
+            this.chainStart = now;
+            this.chainStartBytes = allocated;
+            restart(function, stack, now, allocated);
+        }
+
+        void restart(Environment.LispFunction function, CallStack stack, long now, long allocated) {
+            this.function = function;
+            this.start = now;
+            this.startBytes = allocated;
+            this.childNanos = 0;
+            this.childBytes = 0;
+            stack.enter(function);
+            CallEvent callEvent = new CallEvent();
+            if (callEvent.isEnabled()) {
+                callEvent.begin();
+                this.event = callEvent;
+            } else {
+                this.event = null;
+            }
+        }
+    }
+
+    /**
+     * Evento de JDK Flight Recorder para una llamada a una función Lisp.
+     */
+    @Name("lisp.FunctionCall")
+    @Label("Llamada a función Lisp")
+    @Category("Lisp")
+    @Description("Una llamada a una función definida con defun, medida por el Profiler")
+    static final class CallEvent extends Event {
+        @Label("Función")
+        String function;
+
+        @Label("Tiempo propio")
+        @Timespan(Timespan.NANOSECONDS)
+        long selfTime;
+
+        @Label("Asignado")
+        @DataAmount
+        long allocatedBytes;
+    }
+}
@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfilerTest extends LispTest {
+
+    private Profiler profiler;
+
+    @BeforeEach
+    public void setUp() {
+        run("(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))");
+        run("(defun countdown (n) (cond ((<= n 0) 0) (t (countdown (- n 1)))))");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (profiler != null) {
+            profiler.stop();
+        }
+    }
+
+    private Profiler.Entry entry(String name) {
+        for (Profiler.Entry entry : profiler.getEntries()) {
+            if (entry.getName().equals(name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testCountsRecursiveCalls() {
+        profiler = Profiler.start();
+        assertEquals(55, run("(fibonacci 10)"));
+        profiler.stop();
+
+        Profiler.Entry fibonacci = entry("fibonacci");
+        assertEquals(177, fibonacci.getCalls());
+        assertTrue(fibonacci.getSelfNanos() <= fibonacci.getTotalNanos());
+        assertTrue(profiler.report().contains("fibonacci"));
+    }
+
+    @Test
+    public void testCountsTailCalls() {
+        profiler = Profiler.start();
+        assertEquals(0, run("(countdown 50)"));
+        profiler.stop();
+
+        assertEquals(51, entry("countdown").getCalls());
+    }
+
+    @Test
+    public void testCompiledFunctionsAreProfiled() {
+        // fibonacci 20 hace 21891 llamadas, más que JitCompiler.THRESHOLD: sin el Profiler se compila
+        assertTrue(21891 > JitCompiler.THRESHOLD);
+        assertEquals(6765, run("(fibonacci 20)"));
+        for (int i = 0; i < 2; i++) {
+            profiler = Profiler.start();
+            assertEquals(6765, run("(fibonacci 20)"));
+            profiler.stop();
+            assertEquals(21891, entry("fibonacci").getCalls());
+        }
+    }
+
+    @Test
+    public void testEvaluatorIsProfiled() {
+        interpreter.setUseCompiler(false);
+        profiler = Profiler.start();
+        assertEquals(55, run("(fibonacci 10)"));
+        assertEquals(0, run("(countdown 20)"));
+        profiler.stop();
+
+        assertEquals(177, entry("fibonacci").getCalls());
+        assertEquals(21, entry("countdown").getCalls());
+    }
+
+    @Test
+    public void testProfileForm() {
+        StringBuilder output = new StringBuilder();
+        interpreter.setOutput(output);
+        assertEquals(55, run("(profile (fibonacci 10))"));
+        assertNull(Profiler.active());
+        assertTrue(output.toString().contains("fibonacci"));
+    }
+
+    @Test
+    public void testParallelTasksUseTheCallersProfiler() {
+        profiler = Profiler.start();
+        run("(pmap fibonacci '(10 10))");
+        profiler.stop();
+
+        assertEquals(354, entry("fibonacci").getCalls());
+    }
+
+    @Test
+    public void testOtherThreadsAreNotProfiled() throws Exception {
+        profiler = Profiler.start();
+        Thread other = new Thread(() -> run("(fibonacci 10)"));
+        other.start();
+        other.join();
+        run("(fibonacci 5)");
+        profiler.stop();
+
+        assertEquals(15, entry("fibonacci").getCalls());
+    }
+
+    @Test
+    public void testStopsOutOfOrder() throws Exception {
+        // En el mismo hilo: el primero se detiene antes que el segundo
+        Profiler first = Profiler.start();
+        Profiler second = Profiler.start();
+        first.stop();
+        assertSame(second, Profiler.active());
+        second.stop();
+        assertNull(Profiler.active());
+
+        // En dos hilos: A empieza, B empieza, A termina, B termina
+        Profiler[] other = new Profiler[1];
+        Profiler a = Profiler.start();
+        Thread thread = new Thread(() -> {
+            other[0] = Profiler.start();
+        });
+        thread.start();
+        thread.join();
+        a.stop();
+        other[0].stop();
+        assertNull(Profiler.active());
+        run("(fibonacci 5)");
+        assertTrue(a.getEntries().isEmpty());
+    }
+
+    @Test
+    public void testNothingRecordedAfterStop() {
+        profiler = Profiler.start();
+        run("(fibonacci 5)");
+        profiler.stop();
+        run("(fibonacci 10)");
+
+        assertNull(Profiler.active());
+        assertEquals(15, entry("fibonacci").getCalls());
+    }
+}
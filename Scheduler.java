@@ -0,0 +1,285 @@
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta muchos scripts a la vez repartiendo un número fijo de lugares ("carriers")
+ * entre ellos, para que un script que no termina no acapare la máquina.
+ *
+ * Cada tarea tiene combustible: cada llamada a una función (también las de cola y las
+ * del código del JitCompiler) gasta una reducción con tick(), y las primitivas que
+ * recorren muchos elementos sin llamar funciones (length o reduce de un range, vsum,
+ * vdot, append, maphash) gastan una por bloque, así un ciclo largo dentro de una sola
+ * primitiva también cede su lugar y se puede cancelar. Cuando se acaba el
+ * combustible de su turno, la tarea deja su lugar y se forma al final de la fila
+ * (un Semaphore justo, así que los turnos son en orden de llegada). Un script corto
+ * espera a lo más un turno de cada tarea que está corriendo, aunque haya scripts pesados.
+ *
+ * Como la evaluación es recursiva en la pila de Java, cada tarea necesita su propio hilo:
+ * hilos virtuales con Java 21 o más, si no hilos normales que pasan casi todo el tiempo
+ * esperando su turno. Lo que limita cuántas corren a la vez son los lugares, no los hilos.
+ *
+ * Al cambiar de turno también se revisa si la tarea se canceló o si pasó de su límite
+ * total de reducciones; en los dos casos la evaluación termina con una excepción.
+ */
+public class Scheduler implements Closeable {
+    public static final long DEFAULT_QUANTUM = 10_000; // Reducciones por turno
+    public static final int CHUNK = 1024; // Elementos de un arreglo o lista que valen una reducción
+
+    private static final ThreadLocal<Task> CURRENT = new ThreadLocal<>();
+    private static final AtomicInteger RUNNING = new AtomicInteger(); // Tareas vivas en todos los Scheduler
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Semaphore carriers;
+    private final long quantum;
+    private final ExecutorService threads = LispServer.newThreadPerTaskExecutor("lisp-task");
+
+    /**
+     * @param carriers Cuántas tareas pueden evaluar al mismo tiempo.
+     * @param quantum Reducciones que una tarea hace antes de ceder su lugar.
+     */
+    public Scheduler(int carriers, long quantum) {
+        if (carriers < 1 || quantum < 1) {
+            throw new IllegalArgumentException("Se necesita al menos un carrier y una reducción por turno");
+        }
+        this.carriers = new Semaphore(carriers, true);
+        this.quantum = quantum;
+    }
+
+    public Scheduler(int carriers) {
+        this(carriers, DEFAULT_QUANTUM);
+    }
+
+    /**
+     * Gasta una reducción de la tarea del hilo actual. Si el hilo no es de una tarea
+     * (o no hay ningún Scheduler corriendo) no hace nada.
+     */
+    public static void tick() {
+        if (RUNNING.get() == 0) {
+            return;
+        }
+        Task task = CURRENT.get();
+        if (task != null && --task.fuel <= 0) {
+            task.refuel();
+        }
+    }
+
+    /**
+     * La tarea cancelada se terminó antes de acabar.
+     */
+    public static class CancelledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CancelledException() {
+            super("La tarea se canceló");
+        }
+    }
+
+    /**
+     * Agrega un script a la fila.
+     * @param interpreter Intérprete (y entorno) con el que se evalúa; no se debe compartir
+     *                    con otra tarea que esté corriendo.
+     * @param source Código Lisp; se devuelve el valor de la última expresión.
+     * @param maxReductions Límite total de reducciones (0: sin límite).
+     */
+    public Task submit(LispInterpreter interpreter, String source, long maxReductions) {
+        Task task = new Task(interpreter, source, maxReductions);
+        RUNNING.incrementAndGet();
+        try {
+            threads.execute(task::run);
+        } catch (RuntimeException e) {
+            RUNNING.decrementAndGet();
+            throw e;
+        }
+        return task;
+    }
+
+    public Task submit(LispInterpreter interpreter, String source) {
+        return submit(interpreter, source, 0);
+    }
+
+    /**
+     * Cancela las tareas que quedan y no acepta más.
+     */
+    @Override
+    public void close() {
+        threads.shutdownNow();
+    }
+
+    /**
+     * Un script en el Scheduler. Los contadores se pueden leer mientras corre.
+     */
+    public final class Task {
+        private final LispInterpreter interpreter;
+        private final String source;
+        private final long maxReductions;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final long created = System.nanoTime();
+
+        private long fuel;                      // Reducciones que le quedan al turno actual
+        private volatile boolean cancelled;
+        private volatile long reductions;       // Reducciones de los turnos terminados
+        private volatile long cpuNanos;         // Tiempo de CPU (o en un carrier) de los turnos terminados
+        private volatile long waitNanos;        // Tiempo esperando un lugar
+        private volatile int slices;            // Turnos que recibió
+        private boolean holding;                // true mientras la tarea tiene un lugar
+        private long sliceStart;                // Hora de inicio del turno actual
+        private long sliceCpuStart;             // CPU del hilo al inicio del turno (-1 si no se puede medir)
+
+        private Task(LispInterpreter interpreter, String source, long maxReductions) {
+            this.interpreter = interpreter;
+            this.source = source;
+            this.maxReductions = maxReductions;
+            this.fuel = quantum;
+        }
+
+        private void run() {
+            CURRENT.set(this);
+            try {
+                acquire();
+                try {
+                    Object last = null;
+                    Parser parser = new Parser(new Tokenizer(source));
+                    while (parser.hasNext()) {
+                        last = interpreter.evaluate(parser.parse());
+                    }
+                    result.complete(last);
+                } finally {
+                    release();
+                }
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            } finally {
+                CURRENT.remove();
+                RUNNING.decrementAndGet();
+            }
+        }
+
+        // Se acabó el combustible del turno: revisa los límites y cede el lugar si alguien espera
+        private void refuel() {
+            if (cancelled || Thread.currentThread().isInterrupted()) {
+                cancelled = true; // close() interrumpe los hilos
+                throw new CancelledException();
+            }
+            if (maxReductions > 0 && getReductions() >= maxReductions) {
+                throw new RuntimeException("La tarea se quedó sin combustible (" + maxReductions + " reducciones)");
+            }
+            if (carriers.hasQueuedThreads()) {
+                release();
+                acquire();
+            } else {
+                reductions += quantum - fuel;
+                fuel = quantum;
+            }
+        }
+
+        private void acquire() {
+            long start = System.nanoTime();
+            try {
+                carriers.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+                throw new CancelledException();
+            }
+            holding = true;
+            sliceStart = System.nanoTime();
+            waitNanos += sliceStart - start;
+            sliceCpuStart = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+            slices++;
+            fuel = quantum;
+            if (cancelled) {
+                release();
+                throw new CancelledException();
+            }
+        }
+
+        private void release() {
+            if (!holding) {
+                return;
+            }
+            holding = false;
+            long cpu = sliceCpuStart >= 0 ? THREADS.getCurrentThreadCpuTime() : -1;
+            cpuNanos += sliceCpuStart >= 0 && cpu >= 0 ? cpu - sliceCpuStart : System.nanoTime() - sliceStart;
+            reductions += quantum - fuel;
+            fuel = quantum;
+            carriers.release();
+        }
+
+        /**
+         * Pide que la tarea termine. Se detiene en su siguiente cambio de turno
+         * (o al recibir un lugar, si estaba esperando).
+         */
+        public void cancel() {
+            cancelled = true;
+            fuel = 0;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        /**
+         * Espera a que la tarea termine.
+         * @return El valor de la última expresión del script.
+         * @throws RuntimeException El error de la evaluación (CancelledException si se canceló).
+         */
+        public Object join() {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Se interrumpió la espera de la tarea", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new RuntimeException(String.valueOf(e.getCause()), e.getCause());
+            }
+        }
+
+        /**
+         * Reducciones hechas hasta ahora (aproximado mientras la tarea corre).
+         */
+        public long getReductions() {
+            return reductions + (quantum - Math.max(fuel, 0));
+        }
+
+        /**
+         * Tiempo de CPU de la tarea en sus turnos terminados. Si la JVM no puede medir
+         * el CPU del hilo, es el tiempo que la tarea tuvo un lugar.
+         */
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        public int getSlices() {
+            return slices;
+        }
+
+        /**
+         * Tiempo desde que se agregó la tarea.
+         */
+        public long getAgeNanos() {
+            return System.nanoTime() - created;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d reducciones en %d turnos, %.1f ms de CPU, %.1f ms esperando",
+                isDone() ? (cancelled ? "cancelada" : "terminada") : "corriendo",
+                getReductions(), slices, cpuNanos / 1e6, waitNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchedulerTest {
+
+    private static final String RUNAWAY = "(defun gira (n) (gira (+ n 1))) (gira 0)";
+
+    private static LispInterpreter interpreter() {
+        return new LispInterpreter(new Environment());
+    }
+
+    @Test
+    public void testResultsAndErrors() {
+        try (Scheduler scheduler = new Scheduler(2)) {
+            Scheduler.Task factorial = scheduler.submit(interpreter(),
+                "(defun factorial (n) (cond ((<= n 1) 1) (t (* n (factorial (- n 1)))))) (factorial 5)");
+            Scheduler.Task failing = scheduler.submit(interpreter(), "(noexiste 1)");
+            assertEquals(120, factorial.join());
+            assertThrows(RuntimeException.class, failing::join);
+            assertTrue(factorial.getReductions() >= 5);
+            assertTrue(factorial.getSlices() >= 1);
+        }
+    }
+
+    @Test
+    public void testShortScriptsRunWhileRunawaysSpin() {
+        try (Scheduler scheduler = new Scheduler(2, 1000)) {
+            List<Scheduler.Task> runaways = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                runaways.add(scheduler.submit(interpreter(), RUNAWAY));
+            }
+            assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+                List<Scheduler.Task> quick = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    quick.add(scheduler.submit(interpreter(), "(defun doble (n) (* n 2)) (doble " + i + ")"));
+                }
+                for (int i = 0; i < quick.size(); i++) {
+                    assertEquals(2 * i, quick.get(i).join());
+                }
+            });
+            for (Scheduler.Task task : runaways) {
+                assertFalse(task.isDone());
+                task.cancel();
+            }
+            for (Scheduler.Task task : runaways) {
+                assertThrows(Scheduler.CancelledException.class, task::join);
+                assertTrue(task.getSlices() > 1); // Cedió su lugar a las demás
+                assertTrue(task.getCpuNanos() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testCancelLongPrimitive() throws Exception {
+        try (Scheduler scheduler = new Scheduler(1)) {
+            // Ninguna llamada a función: solo los bloques del range gastan combustible
+            Scheduler.Task task = scheduler.submit(interpreter(), "(length (range 0 100000000000))");
+            Thread.sleep(100);
+            assertFalse(task.isDone());
+            task.cancel();
+            assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(Scheduler.CancelledException.class, task::join));
+            assertTrue(task.getReductions() > 0);
+        }
+    }
+
+    @Test
+    public void testVectorLoopsSpendFuel() {
+        try (Scheduler scheduler = new Scheduler(1, 100)) {
+            Scheduler.Task task = scheduler.submit(interpreter(),
+                "(setq v (make-vector 1000000 (quote long) 1)) (vsum v)", 500);
+            RuntimeException e = assertThrows(RuntimeException.class, task::join);
+            assertTrue(e.getMessage().contains("combustible"));
+        }
+    }
+
+    @Test
+    public void testReductionLimit() {
+        try (Scheduler scheduler = new Scheduler(1, 1000)) {
+            // Pasa del umbral del JitCompiler: el ciclo compilado también gasta combustible
+            Scheduler.Task task = scheduler.submit(interpreter(), RUNAWAY, 50_000);
+            RuntimeException e = assertThrows(RuntimeException.class, task::join);
+            assertTrue(e.getMessage().contains("combustible"));
+            assertTrue(task.getReductions() >= 50_000);
+        }
+    }
+
+    @Test
+    public void testTickOutsideTasksDoesNothing() {
+        Scheduler.tick();
+        assertEquals(3, interpreter().evaluate(new Parser(new Tokenizer("(+ 1 2)")).parse()));
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * La clase ScriptLoader carga un archivo Lisp completo y evalúa sus expresiones.
+ * El archivo se mapea en memoria y se decodifica por bloques, así que las expresiones
+ * se leen completas sin importar en cuántas líneas estén escritas, y un archivo grande
+ * no se tiene que copiar entero en memoria.
+ */
+public class ScriptLoader {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024; // Bytes mapeados a la vez
+    private static final long PROGRESS_INTERVAL = 1_000_000_000L; // Reportar progreso cada segundo
+
+    private LispInterpreter interpreter; // Intérprete con el que se evalúan las expresiones
+    private FormCache cache; // Expresiones ya parseadas de archivos que no cambiaron (null: sin caché)
+
+    /**
+     * Recibe los resultados y el avance de la carga.
+     */
+    public interface Listener {
+        /**
+         * Se llama después de evaluar cada expresión del nivel superior.
+         */
+        void result(Object expression, Object result);
+
+        /**
+         * Se llama cuando una expresión lanza un error. La carga continúa con la siguiente.
+         */
+        void error(Object expression, RuntimeException e);
+
+        /**
+         * Se llama aproximadamente cada segundo mientras se carga el archivo, y una vez al final.
+         */
+        void progress(Progress progress);
+    }
+
+    /**
+     * Avance de una carga: expresiones, bytes leídos y tiempo transcurrido.
+     */
+    public static class Progress {
+        private long expressions;
+        private long errors;
+        private long bytesRead;
+        private long totalBytes;
+        private long elapsedNanos;
+
+        public long getExpressions() {
+            return expressions;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Porcentaje del archivo leído (0 a 100).
+         */
+        public double getPercent() {
+            return totalBytes == 0 ? 100.0 : 100.0 * bytesRead / totalBytes;
+        }
+
+        /**
+         * Expresiones evaluadas por segundo.
+         */
+        public double getExpressionsPerSecond() {
+            return elapsedNanos == 0 ? 0 : expressions * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Megabytes leídos por segundo.
+         */
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : (bytesRead / (1024.0 * 1024.0)) * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d expresiones (%d errores), %.1f%% del archivo, %.1f ms, %.0f expr/s, %.2f MB/s",
+                expressions, errors, getPercent(), elapsedNanos / 1e6,
+                getExpressionsPerSecond(), getMegabytesPerSecond());
+        }
+    }
+
+    /**
+     * Constructor del ScriptLoader.
+     * @param interpreter Intérprete con el que se evaluarán las expresiones del archivo.
+     */
+    public ScriptLoader(LispInterpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Usa una caché en disco de las expresiones parseadas: si el archivo no cambió desde
+     * la última carga, no se vuelve a pasar por el Tokenizer ni el Parser.
+     */
+    public void setCache(FormCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Carga un archivo y evalúa cada expresión del nivel superior en orden.
+     * @param file Archivo Lisp a cargar.
+     * @param listener Recibe cada resultado, los errores y el avance.
+     * @return El avance final (totales de la carga).
+     * @throws IOException Si el archivo no se puede leer.
+     */
+    public Progress load(Path file, Listener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Progress progress = new Progress();
+            progress.totalBytes = channel.size();
+            long start = System.nanoTime();
+
+            String key = cache != null ? FormCache.key(channel) : null;
+            List<Object> cached = key != null ? cache.get(key) : null;
+            if (cached != null) {
+                // El archivo no cambió: solo se evalúan las expresiones guardadas
+                long lastReport = start;
+                for (Object expression : cached) {
+                    evaluate(expression, listener, progress);
+                    long now = System.nanoTime();
+                    if (now - lastReport >= PROGRESS_INTERVAL) {
+                        progress.bytesRead = progress.totalBytes * progress.expressions / cached.size();
+                        progress.elapsedNanos = now - start;
+                        listener.progress(progress);
+                        lastReport = now;
+                    }
+                }
+                progress.bytesRead = progress.totalBytes;
+            } else {
+                List<Object> parsed = key != null ? new ArrayList<>() : null;
+                MappedReader reader = new MappedReader(channel);
+                if (parse(reader, listener, progress, start, parsed) && parsed != null) {
+                    cache.put(key, parsed); // Solo archivos que se parsearon completos
+                }
+                progress.bytesRead = reader.position();
+            }
+
+            progress.elapsedNanos = System.nanoTime() - start;
+            listener.progress(progress);
+            return progress;
+        }
+    }
+
+    /**
+     * Carga expresiones de una fuente sin tamaño conocido (por ejemplo la entrada estándar).
+     * No usa la caché; el avance no tiene porcentaje ni bytes leídos.
+     */
+    public Progress load(Readable source, Listener listener) {
+        Progress progress = new Progress();
+        long start = System.nanoTime();
+        parse(source, listener, progress, start, null);
+        progress.elapsedNanos = System.nanoTime() - start;
+        listener.progress(progress);
+        return progress;
+    }
+
+    /**
+     * Lee y evalúa las expresiones del archivo una por una.
+     * @param parsed Si no es null, ahí se guardan las expresiones leídas (para la caché).
+     * @return false si el archivo no se pudo parsear hasta el final.
+     */
+    private boolean parse(Readable reader, Listener listener, Progress progress, long start,
+                          List<Object> parsed) {
+        Parser parser = new Parser(new Tokenizer(reader));
+        long lastReport = start;
+        while (true) {
+            Object expression;
+            try {
+                if (!parser.hasNext()) return true;
+                expression = parser.parse();
+            } catch (RuntimeException e) {
+                // Si el archivo no se puede parsear no hay forma de seguir
+                progress.errors++;
+                listener.error(null, e);
+                return false;
+            }
+            if (parsed != null) {
+                parsed.add(expression);
+            }
+            evaluate(expression, listener, progress);
+
+            long now = System.nanoTime();
+            if (now - lastReport >= PROGRESS_INTERVAL) {
+                if (reader instanceof MappedReader) {
+                    progress.bytesRead = ((MappedReader) reader).position();
+                }
+                progress.elapsedNanos = now - start;
+                listener.progress(progress);
+                lastReport = now;
+            }
+        }
+    }
+
+    private void evaluate(Object expression, Listener listener, Progress progress) {
+        try {
+            listener.result(expression, interpreter.evaluate(expression));
+        } catch (RuntimeException e) {
+            progress.errors++;
+            listener.error(expression, e);
+        }
+        progress.expressions++;
+    }
+
+    /**
+     * Lee un archivo mapeado en memoria como caracteres UTF-8.
+     * Se mapea una ventana a la vez y se decodifica directamente al buffer del Tokenizer.
+     */
+    static class MappedReader implements Readable {
+        private final FileChannel channel;
+        private final long size;
+        private final CharsetDecoder decoder;
+        private MappedByteBuffer window; // Parte del archivo mapeada actualmente
+        private long windowStart;        // Posición de la ventana dentro del archivo
+        private boolean finished;        // true cuando ya se decodificó todo el archivo
+
+        MappedReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            map(0);
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+        }
+
+        /**
+         * Bytes del archivo ya decodificados.
+         */
+        long position() {
+            return windowStart + window.position();
+        }
+
+        @Override
+        public int read(CharBuffer target) throws IOException {
+            if (finished) return -1;
+            if (!target.hasRemaining()) return 0;
+            int before = target.position();
+            while (true) {
+                boolean lastWindow = windowStart + window.limit() >= size;
+                decoder.decode(window, target, lastWindow);
+                if (lastWindow && !window.hasRemaining()) {
+                    decoder.flush(target);
+                    finished = true;
+                }
+                int read = target.position() - before;
+                if (read > 0) return read;
+                if (lastWindow) return -1;
+                // Se terminó la ventana (puede quedar un carácter partido): se mapea la siguiente
+                map(position());
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScriptLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    private List<Object> load(String source, ScriptLoader.Progress[] last) throws Exception {
+        Path file = dir.resolve("script.lisp");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        List<Object> results = new ArrayList<>();
+        ScriptLoader loader = new ScriptLoader(new LispInterpreter(new Environment()));
+        last[0] = loader.load(file, new ScriptLoader.Listener() {
+            public void result(Object expression, Object result) {
+                results.add(result);
+            }
+
+            public void error(Object expression, RuntimeException e) {
+                results.add("error");
+            }
+
+            public void progress(ScriptLoader.Progress progress) {
+            }
+        });
+        return results;
+    }
+
+    @Test
+    public void testMultiLineForms() throws Exception {
+        ScriptLoader.Progress[] progress = new ScriptLoader.Progress[1];
+        List<Object> results = load("(defun factorial (n)\n  (cond ((<= n 1) 1)\n        (t (* n (factorial (- n 1))))))\n\n(factorial 5) (+ 1\n 2)\n", progress);
+        assertEquals(Arrays.asList(Symbol.intern("factorial"), 120, 3), results);
+        assertEquals(3, progress[0].getExpressions());
+        assertEquals(0, progress[0].getErrors());
+        assertEquals(progress[0].getTotalBytes(), progress[0].getBytesRead());
+    }
+
+    @Test
+    public void testErrorsDoNotStopTheLoad() throws Exception {
+        ScriptLoader.Progress[] progress = new ScriptLoader.Progress[1];
+        List<Object> results = load("(noexiste 1)\n(+ 1 1)\n", progress);
+        assertEquals(Arrays.asList("error", 2), results);
+        assertEquals(1, progress[0].getErrors());
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        ScriptLoader.Progress[] progress = new ScriptLoader.Progress[1];
+        assertTrue(load("", progress).isEmpty());
+        assertEquals(0, progress[0].getExpressions());
+    }
+}
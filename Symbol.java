@@ -0,0 +1,45 @@
+/**
+ * Un Symbol es un nombre de Lisp internado: para cada nombre existe un solo objeto
+ * Symbol en todo el programa (ver SymbolTable). Por eso dos símbolos se comparan con ==
+ * y se pueden usar como llave de un mapa sin volver a recorrer sus caracteres.
+ */
+public final class Symbol {
+    private final String name; // Nombre del símbolo (ej. factorial)
+
+    // Símbolos que usan el Parser y el Compiler
+    public static final Symbol QUOTE = intern("quote");
+
+    /**
+     * Solo SymbolTable crea símbolos, así se garantiza que sean únicos.
+     */
+    Symbol(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Devuelve el símbolo único para un nombre.
+     * @param name Nombre del símbolo.
+     */
+    public static Symbol intern(String name) {
+        return SymbolTable.intern(name);
+    }
+
+    /**
+     * Convierte un símbolo escrito como String (formas armadas a mano) o un Symbol en Symbol.
+     * @return El símbolo, o null si el objeto no es un símbolo.
+     */
+    public static Symbol of(Object obj) {
+        if (obj instanceof Symbol) return (Symbol) obj;
+        if (obj instanceof String) return intern((String) obj);
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Tabla global de símbolos internados.
+ * El Tokenizer le pasa el pedazo del buffer donde está el token y recibe siempre
+ * el mismo Symbol para el mismo nombre, sin crear un String nuevo si ya existía.
+ *
+ * Buscar un símbolo que ya existe no toma ningún candado: se lee el arreglo publicado
+ * en un campo volatile y, si no aparece, se vuelve a buscar con el candado antes de
+ * agregarlo. Así los hilos que parsean a la vez (sesiones de LispServer, tareas del
+ * Scheduler) solo compiten cuando aparece un nombre nuevo.
+ *
+ * Límite: la tabla es una sola para todo el programa y nunca se achica. Cada nombre
+ * distinto que llega al Tokenizer se queda para siempre, así que un cliente que manda
+ * muchos nombres inventados la hace crecer sin tope; solo conviene parsear código de
+ * fuentes en las que se confía.
+ */
+public class SymbolTable {
+    private static volatile Symbol[] symbols = new Symbol[1024]; // Tabla con direccionamiento abierto
+    private static int count = 0;                                 // Cantidad de símbolos guardados (con el candado)
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Devuelve el símbolo para los caracteres chars[offset .. offset + length).
+     * @param chars Arreglo donde está el nombre.
+     * @param offset Posición donde empieza el nombre.
+     * @param length Cantidad de caracteres del nombre.
+     * @return El único Symbol guardado para ese nombre.
+     */
+    public static Symbol intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[offset + i];
+        }
+        Symbol symbol = find(symbols, hash, chars, offset, length);
+        return symbol != null ? symbol : add(hash, chars, offset, length);
+    }
+
+    /**
+     * Devuelve el símbolo para un nombre que ya es String.
+     * Usa el hash que el String ya tiene guardado, así no se recorren los caracteres otra vez.
+     */
+    public static Symbol intern(String name) {
+        int hash = name.hashCode();
+        Symbol symbol = find(symbols, hash, name);
+        return symbol != null ? symbol : add(hash, name);
+    }
+
+    /**
+     * Cantidad de símbolos distintos que se han internado.
+     */
+    public static synchronized int size() {
+        return count;
+    }
+
+    // Busca sin candado; un null solo quiere decir "no lo vi", no que no exista
+    private static Symbol find(Symbol[] table, int hash, char[] chars, int offset, int length) {
+        int mask = table.length - 1;
+        int index = mix(hash) & mask;
+        Symbol symbol;
+        while ((symbol = table[index]) != null) {
+            String name = symbol.getName();
+            if (name.hashCode() == hash && sameChars(name, chars, offset, length)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private static Symbol find(Symbol[] table, int hash, String name) {
+        int mask = table.length - 1;
+        int index = mix(hash) & mask;
+        Symbol symbol;
+        while ((symbol = table[index]) != null) {
+            if (symbol.getName().hashCode() == hash && symbol.getName().equals(name)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    // Con el candado se vuelve a buscar: otro hilo pudo haberlo agregado mientras tanto
+    private static synchronized Symbol add(int hash, char[] chars, int offset, int length) {
+        Symbol symbol = find(symbols, hash, chars, offset, length);
+        return symbol != null ? symbol : insert(hash, new String(chars, offset, length));
+    }
+
+    private static synchronized Symbol add(int hash, String name) {
+        Symbol symbol = find(symbols, hash, name);
+        return symbol != null ? symbol : insert(hash, name);
+    }
+
+    /**
+     * Guarda un símbolo nuevo. Se llama con el candado tomado.
+     * Symbol solo tiene campos final, así un hilo que lo ve sin candado lo ve completo.
+     */
+    private static Symbol insert(int hash, String name) {
+        Symbol symbol = new Symbol(name);
+        Symbol[] table = symbols;
+        int mask = table.length - 1;
+        int index = mix(hash) & mask;
+        while (table[index] != null) {
+            index = (index + 1) & mask;
+        }
+        table[index] = symbol;
+        count++;
+        if (count * 2 > table.length) {
+            grow();
+        }
+        return symbol;
+    }
+
+    private static boolean sameChars(String name, char[] chars, int offset, int length) {
+        if (name.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) return false;
+        }
+        return true;
+    }
+
+    // Mezcla los bits del hash para que nombres parecidos no queden juntos en la tabla
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Duplica el tamaño de la tabla y vuelve a ubicar los símbolos.
+     * La tabla nueva se llena completa antes de publicarla en el campo volatile.
+     */
+    private static void grow() {
+        Symbol[] oldSymbols = symbols;
+        Symbol[] newSymbols = new Symbol[oldSymbols.length * 2];
+        int mask = newSymbols.length - 1;
+        for (Symbol symbol : oldSymbols) {
+            if (symbol == null) continue;
+            int index = mix(symbol.getName().hashCode()) & mask;
+            while (newSymbols[index] != null) {
+                index = (index + 1) & mask;
+            }
+            newSymbols[index] = symbol;
+        }
+        symbols = newSymbols;
+    }
+}
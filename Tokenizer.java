@@ -1,77 +1,224 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * La clase Tokenizer convierte una expresión Lisp en una lista de tokens.
+ * La clase Tokenizer convierte una expresión Lisp en una secuencia de tokens.
+ * Lee la entrada por bloques desde un Reader (o cualquier Readable, como un CharBuffer)
+ * y entrega los tokens uno por uno con next(), así el Parser puede pedirlos a medida
+ * que los necesita sin tener todo el texto en memoria.
  */
 public class Tokenizer {
-    private String input; // Cadena que contiene la expresión de Lisp.
-    private int index;    // Puntero que recorre la cadena.
+    private static final int BUFFER_SIZE = 8192; // Tamaño inicial del bloque de lectura
+
+    private Readable source; // De donde se leen los caracteres.
+    private char[] buffer;   // Bloque de caracteres leídos.
+    private int index;       // Puntero que recorre el bloque.
+    private int limit;       // Cantidad de caracteres válidos en el bloque.
+    private boolean eof;     // true cuando la fuente ya no tiene más caracteres.
+    private Object peeked;   // Token ya leído con peek() pero todavía no entregado (String o Symbol).
 
     /**
      * Método constructor del Tokenizer.
-     * 
+     *
      * @param input Expresión en Lisp que se tokenizará.
      */
     public Tokenizer(String input) {
-        this.input = input;
+        this(new StringReader(input));
+    }
+
+    /**
+     * Crea un Tokenizer que lee desde un Reader, un CharBuffer u otra fuente de caracteres.
+     *
+     * @param source Fuente de la que se leerá el código Lisp.
+     */
+    public Tokenizer(Readable source) {
+        this.source = source;
+        this.buffer = new char[BUFFER_SIZE];
         this.index = 0; // El índice se inicializa en 0.
+        this.limit = 0;
+        this.eof = false;
     }
 
     /**
-     * Analiza la cadena y genera los tokens usando recursión.
-     * 
-     * @param tokens Lista donde se almacenan los tokens generados.
+     * Devuelve el siguiente token sin consumirlo.
+     *
+     * @return El siguiente token, o null si ya no hay más.
      */
-    private void tokenizeRecursive(List<String> tokens) {
-        if (index >= input.length()) {
-            return; // Si el índice llega al final de la cadena, se termina la recursión.
+    public String peek() {
+        return text(peekToken());
+    }
+
+    /**
+     * Devuelve el siguiente token y avanza.
+     *
+     * @return El siguiente token, o null si ya no hay más.
+     */
+    public String next() {
+        return text(nextToken());
+    }
+
+    /**
+     * Como peek(), pero un símbolo se entrega como el Symbol ya internado,
+     * así el Parser no lo vuelve a buscar en SymbolTable.
+     *
+     * @return "(", ")", "'", el texto de un número, un Symbol, o null si ya no hay más.
+     */
+    Object peekToken() {
+        if (peeked == null) {
+            peeked = readToken();
         }
+        return peeked;
+    }
+
+    /**
+     * Como next(), pero un símbolo se entrega como Symbol (ver peekToken).
+     */
+    Object nextToken() {
+        Object token = peekToken();
+        peeked = null;
+        return token;
+    }
+
+    /**
+     * Indica si quedan tokens por leer.
+     */
+    public boolean hasNext() {
+        return peek() != null;
+    }
 
-        char c = input.charAt(index); // Se almacena el carácter actual.
-        index++; // El índice avanza al siguiente carácter.
-
-        if (c == '(' || c == ')') { 
-            tokens.add(Character.toString(c)); // Se agregan los paréntesis como tokens individuales.
-        } 
-        else if (c == '\'') { 
-            tokens.add("quote"); // Convierte el ' en el token "quote".
-        } 
-        else if (Character.isWhitespace(c)) {
-            // Ignorar espacios en blanco.
-        } 
-        else if ("+-*/".indexOf(c) != -1) { 
-            tokens.add(Character.toString(c)); // Guarda operadores como tokens individuales.
+    /**
+     * Método que tokeniza toda la entrada de una vez.
+     *
+     * @return La lista con los tokens generados.
+     */
+    public List<String> tokenize() {
+        List<String> tokens = new ArrayList<>(); // Se crea una lista para almacenar los tokens.
+        String token;
+        while ((token = next()) != null) {
+            tokens.add(token);
         }
-        else {
-            StringBuilder token = new StringBuilder(); // Se crea un StringBuilder para almacenar el token.
+        return tokens; // Se devuelve la lista con los tokens generados.
+    }
+
+    /**
+     * Analiza los caracteres hasta completar un token (con un ciclo, sin recursión).
+     * Los paréntesis y el ' son constantes; los símbolos se internan en
+     * SymbolTable directamente desde el buffer, sin pasar por un StringBuilder
+     * (el token es el Symbol, así el Parser no tiene que buscarlo otra vez).
+     *
+     * @return El token leído, o null al final de la entrada.
+     */
+    private Object readToken() {
+        while (true) {
+            if (index >= limit) {
+                index = 0; // El bloque ya se consumió: se vuelve a llenar desde el inicio.
+                limit = 0;
+                if (!fill()) {
+                    return null; // Se llegó al final de la entrada.
+                }
+            }
 
-            token.append(c); // Se agrega el primer carácter al token.
+            char c = buffer[index]; // Se almacena el carácter actual.
+            index++; // El índice avanza al siguiente carácter.
+
+            switch (c) {
+                case '(': return "(";
+                case ')': return ")";
+                case '\'': return "'"; // Distinto del símbolo quote escrito con letras
+                default:
+                    if (Character.isWhitespace(c)) {
+                        continue; // Ignorar espacios en blanco.
+                    }
+                    return readAtom(index - 1);
+            }
+        }
+    }
 
-            while (index < input.length()) {
-                char nextChar = input.charAt(index); // Se almacena el siguiente carácter.
-                if (Character.isWhitespace(nextChar) || nextChar == '(' || nextChar == ')' || "+-*/".indexOf(nextChar) != -1) {
-                    break; // Termina el token si encuentra un espacio, un paréntesis o un operador.
+    /**
+     * Lee un símbolo o número que empieza en la posición start del buffer.
+     * Termina en un espacio o un paréntesis. Los operadores (+ - * /) son parte del
+     * símbolo como en Lisp, así se pueden usar nombres como defun-memo o números como -5.
+     */
+    private Object readAtom(int start) {
+        while (true) {
+            while (index < limit) {
+                char nextChar = buffer[index]; // Se almacena el siguiente carácter.
+                if (isDelimiter(nextChar)) {
+                    return makeToken(start, index - start);
                 }
-                token.append(nextChar); // Agrega el siguiente carácter al token.
                 index++; // Avanza al siguiente carácter.
             }
+            // El token llega hasta el final del bloque: se mueve al inicio y se lee más
+            int length = index - start;
+            compact(start);
+            start = 0;
+            if (!fill()) {
+                return makeToken(start, length);
+            }
+        }
+    }
 
-            tokens.add(token.toString()); // Se agrega el token como String a la lista de tokens.
+    /**
+     * Crea el token a partir de un pedazo del buffer.
+     * Los números no se internan (casi siempre son distintos entre sí).
+     */
+    private Object makeToken(int start, int length) {
+        if (Character.isDigit(buffer[start]) || (length > 1 && buffer[start] == '-' && Character.isDigit(buffer[start + 1]))) {
+            return new String(buffer, start, length);
         }
+        return SymbolTable.intern(buffer, start, length);
+    }
+
+    // Texto de un token: el nombre si es un Symbol
+    private static String text(Object token) {
+        return token instanceof Symbol ? ((Symbol) token).getName() : (String) token;
+    }
 
-        tokenizeRecursive(tokens); // Llamado recursivo para procesar el siguiente carácter.
+    private static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')';
     }
 
     /**
-     * Método que se encarga de iniciar la tokenización de la cadena.
-     * 
-     * @return La lista con los tokens generados.
+     * Mueve al inicio del buffer los caracteres desde start (un token a medio leer).
+     * Si el token ocupa todo el buffer, se duplica su tamaño.
      */
-    public List<String> tokenize() {
-        List<String> tokens = new ArrayList<>(); // Se crea una lista para almacenar los tokens.
-        tokenizeRecursive(tokens); // Se llama al método recursivo para realizar la tokenización.
-        return tokens; // Se devuelve la lista con los tokens generados.
+    private void compact(int start) {
+        int remaining = limit - start;
+        if (remaining == buffer.length) {
+            char[] bigger = new char[buffer.length * 2];
+            System.arraycopy(buffer, start, bigger, 0, remaining);
+            buffer = bigger;
+        } else {
+            System.arraycopy(buffer, start, buffer, 0, remaining);
+        }
+        index = remaining;
+        limit = remaining;
     }
-}
 
+    /**
+     * Lee el siguiente bloque de la fuente, a continuación de lo que haya en el buffer.
+     *
+     * @return false si ya no hay más caracteres.
+     */
+    private boolean fill() {
+        if (eof) return false;
+        try {
+            int read;
+            do {
+                read = source.read(CharBuffer.wrap(buffer, limit, buffer.length - limit));
+            } while (read == 0);
+            if (read < 0) {
+                eof = true;
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error leyendo el código Lisp", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenizerTest {
+
+    @Test
+    public void testBasicTokens() {
+        List<String> tokens = new Tokenizer("(defun cuadrado (x) (* x x))").tokenize();
+        assertEquals(Arrays.asList("(", "defun", "cuadrado", "(", "x", ")", "(", "*", "x", "x", ")", ")"), tokens);
+    }
+
+    @Test
+    public void testQuoteAndOperators() {
+        assertEquals(Arrays.asList("'", "(", "a", "-1", ")"), new Tokenizer("'(a -1)").tokenize());
+        assertEquals(Arrays.asList("(", "quote", "a", ")"), new Tokenizer("(quote a)").tokenize());
+        assertEquals(Arrays.asList("(", "-", "n", "1", ")"), new Tokenizer("(- n 1)").tokenize());
+        assertEquals(Arrays.asList("(", "defun-memo", "f", ")"), new Tokenizer("(defun-memo f)").tokenize());
+    }
+
+    @Test
+    public void testSymbolsAreInterned() {
+        List<String> tokens = new Tokenizer("(fibonacci fibonacci)").tokenize();
+        assertSame(tokens.get(1), tokens.get(2));
+        assertSame(tokens.get(1), new Tokenizer("fibonacci").tokenize().get(0));
+    }
+
+    @Test
+    public void testParserReturnsInternedSymbols() {
+        List<?> form = (List<?>) new Parser(new Tokenizer("(equal x x)")).parse();
+        assertSame(form.get(1), form.get(2));
+        assertSame(Symbol.intern("equal"), form.get(0));
+    }
+
+    @Test
+    public void testTokenizerHandsSymbolsToParser() {
+        Tokenizer tokenizer = new Tokenizer("(cuadrado 5)");
+        assertEquals("(", tokenizer.nextToken());
+        assertSame(Symbol.intern("cuadrado"), tokenizer.nextToken());
+        assertEquals("5", tokenizer.nextToken());
+    }
+
+    @Test
+    public void testConcurrentInterningReturnsOneSymbol() throws Exception {
+        int threads = 4;
+        Symbol[][] seen = new Symbol[threads][2000];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            Symbol[] mine = seen[t];
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < mine.length; i++) {
+                    char[] name = ("concurrente-" + i).toCharArray();
+                    mine[i] = SymbolTable.intern(name, 0, name.length);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (int i = 0; i < 2000; i++) {
+            Symbol expected = Symbol.intern("concurrente-" + i);
+            for (int t = 0; t < threads; t++) {
+                assertSame(expected, seen[t][i]);
+            }
+        }
+    }
+
+    @Test
+    public void testLongInputDoesNotOverflow() {
+        StringBuilder source = new StringBuilder("(list");
+        for (int i = 0; i < 200000; i++) {
+            source.append(' ').append(i);
+        }
+        source.append(')');
+        List<String> tokens = new Tokenizer(new StringReader(source.toString())).tokenize();
+        assertEquals(200003, tokens.size());
+        assertEquals("199999", tokens.get(200001));
+    }
+
+    @Test
+    public void testTokenLongerThanBuffer() {
+        char[] name = new char[20000];
+        Arrays.fill(name, 'a');
+        List<String> tokens = new Tokenizer(CharBuffer.wrap("(" + new String(name) + ")")).tokenize();
+        assertEquals(3, tokens.size());
+        assertEquals(20000, tokens.get(1).length());
+    }
+
+    @Test
+    public void testParserPullsTokensOnDemand() {
+        Parser parser = new Parser(new Tokenizer("(setq x 1) (+ x 2)"));
+        assertEquals(Arrays.asList(Symbol.intern("setq"), Symbol.intern("x"), 1), parser.parse());
+        assertTrue(parser.hasNext());
+        assertEquals(Arrays.asList(Symbol.intern("+"), Symbol.intern("x"), 2), parser.parse());
+        assertFalse(parser.hasNext());
+    }
+
+    @Test
+    public void testIncompleteExpression() {
+        Parser parser = new Parser(new Tokenizer("(+ 1"));
+        assertThrows(RuntimeException.class, parser::parse);
+    }
+}
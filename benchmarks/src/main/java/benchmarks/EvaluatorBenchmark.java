@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluación de programas ya parseados, con el Compiler y con el Evaluator.
+ * Solo se mide evaluate(); las definiciones y el parseo se hacen en el setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+    // Funciones de ejemplo.lisp
+    private static final String EJEMPLO =
+        "(defun factorial (n) (cond ((<= n 1) 1) (t (* n (factorial (- n 1))))))\n"
+        + "(defun fibonacci (n) (cond ((<= n 1) n) (t (+ (fibonacci (- n 1)) (fibonacci (- n 2))))))\n";
+
+    // Lee varias variables globales en cada vuelta (búsqueda en el Environment)
+    private static final String VARIABLES =
+        "(setq x 1) (setq y 2) (setq z 3)\n"
+        + "(defun suma-globales (n acc) (cond ((<= n 0) acc) (t (suma-globales (- n 1) (+ acc x y z)))))\n";
+
+    // Arma listas con cons, list y append
+    private static final String LISTAS =
+        "(defun construye (n acc) (cond ((<= n 0) acc) (t (construye (- n 1) (cons n acc)))))\n"
+        + "(defun suma (l acc) (cond ((null l) acc) (t (suma (cdr l) (+ acc (car l))))))\n"
+        + "(defun pares (n acc) (cond ((<= n 0) acc) (t (pares (- n 1) (append (list n (* n n)) acc)))))\n";
+
+    @Param({"compiler", "evaluator"})
+    public String mode;
+
+    private Object interpreter;
+    private Object fibonacci;
+    private Object factorial;
+    private Object variables;
+    private Object buildList;
+    private Object appendList;
+
+    @Setup
+    public void setUp() {
+        interpreter = Lisp.newInterpreter(mode.equals("compiler"));
+        Lisp.run(interpreter, EJEMPLO + VARIABLES + LISTAS);
+        fibonacci = Lisp.parseAll("(fibonacci 20)").get(0);
+        factorial = Lisp.parseAll("(factorial 30)").get(0);
+        variables = Lisp.parseAll("(suma-globales 10000 0)").get(0);
+        buildList = Lisp.parseAll("(suma (construye 10000 (list)) 0)").get(0);
+        appendList = Lisp.parseAll("(length (pares 1000 (list)))").get(0);
+    }
+
+    @Benchmark
+    public Object fibonacci() {
+        return Lisp.evaluate(interpreter, fibonacci);
+    }
+
+    @Benchmark
+    public Object factorial() {
+        return Lisp.evaluate(interpreter, factorial);
+    }
+
+    @Benchmark
+    public Object variableLookup() {
+        return Lisp.evaluate(interpreter, variables);
+    }
+
+    @Benchmark
+    public Object buildList() {
+        return Lisp.evaluate(interpreter, buildList);
+    }
+
+    @Benchmark
+    public Object appendList() {
+        return Lisp.evaluate(interpreter, appendList);
+    }
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acceso al intérprete desde los benchmarks.
+ * Las clases del intérprete están en el paquete por defecto y no se pueden importar
+ * desde un paquete con nombre, así que se buscan por nombre una sola vez y se llaman
+ * con MethodHandles guardados en campos static final (el JIT los trata como llamadas
+ * directas, así que no agregan costo a lo que se mide).
+ */
+final class Lisp {
+    private static final MethodHandle NEW_TOKENIZER;  // new Tokenizer(String)
+    private static final MethodHandle TOKENIZE;       // tokenizer.tokenize()
+    private static final MethodHandle NEW_PARSER;     // new Parser(Tokenizer)
+    private static final MethodHandle HAS_NEXT;       // parser.hasNext()
+    private static final MethodHandle PARSE;          // parser.parse()
+    private static final MethodHandle NEW_ENVIRONMENT; // new Environment()
+    private static final MethodHandle NEW_INTERPRETER; // new LispInterpreter(Environment)
+    private static final MethodHandle USE_COMPILER;   // interpreter.setUseCompiler(boolean)
+    private static final MethodHandle EVALUATE;       // interpreter.evaluate(Object)
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> tokenizer = Class.forName("Tokenizer");
+            Class<?> parser = Class.forName("Parser");
+            Class<?> environment = Class.forName("Environment");
+            Class<?> interpreter = Class.forName("LispInterpreter");
+
+            NEW_TOKENIZER = generic(lookup.findConstructor(tokenizer, MethodType.methodType(void.class, String.class)));
+            TOKENIZE = generic(lookup.findVirtual(tokenizer, "tokenize", MethodType.methodType(List.class)));
+            NEW_PARSER = generic(lookup.findConstructor(parser, MethodType.methodType(void.class, tokenizer)));
+            HAS_NEXT = lookup.findVirtual(parser, "hasNext", MethodType.methodType(boolean.class))
+                .asType(MethodType.methodType(boolean.class, Object.class));
+            PARSE = generic(lookup.findVirtual(parser, "parse", MethodType.methodType(Object.class)));
+            NEW_ENVIRONMENT = generic(lookup.findConstructor(environment, MethodType.methodType(void.class)));
+            NEW_INTERPRETER = generic(lookup.findConstructor(interpreter, MethodType.methodType(void.class, environment)));
+            USE_COMPILER = lookup.findVirtual(interpreter, "setUseCompiler", MethodType.methodType(void.class, boolean.class))
+                .asType(MethodType.methodType(void.class, Object.class, boolean.class));
+            EVALUATE = generic(lookup.findVirtual(interpreter, "evaluate", MethodType.methodType(Object.class, Object.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Lisp() {
+    }
+
+    // Cambia todos los tipos por Object para poder usar invokeExact
+    private static MethodHandle generic(MethodHandle handle) {
+        return handle.asType(MethodType.genericMethodType(handle.type().parameterCount()));
+    }
+
+    /**
+     * Crea un intérprete nuevo con su propio entorno.
+     * @param compiled true para el camino compilado (Compiler), false para el Evaluator.
+     */
+    static Object newInterpreter(boolean compiled) {
+        try {
+            Object interpreter = (Object) NEW_INTERPRETER.invokeExact((Object) NEW_ENVIRONMENT.invokeExact());
+            USE_COMPILER.invokeExact(interpreter, compiled);
+            return interpreter;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Devuelve la lista completa de tokens del texto.
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> tokenize(String source) {
+        try {
+            return (List<String>) (Object) TOKENIZE.invokeExact((Object) NEW_TOKENIZER.invokeExact((Object) source));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Parsea todas las expresiones del texto, pidiendo los tokens a medida que se necesitan.
+     */
+    static List<Object> parseAll(String source) {
+        try {
+            Object parser = (Object) NEW_PARSER.invokeExact((Object) NEW_TOKENIZER.invokeExact((Object) source));
+            List<Object> forms = new ArrayList<>();
+            while ((boolean) HAS_NEXT.invokeExact(parser)) {
+                forms.add((Object) PARSE.invokeExact(parser));
+            }
+            return forms;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Evalúa una expresión ya parseada.
+     */
+    static Object evaluate(Object interpreter, Object form) {
+        try {
+            return (Object) EVALUATE.invokeExact(interpreter, form);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Parsea y evalúa todas las expresiones del texto; devuelve el último resultado.
+     */
+    static Object run(Object interpreter, String source) {
+        Object result = null;
+        for (Object form : parseAll(source)) {
+            result = evaluate(interpreter, form);
+        }
+        return result;
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) return (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        return new RuntimeException(e);
+    }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenizer y Parser sobre un texto grande: muchas definiciones y llamadas
+ * parecidas a las de ejemplo.lisp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"1000", "10000"})
+    public int forms; // Cantidad de expresiones del texto
+
+    private String source;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < forms; i++) {
+            text.append("(defun funcion-").append(i).append(" (n acc)\n")
+                .append("  (cond ((<= n 1) acc) (t (funcion-").append(i)
+                .append(" (- n 1) (+ acc (* n ").append(i).append("))))))\n")
+                .append("(setq lista-").append(i).append(" '(a b c ").append(i).append(" -5))\n");
+        }
+        source = text.toString();
+    }
+
+    @Benchmark
+    public List<String> tokenize() {
+        return Lisp.tokenize(source);
+    }
+
+    @Benchmark
+    public List<Object> parse() {
+        return Lisp.parseAll(source);
+    }
+}